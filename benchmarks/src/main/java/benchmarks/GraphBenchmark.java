@@ -0,0 +1,78 @@
+package benchmarks;
+
+import neuralnets.SimpleNeuralNet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prediction latency and stochastic training throughput on the graph of nodes and edges, in microseconds per
+ * sample. The graph takes seconds per sample at the MNIST shape, so only the smaller shapes run by default; pass
+ * {@code -p shape=784x256x128x10} to include it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class GraphBenchmark {
+
+    private static final int NUM_OF_SAMPLES = 16;
+
+    @Param({Networks.SMALL, Networks.MEDIUM})
+    public String shape;
+
+    private SimpleNeuralNet neuralNet;
+    private List<Double> input;
+    private Map<List<Double>, List<Double>> trainingSet;
+
+    @Setup
+    public void setUp() {
+
+        neuralNet = Networks.create(shape);
+
+        int numOfInputs = Networks.numOfInputs(shape);
+        int numOfOutputs = Networks.numOfOutputs(shape);
+
+        double[][] inputs = Networks.randomRows(NUM_OF_SAMPLES, numOfInputs, 1);
+        double[][] targets = Networks.randomRows(NUM_OF_SAMPLES, numOfOutputs, 2);
+
+        input = Networks.toList(inputs[0]);
+        trainingSet = new LinkedHashMap<>();
+        for (int i = 0; i < NUM_OF_SAMPLES; i++) {
+            trainingSet.put(Networks.toList(inputs[i]), Networks.toList(targets[i]));
+        }
+    }
+
+    /**
+     * Evaluates the graph for one input.
+     */
+    @Benchmark
+    public List<Double> predict() {
+        return neuralNet.predict(input);
+    }
+
+    /**
+     * One epoch of stochastic gradient descent on the graph; the score is the time per sample.
+     */
+    @Benchmark
+    @OperationsPerInvocation(NUM_OF_SAMPLES)
+    public List<Double> train() {
+        return neuralNet.train(trainingSet);
+    }
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.Kernels;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the scalar kernels against the kernels chosen at startup, which are the SIMD kernels when the
+ * Vector API is available. Vectors hold size * size values and matrices are size x size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class KernelBenchmark {
+
+    @Param({"scalar", "selected"})
+    public String kernels;
+
+    @Param({"64", "256"})
+    public int size;
+
+    private Kernels selected;
+    private double[] a;
+    private double[] b;
+    private double[] c;
+
+    @Setup
+    public void setUp() {
+        selected = "scalar".equals(kernels) ? Kernels.scalar() : Kernels.get();
+        a = flatten(Networks.randomRows(size, size, 1));
+        b = flatten(Networks.randomRows(size, size, 2));
+        c = new double[size * size];
+    }
+
+    private static double[] flatten(double[][] rows) {
+        double[] data = new double[rows.length * rows[0].length];
+        for (int i = 0; i < rows.length; i++) {
+            System.arraycopy(rows[i], 0, data, i * rows[i].length, rows[i].length);
+        }
+        return data;
+    }
+
+    @Benchmark
+    public double dot() {
+        return selected.dot(a, 0, b, 0, a.length);
+    }
+
+    @Benchmark
+    public double[] axpy() {
+        selected.axpy(1e-9, a, 0, c, 0, a.length);
+        return c;
+    }
+
+    @Benchmark
+    public double[] gemv() {
+        selected.gemv(a, size, size, b, 0, c, 0);
+        return c;
+    }
+
+    @Benchmark
+    public double[] gemm() {
+        selected.gemm(a, b, c, size, size, 0, size);
+        return c;
+    }
+
+    @Benchmark
+    public double[] leakyRelu() {
+        System.arraycopy(a, 0, c, 0, a.length);
+        selected.leakyRelu(c, 0, c.length, 0.01);
+        return c;
+    }
+}
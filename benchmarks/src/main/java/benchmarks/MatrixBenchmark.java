@@ -0,0 +1,79 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.Matrix;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of square matrix products. Besides products per second, every benchmark reports a "flops" counter
+ * of floating-point operations per second: divide it by 10^9 for GFLOP/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class MatrixBenchmark {
+
+    @Param({"64", "256", "512"})
+    public int size;
+
+    private Matrix m1;
+    private Matrix m2;
+
+    /**
+     * Counts the floating-point operations of the products, reported as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class FlopCounter {
+
+        public long flops;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            flops = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        m1 = new Matrix(randomData(size, 1), size, size);
+        m2 = new Matrix(randomData(size, 2), size, size);
+    }
+
+    private static double[] randomData(int size, long seed) {
+        double[][] rows = Networks.randomRows(size, size, seed);
+        double[] data = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(rows[i], 0, data, i * size, size);
+        }
+        return data;
+    }
+
+    @Benchmark
+    public Matrix mult(FlopCounter counter) {
+        counter.flops += 2L * size * size * size;
+        return Matrix.mult(m1, m2);
+    }
+
+    @Benchmark
+    public Matrix parallelMult(FlopCounter counter) {
+        counter.flops += 2L * size * size * size;
+        return Matrix.parallelMult(m1, m2);
+    }
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import neuralnets.SimpleNeuralNet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the networks and data the benchmarks run on.
+ */
+final class Networks {
+
+    /**
+     * The network shapes benchmarked, from a toy network to an MNIST-sized one.
+     */
+    static final String SMALL = "2x4x1";
+    static final String MEDIUM = "64x128x64x10";
+    static final String MNIST = "784x256x128x10";
+
+    private Networks() {
+    }
+
+    /**
+     * Creates a network from a list of layer sizes separated by "x".
+     *
+     * @param shape The number of nodes at each layer, such as "784x256x128x10".
+     * @return Returns the network.
+     */
+    static SimpleNeuralNet create(String shape) {
+
+        List<Integer> nodeConfig = new ArrayList<>();
+        for (int size : sizes(shape)) {
+            nodeConfig.add(size);
+        }
+
+        SimpleNeuralNet neuralNet = new SimpleNeuralNet(nodeConfig);
+        neuralNet.setLearningRate(0.01);
+        return neuralNet;
+    }
+
+    /**
+     * Returns the number of inputs of a network shape.
+     *
+     * @param shape The number of nodes at each layer, such as "784x256x128x10".
+     * @return Returns the number of nodes at the first layer.
+     */
+    static int numOfInputs(String shape) {
+        return sizes(shape)[0];
+    }
+
+    /**
+     * Returns the number of outputs of a network shape.
+     *
+     * @param shape The number of nodes at each layer, such as "784x256x128x10".
+     * @return Returns the number of nodes at the last layer.
+     */
+    static int numOfOutputs(String shape) {
+        int[] sizes = sizes(shape);
+        return sizes[sizes.length - 1];
+    }
+
+    // Parses the layer sizes of a shape.
+    private static int[] sizes(String shape) {
+
+        String[] parts = shape.split("x");
+        int[] sizes = new int[parts.length];
+
+        for (int i = 0; i < parts.length; i++) {
+            sizes[i] = Integer.parseInt(parts[i].trim());
+        }
+        return sizes;
+    }
+
+    /**
+     * Creates rows of random values in [0, 1).
+     *
+     * @param numOfRows The number of rows.
+     * @param numOfCols The number of values in each row.
+     * @param seed      The seed of the random values.
+     * @return Returns the rows.
+     */
+    static double[][] randomRows(int numOfRows, int numOfCols, long seed) {
+
+        Random random = new Random(seed);
+        double[][] rows = new double[numOfRows][numOfCols];
+
+        for (double[] row : rows) {
+            for (int j = 0; j < numOfCols; j++) {
+                row[j] = random.nextDouble();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Converts a row into a list.
+     *
+     * @param row The row to convert.
+     * @return Returns the values of the row as a list.
+     */
+    static List<Double> toList(double[] row) {
+
+        List<Double> list = new ArrayList<>(row.length);
+        for (double value : row) {
+            list.add(value);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,106 @@
+package benchmarks;
+
+import neuralnets.QuantizedNetwork;
+import neuralnets.SimpleNeuralNet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a single prediction on each of the compiled inference paths of {@link SimpleNeuralNet}, of a
+ * prediction made as part of a batch, and of a prediction of the network quantized to 8-bit weights. The graph of nodes and edges is benchmarked by {@link GraphBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class PredictBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    @Param({Networks.SMALL, Networks.MEDIUM, Networks.MNIST})
+    public String shape;
+
+    private SimpleNeuralNet compiledNet;
+    private List<Double> input;
+    private double[] inputArray;
+    private double[] output;
+    private double[] scratch;
+    private double[] batchInputs;
+    private double[] batchOutputs;
+    private QuantizedNetwork quantizedNet;
+
+    @Setup
+    public void setUp() {
+
+        compiledNet = Networks.create(shape);
+        compiledNet.compile();
+
+        int numOfInputs = Networks.numOfInputs(shape);
+        int numOfOutputs = Networks.numOfOutputs(shape);
+
+        inputArray = Networks.randomRows(1, numOfInputs, 1)[0];
+        input = Networks.toList(inputArray);
+        output = new double[numOfOutputs];
+        scratch = new double[compiledNet.getWeightSnapshot().getScratchSize()];
+
+        double[][] rows = Networks.randomRows(BATCH_SIZE, numOfInputs, 2);
+        batchInputs = new double[BATCH_SIZE * numOfInputs];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            System.arraycopy(rows[i], 0, batchInputs, i * numOfInputs, numOfInputs);
+        }
+        batchOutputs = new double[BATCH_SIZE * numOfOutputs];
+        quantizedNet = compiledNet.quantize(rows);
+    }
+
+    /**
+     * Runs the compiled network through the list-based API.
+     */
+    @Benchmark
+    public List<Double> predictCompiled() {
+        return compiledNet.predict(input);
+    }
+
+    /**
+     * Runs the lock-free path on primitive arrays, which allocates nothing.
+     */
+    @Benchmark
+    public double[] predictArrays() {
+        compiledNet.predict(inputArray, output, scratch);
+        return output;
+    }
+
+    /**
+     * Predicts a batch of samples at once; the score is the time per sample.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public double[] predictBatch() {
+        compiledNet.predictBatch(batchInputs, BATCH_SIZE, batchOutputs);
+        return batchOutputs;
+    }
+
+    /**
+     * Predicts a batch of samples with the quantized network; the score is the time per sample.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public double[] predictQuantized() {
+        quantizedNet.predictBatch(batchInputs, BATCH_SIZE, batchOutputs);
+        return batchOutputs;
+    }
+}
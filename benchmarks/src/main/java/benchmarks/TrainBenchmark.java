@@ -0,0 +1,69 @@
+package benchmarks;
+
+import neuralnets.Precision;
+import neuralnets.SimpleNeuralNet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training throughput in samples per second of mini-batch training on the compiled network, in each
+ * {@link Precision}. Each invocation is one epoch over {@value #NUM_OF_SAMPLES} samples. Stochastic training on the
+ * graph is benchmarked by {@link GraphBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class TrainBenchmark {
+
+    private static final int NUM_OF_SAMPLES = 64;
+
+    @Param({Networks.SMALL, Networks.MEDIUM, Networks.MNIST})
+    public String shape;
+
+    @Param({"32"})
+    public int batchSize;
+
+    @Param({"DOUBLE", "FLOAT", "MIXED"})
+    public String precision;
+
+    private SimpleNeuralNet batchNet;
+    private double[][] inputs;
+    private double[][] targets;
+
+    @Setup
+    public void setUp() {
+
+        batchNet = Networks.create(shape);
+        batchNet.setPrecision(Precision.valueOf(precision));
+
+        int numOfInputs = Networks.numOfInputs(shape);
+        int numOfOutputs = Networks.numOfOutputs(shape);
+
+        inputs = Networks.randomRows(NUM_OF_SAMPLES, numOfInputs, 1);
+        targets = Networks.randomRows(NUM_OF_SAMPLES, numOfOutputs, 2);
+    }
+
+    /**
+     * One epoch of mini-batch gradient descent on the compiled network.
+     */
+    @Benchmark
+    @OperationsPerInvocation(NUM_OF_SAMPLES)
+    public void trainBatch() {
+        batchNet.trainBatch(inputs, targets, batchSize, 1);
+    }
+}
@@ -1,4 +1,36 @@
 package classification;
 
-public interface Classifier {
+import java.util.Map;
+
+/**
+ * Classifies inputs into classes learnt from examples.
+ *
+ * @param <I> The type of the inputs.
+ * @param <O> The type of the classes.
+ */
+public interface Classifier<I, O> {
+
+    /**
+     * Classifies an input.
+     *
+     * @param input The input to classify.
+     * @return Returns the class of the input.
+     */
+    O classify(I input);
+
+    /**
+     * Trains the classifier with one pass over the examples.
+     *
+     * @param inputOutputMap The examples, mapping each input to its class.
+     */
+    void train(Map<I, O> inputOutputMap);
+
+    /**
+     * Trains the classifier in batches.
+     *
+     * @param inputOutputMap The examples, mapping each input to its class.
+     * @param learningRate   The learning rate of the training.
+     * @param epoch          Epoch time of the training.
+     */
+    void batchTrain(Map<I, O> inputOutputMap, double learningRate, int epoch);
 }
@@ -1,4 +1,274 @@
 package classification;
 
+import neuralnets.data.TrainingDataSource;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A data set of labelled grayscale images read from a pair of IDX files, the format of the MNIST data set. The
+ * files are memory-mapped, and images and labels are decoded only when they are read, so opening a data set
+ * costs the same whatever its size and any image can be read without reading the ones before it.
+ *
+ * The image file holds unsigned bytes with three dimensions (images, rows, columns) and the label file unsigned
+ * bytes with one dimension (images). Each file is mapped in one piece, so it must be smaller than 2GB.
+ */
 public class DataSetImage {
+
+    // Data type code of unsigned bytes.
+    private static final int UNSIGNED_BYTE = 0x08;
+
+    private final ByteBuffer images;
+    private final ByteBuffer labels;
+    private final int size;
+    private final int height;
+    private final int width;
+    // Position in the image file of the first pixel of the first image.
+    private final int imageOffset;
+    private final int labelOffset;
+
+    /**
+     * Opens a data set of images and labels.
+     *
+     * @param imageFile The IDX file of the images.
+     * @param labelFile The IDX file of the labels.
+     * @throws IOException If a file cannot be read, is not a valid IDX file of the expected shape, or the files
+     *                     hold different numbers of images.
+     */
+    public DataSetImage(Path imageFile, Path labelFile) throws IOException {
+
+        images = map(imageFile);
+        labels = map(labelFile);
+
+        int[] imageDimensions = readHeader(images, imageFile, 3);
+        int[] labelDimensions = readHeader(labels, labelFile, 1);
+
+        if (imageDimensions[0] != labelDimensions[0]) {
+            throw new IOException(imageFile + " holds " + imageDimensions[0] + " images but " + labelFile
+                    + " holds " + labelDimensions[0] + " labels");
+        }
+
+        size = imageDimensions[0];
+        height = imageDimensions[1];
+        width = imageDimensions[2];
+        imageOffset = 4 + 4 * 3;
+        labelOffset = 4 + 4;
+
+        if ((long) size * height * width > images.limit() - imageOffset || size > labels.limit() - labelOffset) {
+            throw new IOException("Data set is truncated");
+        }
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to map");
+            }
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.BIG_ENDIAN);
+        }
+    }
+
+    // Checks the magic number of an IDX file and returns its dimensions.
+    private static int[] readHeader(ByteBuffer buffer, Path path, int numOfDimensions) throws IOException {
+
+        if (buffer.limit() < 4 + 4 * numOfDimensions || buffer.get(0) != 0 || buffer.get(1) != 0) {
+            throw new IOException(path + " is not an IDX file");
+        }
+        if (buffer.get(2) != UNSIGNED_BYTE) {
+            throw new IOException(path + " does not hold unsigned bytes");
+        }
+        if (buffer.get(3) != numOfDimensions) {
+            throw new IOException(path + " has " + buffer.get(3) + " dimensions but should have "
+                    + numOfDimensions);
+        }
+
+        int[] dimensions = new int[numOfDimensions];
+        for (int d = 0; d < numOfDimensions; d++) {
+            dimensions[d] = buffer.getInt(4 + 4 * d);
+            if (dimensions[d] < 0) {
+                throw new IOException(path + " has a negative dimension");
+            }
+        }
+        return dimensions;
+    }
+
+    /**
+     * Returns the number of images in the data set.
+     *
+     * @return Returns the number of images in the data set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the width in pixels of the images.
+     *
+     * @return Returns the width in pixels of the images.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height in pixels of the images.
+     *
+     * @return Returns the height in pixels of the images.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the label of an image.
+     *
+     * @param index The index of the image.
+     * @return Returns the label of the image.
+     * @throws IndexOutOfBoundsException If there is no image at the index.
+     */
+    public int getLabel(int index) {
+        checkIndex(index);
+        return labels.get(labelOffset + index) & 0xFF;
+    }
+
+    /**
+     * Writes the pixels of an image, in row-major order and scaled to [0, 1], into an array.
+     *
+     * @param index  The index of the image.
+     * @param out    The array receiving width * height values.
+     * @param offset The index in the array of the value of the top-left pixel.
+     * @throws IndexOutOfBoundsException If there is no image at the index.
+     */
+    public void getImage(int index, double[] out, int offset) {
+
+        checkIndex(index);
+
+        int numOfPixels = width * height;
+        int position = imageOffset + index * numOfPixels;
+
+        for (int p = 0; p < numOfPixels; p++) {
+            out[offset + p] = (images.get(position + p) & 0xFF) / 255d;
+        }
+    }
+
+    /**
+     * Copies an image into a new {@link BufferedImage} of type {@link BufferedImage#TYPE_BYTE_GRAY}, for example to
+     * classify it with an {@link ImageClassifier} or display it.
+     *
+     * @param index The index of the image.
+     * @return Returns the image.
+     * @throws IndexOutOfBoundsException If there is no image at the index.
+     */
+    public BufferedImage toBufferedImage(int index) {
+
+        checkIndex(index);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        ByteBuffer view = images.duplicate();
+        view.position(imageOffset + index * width * height);
+        view.get(((DataBufferByte) image.getRaster().getDataBuffer()).getData(), 0, width * height);
+
+        return image;
+    }
+
+    /**
+     * Reads a range of consecutive images and their labels into arrays.
+     *
+     * @param from         The index of the first image.
+     * @param numOfSamples The maximum number of images to read.
+     * @param pixels       The array receiving the pixels of each image, one image after the other.
+     * @param labels       The array receiving the label of each image.
+     * @return Returns the number of images read, which is less than numOfSamples only at the end of the data set.
+     * @throws IndexOutOfBoundsException If there is no image at the first index.
+     */
+    public int getBatch(int from, int numOfSamples, double[] pixels, int[] labels) {
+
+        if (from != size) {
+            checkIndex(from);
+        }
+
+        int count = Math.min(numOfSamples, size - from);
+
+        for (int i = 0; i < count; i++) {
+            getImage(from + i, pixels, i * width * height);
+            labels[i] = getLabel(from + i);
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns a source that streams the data set as training samples, with the pixels of each image as inputs
+     * and its label as a one-hot target: 1 for the output node of the label and 0 for the others.
+     *
+     * @param numOfClasses The number of output nodes, which must be greater than every label.
+     * @return Returns a training source over the data set.
+     * @throws IllegalArgumentException If the number of classes is not positive.
+     */
+    public TrainingDataSource toDataSource(int numOfClasses) {
+
+        if (numOfClasses < 1) {
+            throw new IllegalArgumentException("Number of classes must be positive");
+        }
+
+        return new TrainingDataSource() {
+
+            private int position;
+
+            @Override
+            public int getNumOfInputs() {
+                return width * height;
+            }
+
+            @Override
+            public int getNumOfOutputs() {
+                return numOfClasses;
+            }
+
+            @Override
+            public int read(double[] inputs, double[] targets, int maxSamples) throws IOException {
+
+                int count = Math.min(maxSamples, size - position);
+
+                for (int i = 0; i < count; i++) {
+                    int label = getLabel(position + i);
+                    if (label >= numOfClasses) {
+                        throw new IOException("Label " + label + " of image " + (position + i)
+                                + " is not below the number of classes " + numOfClasses);
+                    }
+
+                    getImage(position + i, inputs, i * width * height);
+                    for (int j = 0; j < numOfClasses; j++) {
+                        targets[i * numOfClasses + j] = j == label ? 1 : 0;
+                    }
+                }
+
+                position += count;
+                return count;
+            }
+
+            @Override
+            public void reset() {
+                position = 0;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Image " + index + " is not in a data set of " + size);
+        }
+    }
 }
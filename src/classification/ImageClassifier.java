@@ -1,27 +1,310 @@
 package classification;
 
+import neuralnets.data.TrainingDataSource;
+import neuralnets.nodes.Bias;
+import neuralnets.nodes.NodeEdge;
+import utils.Activations;
+
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+
+/**
+ * Classifies images with a {@link neuralnets.SimpleNeuralNet}. Every pixel of an image feeds one input node with
+ * its grayscale intensity (see {@link ImagePixels}), so images must have exactly as many pixels as the network
+ * has inputs. Every class has one output node, trained towards 1 for images of its class and 0 otherwise, and an
+ * image is classified as the class whose node has the largest output. Hidden layers use {@link Activations#RELU}
+ * and the output layer {@link Activations#SOFTMAX}, which trains the outputs with the cross-entropy loss.
+ *
+ * @param <O> The type of the classes.
+ */
+public class ImageClassifier<O> extends NeuralNetClassifier<BufferedImage, O> {
+
+    /**
+     * The number of images per weight update used by {@link #batchTrain(Map, double, int)}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    private final int numOfInputs;
+    private final int numOfOutputs;
+    // The class of each output node, and the reverse.
+    private final List<O> labels = new ArrayList<>();
+    private final Map<O, Integer> labelIndices = new HashMap<>();
 
-public class ImageClassifer<O> extends NeuralNetClassifier<BufferedImage, O> {
+    // Buffers reused by classify.
+    private final double[] inputs;
+    private final double[] outputs;
+    private double[] scratch;
 
-    public ImageClassifer(List<Integer> nodeConfig) {
+    /**
+     * Creates a classifier whose classes are assigned to output nodes in the order they are first seen in
+     * training.
+     *
+     * @param nodeConfig The number of nodes at each layer. The input layer must have a node for every pixel and
+     *                   the output layer a node for every class.
+     */
+    public ImageClassifier(List<Integer> nodeConfig) {
         super(nodeConfig);
+
+        neuralNet.setActivationFunction(Activations.RELU);
+        neuralNet.setOutputActivationFunction(Activations.SOFTMAX);
+        initializeWeights(new Random());
+
+        numOfInputs = nodeConfig.get(0);
+        numOfOutputs = nodeConfig.get(nodeConfig.size() - 1);
+        inputs = new double[numOfInputs];
+        outputs = new double[numOfOutputs];
     }
 
-    @Override
-    public O classify(BufferedImage inputs) {
-        return null;
+    /**
+     * Creates a classifier for the given classes.
+     *
+     * @param nodeConfig The number of nodes at each layer. The input layer must have a node for every pixel and
+     *                   the output layer a node for every class.
+     * @param labels     The classes, in the order of the output nodes.
+     * @throws IllegalArgumentException If there are more classes than output nodes.
+     */
+    public ImageClassifier(List<Integer> nodeConfig, List<O> labels) {
+        this(nodeConfig);
+
+        for (O label : labels) {
+            getLabelIndex(label);
+        }
     }
 
+    // Draws the weights from a range scaled to the number of inputs of each node (He initialization). The default
+    // weights would saturate a layer with as many inputs as an image has pixels.
+    //
+    // Every node of the graph adds the bias value once per input edge, on top of the bias value times the weight
+    // of its bias edge (see HiddenNode#netOutput, which the compiled layers reproduce). A node with n inputs
+    // therefore starts (n + 1) bias values above its weighted sum: hundreds for the first hidden layer of an image,
+    // which would leave every ReLU node in its linear range whatever the image. Starting the bias edge at
+    // -(n + 1) cancels that offset for any bias value, and training adjusts the bias edge from there.
+    private void initializeWeights(Random random) {
+
+        for (List<NodeEdge> layerEdges : neuralNet.getEdges().values()) {
+            for (NodeEdge edge : layerEdges) {
+                // Every node has one input edge from the bias node of the layer below.
+                int numOfNodeInputs = edge.getToNode().getInputEdges().size() - 1;
+
+                if (edge.getFromNode() instanceof Bias) {
+                    edge.setWeight(-(numOfNodeInputs + 1));
+                } else {
+                    edge.setWeight((2 * random.nextDouble() - 1) * Math.sqrt(6d / numOfNodeInputs));
+                }
+            }
+        }
+    }
+
+    /**
+     * Classifies an image.
+     *
+     * @param image The image to classify.
+     * @return Returns the class of the image, or null if no class has been assigned to the winning output node.
+     * @throws IllegalArgumentException If the image does not have as many pixels as the network has inputs.
+     */
     @Override
-    public void batchTrain(Map<BufferedImage, O> inputOutputMap, double learningRate, int epoch) {
+    public synchronized O classify(BufferedImage image) {
+
+        toInputs(image, inputs, 0);
+
+        if (scratch == null) {
+            scratch = new double[neuralNet.getWeightSnapshot().getScratchSize()];
+        }
+        neuralNet.predict(inputs, outputs, scratch);
 
+        return getLabel(outputs, 0);
     }
 
+    /**
+     * Classifies many images at once. The images run through the network as one batch, which is much faster than
+     * classifying them one at a time.
+     *
+     * @param images The images to classify.
+     * @return Returns the class of each image, or null for images whose winning output node has no class.
+     * @throws IllegalArgumentException If an image does not have as many pixels as the network has inputs.
+     */
+    public List<O> classifyBatch(List<BufferedImage> images) {
+
+        double[] batchInputs = new double[images.size() * numOfInputs];
+        double[] batchOutputs = new double[images.size() * numOfOutputs];
+
+        for (int i = 0; i < images.size(); i++) {
+            toInputs(images.get(i), batchInputs, i * numOfInputs);
+        }
+
+        neuralNet.predictBatch(batchInputs, images.size(), batchOutputs);
+
+        List<O> classes = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            classes.add(getLabel(batchOutputs, i * numOfOutputs));
+        }
+        return classes;
+    }
+
+    /**
+     * Trains the classifier with one pass of stochastic gradient descent over the examples.
+     *
+     * @param inputOutputMap The examples, mapping each image to its class.
+     * @throws IllegalArgumentException If there are more classes than output nodes or an image does not have as
+     *                                  many pixels as the network has inputs.
+     */
     @Override
     public void train(Map<BufferedImage, O> inputOutputMap) {
+        train(inputOutputMap, 1, 1);
+    }
+
+    /**
+     * Trains the classifier with mini-batch gradient descent, in batches of {@link #DEFAULT_BATCH_SIZE} images.
+     *
+     * @param inputOutputMap The examples, mapping each image to its class.
+     * @param learningRate   The learning rate of the training.
+     * @param epoch          Epoch time of the training.
+     * @throws IllegalArgumentException If there are more classes than output nodes or an image does not have as
+     *                                  many pixels as the network has inputs.
+     */
+    @Override
+    public void batchTrain(Map<BufferedImage, O> inputOutputMap, double learningRate, int epoch) {
+        batchTrain(inputOutputMap, learningRate, DEFAULT_BATCH_SIZE, epoch);
+    }
+
+    /**
+     * Trains the classifier with mini-batch gradient descent. Images are converted to inputs a batch at a time
+     * into buffers allocated once, so the pixels of the whole training set are never held as network inputs.
+     *
+     * @param inputOutputMap The examples, mapping each image to its class.
+     * @param learningRate   The learning rate of the training.
+     * @param batchSize      The number of images per weight update.
+     * @param epoch          Epoch time of the training.
+     * @throws IllegalArgumentException If the batch size is not positive, there are more classes than output
+     *                                  nodes or an image does not have as many pixels as the network has inputs.
+     */
+    public void batchTrain(Map<BufferedImage, O> inputOutputMap, double learningRate, int batchSize, int epoch) {
+        neuralNet.setLearningRate(learningRate);
+        train(inputOutputMap, batchSize, epoch);
+    }
+
+    private void train(Map<BufferedImage, O> inputOutputMap, int batchSize, int epoch) {
+
+        if (inputOutputMap.isEmpty()) {
+            return;
+        }
+
+        try {
+            neuralNet.trainBatch(new ImageDataSource(inputOutputMap), batchSize, epoch);
+        } catch (IOException e) {
+            // Images are read from memory.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Writes the pixels of an image into the inputs of a sample.
+    private void toInputs(BufferedImage image, double[] buffer, int offset) {
+
+        if (image.getWidth() * image.getHeight() != numOfInputs) {
+            throw new IllegalArgumentException("Image has " + image.getWidth() * image.getHeight()
+                    + " pixels but the network has " + numOfInputs + " inputs");
+        }
+
+        ImagePixels.toGrayscale(image, buffer, offset);
+    }
+
+    // Returns the class of the output node with the largest output of a sample.
+    private synchronized O getLabel(double[] buffer, int offset) {
+
+        int best = 0;
+        for (int j = 1; j < numOfOutputs; j++) {
+            if (buffer[offset + j] > buffer[offset + best]) {
+                best = j;
+            }
+        }
+
+        return best < labels.size() ? labels.get(best) : null;
+    }
+
+    // Returns the output node of a class, assigning the next free one to a new class.
+    private synchronized int getLabelIndex(O label) {
+
+        Integer index = labelIndices.get(label);
+
+        if (index == null) {
+            if (labels.size() == numOfOutputs) {
+                throw new IllegalArgumentException("There are more classes than the " + numOfOutputs
+                        + " output nodes");
+            }
+            index = labels.size();
+            labels.add(label);
+            labelIndices.put(label, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the classes in the order of the output nodes.
+     *
+     * @return Returns the classes in the order of the output nodes.
+     */
+    public synchronized List<O> getLabels() {
+        return new ArrayList<>(labels);
+    }
+
+    // Streams training images as samples, converting their pixels as they are read.
+    private class ImageDataSource implements TrainingDataSource {
+
+        private final List<BufferedImage> images;
+        private final int[] labelIndices;
+        private int position;
+
+        ImageDataSource(Map<BufferedImage, O> inputOutputMap) {
+
+            images = new ArrayList<>(inputOutputMap.size());
+            labelIndices = new int[inputOutputMap.size()];
+
+            for (Map.Entry<BufferedImage, O> entry : inputOutputMap.entrySet()) {
+                labelIndices[images.size()] = getLabelIndex(entry.getValue());
+                images.add(entry.getKey());
+            }
+        }
+
+        @Override
+        public int getNumOfInputs() {
+            return numOfInputs;
+        }
+
+        @Override
+        public int getNumOfOutputs() {
+            return numOfOutputs;
+        }
+
+        @Override
+        public int read(double[] inputs, double[] targets, int maxSamples) {
+
+            int count = Math.min(maxSamples, images.size() - position);
+
+            for (int i = 0; i < count; i++) {
+                toInputs(images.get(position + i), inputs, i * numOfInputs);
+                for (int j = 0; j < numOfOutputs; j++) {
+                    targets[i * numOfOutputs + j] = j == labelIndices[position + i] ? 1 : 0;
+                }
+            }
+
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void reset() {
+            position = 0;
+        }
 
+        @Override
+        public void close() {
+        }
     }
 }
@@ -0,0 +1,178 @@
+package classification;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Converts {@link BufferedImage}s into network inputs. Pixels are read straight from the arrays behind the
+ * image's {@link DataBuffer} where the layout allows it, which is much faster than reading them one at a time
+ * with {@link BufferedImage#getRGB(int, int)}. Other images fall back to reading whole rows with getRGB.
+ */
+public final class ImagePixels {
+
+    // Rec. 601 luma weights.
+    private static final double RED_WEIGHT = 0.299;
+    private static final double GREEN_WEIGHT = 0.587;
+    private static final double BLUE_WEIGHT = 0.114;
+
+    private ImagePixels() {
+    }
+
+    /**
+     * Writes the grayscale intensity of every pixel of an image, in row-major order and scaled to [0, 1], into
+     * an array. Color pixels are converted with the Rec. 601 luma weights; alpha is ignored.
+     *
+     * @param image  The image to convert.
+     * @param out    The array receiving width * height values.
+     * @param offset The index in the array of the value of the top-left pixel.
+     * @throws IllegalArgumentException If the array is too short.
+     */
+    public static void toGrayscale(BufferedImage image, double[] out, int offset) {
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        if (out.length - offset < width * height) {
+            throw new IllegalArgumentException("Array cannot hold " + width * height + " values from " + offset);
+        }
+
+        Raster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        int colorSpace = image.getColorModel().getColorSpace().getType();
+        boolean gray = colorSpace == ColorSpace.TYPE_GRAY && sampleModel.getNumBands() <= 2;
+        boolean rgb = colorSpace == ColorSpace.TYPE_RGB && sampleModel.getNumBands() >= 3;
+
+        // Premultiplied colors have to be divided by alpha, which getRGB does.
+        rgb = rgb && !image.isAlphaPremultiplied();
+
+        if (rgb && sampleModel instanceof SinglePixelPackedSampleModel && dataBuffer instanceof DataBufferInt) {
+            packedToGrayscale(raster, (SinglePixelPackedSampleModel) sampleModel, (DataBufferInt) dataBuffer,
+                    out, offset);
+            return;
+        }
+
+        if ((gray || rgb) && sampleModel instanceof ComponentSampleModel
+                && isSingleBank((ComponentSampleModel) sampleModel)) {
+            if (dataBuffer instanceof DataBufferByte) {
+                componentsToGrayscale(raster, (ComponentSampleModel) sampleModel,
+                        ((DataBufferByte) dataBuffer).getData(), 0xFF, gray, out, offset);
+                return;
+            }
+            if (dataBuffer instanceof DataBufferUShort) {
+                componentsToGrayscale(raster, (ComponentSampleModel) sampleModel,
+                        ((DataBufferUShort) dataBuffer).getData(), 0xFFFF, gray, out, offset);
+                return;
+            }
+        }
+
+        rgbToGrayscale(image, out, offset);
+    }
+
+    private static boolean isSingleBank(ComponentSampleModel sampleModel) {
+        for (int bank : sampleModel.getBankIndices()) {
+            if (bank != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Reads pixels packed into ints, such as TYPE_INT_RGB, TYPE_INT_ARGB and TYPE_INT_BGR.
+    private static void packedToGrayscale(Raster raster, SinglePixelPackedSampleModel sampleModel,
+                                          DataBufferInt dataBuffer, double[] out, int offset) {
+
+        int[] data = dataBuffer.getData();
+        int[] masks = sampleModel.getBitMasks();
+        int[] shifts = sampleModel.getBitOffsets();
+        int stride = sampleModel.getScanlineStride();
+        // Index of the top-left pixel; child rasters share the data of their parent.
+        int base = dataBuffer.getOffset() - raster.getSampleModelTranslateY() * stride
+                - raster.getSampleModelTranslateX();
+
+        double redScale = RED_WEIGHT / (masks[0] >>> shifts[0]);
+        double greenScale = GREEN_WEIGHT / (masks[1] >>> shifts[1]);
+        double blueScale = BLUE_WEIGHT / (masks[2] >>> shifts[2]);
+
+        for (int y = 0; y < raster.getHeight(); y++) {
+            int row = base + y * stride;
+            for (int x = 0; x < raster.getWidth(); x++) {
+                int pixel = data[row + x];
+                out[offset++] = ((pixel & masks[0]) >>> shifts[0]) * redScale
+                        + ((pixel & masks[1]) >>> shifts[1]) * greenScale
+                        + ((pixel & masks[2]) >>> shifts[2]) * blueScale;
+            }
+        }
+    }
+
+    // Reads pixels stored one byte per sample, such as TYPE_BYTE_GRAY, TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR.
+    private static void componentsToGrayscale(Raster raster, ComponentSampleModel sampleModel, byte[] data,
+                                              int maxValue, boolean gray, double[] out, int offset) {
+
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int base = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX() * pixelStride;
+
+        for (int y = 0; y < raster.getHeight(); y++) {
+            int pixel = base + y * scanlineStride;
+            for (int x = 0; x < raster.getWidth(); x++, pixel += pixelStride) {
+                if (gray) {
+                    out[offset++] = (double) (data[pixel + bandOffsets[0]] & maxValue) / maxValue;
+                } else {
+                    out[offset++] = ((data[pixel + bandOffsets[0]] & maxValue) * RED_WEIGHT
+                            + (data[pixel + bandOffsets[1]] & maxValue) * GREEN_WEIGHT
+                            + (data[pixel + bandOffsets[2]] & maxValue) * BLUE_WEIGHT) / maxValue;
+                }
+            }
+        }
+    }
+
+    // Reads pixels stored one short per sample, such as TYPE_USHORT_GRAY.
+    private static void componentsToGrayscale(Raster raster, ComponentSampleModel sampleModel, short[] data,
+                                              int maxValue, boolean gray, double[] out, int offset) {
+
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int base = raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+                - raster.getSampleModelTranslateX() * pixelStride;
+
+        for (int y = 0; y < raster.getHeight(); y++) {
+            int pixel = base + y * scanlineStride;
+            for (int x = 0; x < raster.getWidth(); x++, pixel += pixelStride) {
+                if (gray) {
+                    out[offset++] = (double) (data[pixel + bandOffsets[0]] & maxValue) / maxValue;
+                } else {
+                    out[offset++] = ((data[pixel + bandOffsets[0]] & maxValue) * RED_WEIGHT
+                            + (data[pixel + bandOffsets[1]] & maxValue) * GREEN_WEIGHT
+                            + (data[pixel + bandOffsets[2]] & maxValue) * BLUE_WEIGHT) / maxValue;
+                }
+            }
+        }
+    }
+
+    // Reads any other image a row at a time through its color model.
+    private static void rgbToGrayscale(BufferedImage image, double[] out, int offset) {
+
+        int width = image.getWidth();
+        int[] row = new int[width];
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int pixel : row) {
+                out[offset++] = (((pixel >> 16) & 0xFF) * RED_WEIGHT + ((pixel >> 8) & 0xFF) * GREEN_WEIGHT
+                        + (pixel & 0xFF) * BLUE_WEIGHT) / 255;
+            }
+        }
+    }
+}
@@ -4,12 +4,21 @@ import neuralnets.SimpleNeuralNet;
 
 import java.util.List;
 
-public abstract class NeuralNetClassifer<I, O> implements Classifier<I, O> {
+public abstract class NeuralNetClassifier<I, O> implements Classifier<I, O> {
 
 
     protected SimpleNeuralNet neuralNet;
 
-    public NeuralNetClassifer(List<Integer> nodeConfig) {
+    public NeuralNetClassifier(List<Integer> nodeConfig) {
         neuralNet = new SimpleNeuralNet(nodeConfig);
     }
+
+    /**
+     * Returns the network the classifier runs on.
+     *
+     * @return Returns the network the classifier runs on.
+     */
+    public SimpleNeuralNet getNeuralNet() {
+        return neuralNet;
+    }
 }
@@ -0,0 +1,274 @@
+package neuralnets;
+
+import utils.ActivationFunction;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Saves checkpoints of a {@link SimpleNeuralNet} while it trains, every given number of epochs, every given
+ * interval of wall-clock time, or both. At a checkpoint the weights are copied into a {@link WeightSnapshot} on
+ * the training thread, and the copy is written to disk by a background thread while training goes on.
+ *
+ * Checkpoints are written in the format of {@link ModelSerializer} to files named "checkpoint-&lt;epoch&gt;.nnet"
+ * in the checkpoint directory. A checkpoint is written to a temporary file and then moved into place, so a
+ * crash during a write never leaves a partial checkpoint behind. Only the most recent checkpoints are kept.
+ */
+public class Checkpointer implements AutoCloseable {
+
+    private static final Pattern FILE_NAME = Pattern.compile("checkpoint-(\\d+)\\.nnet");
+    // Number of checkpoints kept in the directory.
+    private static final int NUM_OF_KEPT_CHECKPOINTS = 2;
+
+    private final Path directory;
+    private final int epochInterval;
+    private final long timeInterval;
+    private final ExecutorService writer;
+
+    // The newest checkpoint not yet being written.
+    private final AtomicReference<Runnable> queuedWrite = new AtomicReference<>();
+    private Future<?> pendingWrite;
+    private long lastCheckpointTime;
+    private volatile Exception writeFailure;
+
+    /**
+     * Creates a checkpointer that saves every given number of epochs, every given interval of time, or both.
+     *
+     * @param directory          The directory the checkpoints are written to. It is created if it does not exist.
+     * @param epochInterval      The number of epochs between checkpoints, or 0 to not checkpoint by epoch.
+     * @param timeIntervalMillis The milliseconds between checkpoints, or 0 to not checkpoint by time.
+     * @throws IOException              If the directory cannot be created.
+     * @throws IllegalArgumentException If an interval is negative or both intervals are 0.
+     */
+    public Checkpointer(Path directory, int epochInterval, long timeIntervalMillis) throws IOException {
+
+        if (epochInterval < 0 || timeIntervalMillis < 0) {
+            throw new IllegalArgumentException("Checkpoint intervals must not be negative");
+        }
+        if (epochInterval == 0 && timeIntervalMillis == 0) {
+            throw new IllegalArgumentException("At least one checkpoint interval must be positive");
+        }
+
+        this.directory = Files.createDirectories(directory);
+        this.epochInterval = epochInterval;
+        this.timeInterval = TimeUnit.MILLISECONDS.toNanos(timeIntervalMillis);
+        this.lastCheckpointTime = System.nanoTime();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "neural-net-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Called by training at the end of every epoch. Takes a checkpoint if one is due. Training never waits for
+     * the disk: if checkpoints are taken faster than they are written, a checkpoint still waiting to be written is
+     * replaced by the newer one.
+     *
+     * @param neuralNet The network being trained.
+     * @param epoch     The number of epochs trained so far, counting those before a resume.
+     * @throws IllegalStateException If writing an earlier checkpoint failed.
+     */
+    public synchronized void epochFinished(SimpleNeuralNet neuralNet, int epoch) {
+
+        checkWriteFailure();
+
+        long now = System.nanoTime();
+        boolean due = (epochInterval > 0 && epoch % epochInterval == 0)
+                || (timeInterval > 0 && now - lastCheckpointTime >= timeInterval);
+
+        if (!due) {
+            return;
+        }
+
+        WeightSnapshot snapshot;
+        ActivationFunction activationFunction;
+        ActivationFunction outputActivationFunction;
+        double learningRate;
+        Precision precision;
+
+        synchronized (neuralNet) {
+            snapshot = neuralNet.getTrainingNetwork().snapshot();
+            activationFunction = neuralNet.getActivationFunction();
+            outputActivationFunction = neuralNet.getOutputActivationFunction();
+            learningRate = neuralNet.getLearningRate();
+            precision = neuralNet.getPrecision();
+        }
+
+        lastCheckpointTime = now;
+        Runnable write = () -> {
+            try {
+                write(snapshot, activationFunction, outputActivationFunction, learningRate, precision, epoch);
+            } catch (IOException | RuntimeException e) {
+                writeFailure = e;
+            }
+        };
+
+        // Only submit a task if none is waiting; a waiting task writes whichever checkpoint is queued when it runs.
+        if (queuedWrite.getAndSet(write) == null) {
+            pendingWrite = writer.submit(() -> queuedWrite.getAndSet(null).run());
+        }
+    }
+
+    // Writes a checkpoint and deletes the checkpoints no longer kept, or the temporary file if the write fails.
+    // Runs on the writer thread.
+    private void write(WeightSnapshot snapshot, ActivationFunction activationFunction,
+                       ActivationFunction outputActivationFunction, double learningRate, Precision precision,
+                       int epoch) throws IOException {
+
+        Path target = directory.resolve("checkpoint-" + epoch + ".nnet");
+        Path temporary = directory.resolve("checkpoint-" + epoch + ".nnet.tmp");
+
+        try {
+            ModelSerializer.save(snapshot, activationFunction, outputActivationFunction, learningRate, precision,
+                    temporary);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+
+        List<Integer> epochs = listCheckpoints();
+        for (int i = 0; i < epochs.size() - NUM_OF_KEPT_CHECKPOINTS; i++) {
+            Files.deleteIfExists(directory.resolve("checkpoint-" + epochs.get(i) + ".nnet"));
+        }
+    }
+
+    // Returns the epochs of the checkpoints in the directory, in ascending order.
+    private List<Integer> listCheckpoints() throws IOException {
+
+        List<Integer> epochs = new ArrayList<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    epochs.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+
+        Collections.sort(epochs);
+        return epochs;
+    }
+
+    /**
+     * Returns the file of the latest checkpoint in the directory.
+     *
+     * @return Returns the file of the latest checkpoint, or null if there is none.
+     * @throws IOException If the directory cannot be read.
+     */
+    public Path getLatestCheckpoint() throws IOException {
+
+        List<Integer> epochs = listCheckpoints();
+
+        if (epochs.isEmpty()) {
+            return null;
+        }
+        return directory.resolve("checkpoint-" + epochs.get(epochs.size() - 1) + ".nnet");
+    }
+
+    /**
+     * Returns the number of epochs trained when the latest checkpoint in the directory was taken.
+     *
+     * @return Returns the epoch of the latest checkpoint, or 0 if there is none.
+     * @throws IOException If the directory cannot be read.
+     */
+    public int getLatestEpoch() throws IOException {
+
+        List<Integer> epochs = listCheckpoints();
+        return epochs.isEmpty() ? 0 : epochs.get(epochs.size() - 1);
+    }
+
+    /**
+     * Copies the weights of the latest checkpoint into a network, so that training can resume where it stopped.
+     * The network keeps its learning rate and activation functions.
+     *
+     * @param neuralNet The network to restore. It must have the layers of the checkpointed network.
+     * @return Returns the number of epochs trained when the checkpoint was taken, or 0 if there is no checkpoint
+     * and the network was left unchanged.
+     * @throws IOException If the checkpoint cannot be read or its layers differ from the network's.
+     */
+    public int restore(SimpleNeuralNet neuralNet) throws IOException {
+
+        int epoch = getLatestEpoch();
+
+        if (epoch > 0) {
+            ModelSerializer.copyWeights(ModelSerializer.map(getLatestCheckpoint()), neuralNet);
+            neuralNet.weightsTrained();
+        }
+
+        return epoch;
+    }
+
+    /**
+     * Waits until the checkpoint being written, if any, is on disk.
+     *
+     * @throws IOException If writing a checkpoint failed.
+     */
+    public void flush() throws IOException {
+
+        Future<?> write;
+        synchronized (this) {
+            write = pendingWrite;
+        }
+
+        if (write != null) {
+            try {
+                write.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a checkpoint", e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+
+        Exception failure = writeFailure;
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    // Rethrows the failure of an earlier write on the training thread.
+    private void checkWriteFailure() {
+        if (writeFailure != null) {
+            throw new IllegalStateException("Writing a checkpoint failed", writeFailure);
+        }
+    }
+
+    /**
+     * Waits for the checkpoint being written and stops the writer thread. The checkpointer cannot take
+     * checkpoints afterwards, but can still restore them.
+     *
+     * @throws IOException If writing a checkpoint failed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            writer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package neuralnets;
+
+import neuralnets.nodes.*;
+import utils.ActivationFunction;
+import utils.Kernels;
+import utils.Matrix;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A fully connected network lowered from the node/edge graph of a {@link NeuralNetwork} into contiguous
+ * per-layer weight matrices and bias vectors. A forward pass is then a sequence of matrix-vector products
+ * instead of a recursive traversal of the graph.
+ *
+ * The results are identical to the graph: like {@link HiddenNode#netOutput()}, the value of the bias node
+ * is added once for every incoming edge of a node, and the terms are summed in the same order. Every node is
+ * assumed to have an edge from every node of the layer below, so only fully connected graphs can be compiled; a
+ * graph with removed or doubled edges runs through its nodes.
+ */
+public class CompiledNetwork {
+
+    private final NeuralNetwork<Double, Double> neuralNetwork;
+
+    // Number of nodes at each layer, excluding bias nodes.
+    private final int[] layerSizes;
+    // Layer l holds a layerSizes[l + 1] x layerSizes[l] row-major matrix, one row per node of layer l + 1.
+    private final double[][] weights;
+    // Layer l holds the weight of the edge from the bias of layer l to each node of layer l + 1.
+    private final double[][] biases;
+    // Value of the bias node at each layer.
+    private final double[] biasValues;
+    // Layer l holds the activation function applied to the outputs of weights[l].
+    private final ActivationFunction[] activationFunctions;
+    // Activations of every layer for the last forward pass. Index 0 holds the inputs.
+    private final double[][] activations;
+    // Gradients accumulated by backward(Matrix[], Matrix).
+    private final Gradients gradients;
+
+    private final Map<INode, Integer> nodeIndices;
+    private final InputNode[] inputNodes;
+
+    private int weightVersion;
+
+    private CompiledNetwork(NeuralNetwork<Double, Double> neuralNetwork, int[] layerSizes) {
+        this.neuralNetwork = neuralNetwork;
+        this.layerSizes = layerSizes;
+
+        int numOfLayers = layerSizes.length;
+        weights = new double[numOfLayers - 1][];
+        biases = new double[numOfLayers - 1][];
+        biasValues = new double[numOfLayers - 1];
+        activationFunctions = new ActivationFunction[numOfLayers - 1];
+        activations = new double[numOfLayers][];
+        nodeIndices = new IdentityHashMap<>();
+        inputNodes = new InputNode[layerSizes[0]];
+
+        for (int l = 0; l < numOfLayers; l++) {
+            activations[l] = new double[layerSizes[l]];
+            if (l < numOfLayers - 1) {
+                weights[l] = new double[layerSizes[l + 1] * layerSizes[l]];
+                biases[l] = new double[layerSizes[l + 1]];
+            }
+        }
+
+        gradients = new Gradients(layerSizes);
+    }
+
+    /**
+     * Lowers the graph of a fully connected network into contiguous weight matrices.
+     *
+     * @param neuralNetwork A fully connected network, such as a {@link SimpleNeuralNet}.
+     * @return Returns the compiled network.
+     * @throws IllegalArgumentException If the network has fewer than two layers.
+     * @throws IllegalStateException    If the graph is not fully connected.
+     */
+    public static CompiledNetwork compile(NeuralNetwork<Double, Double> neuralNetwork) {
+
+        int numOfLayers = neuralNetwork.nodeConfig.size();
+
+        if (numOfLayers < 2) {
+            throw new IllegalArgumentException("Network must have at least two layers");
+        }
+
+        int[] layerSizes = new int[numOfLayers];
+        for (int l = 0; l < numOfLayers; l++) {
+            layerSizes[l] = neuralNetwork.nodeConfig.get(l);
+        }
+
+        CompiledNetwork compiled = new CompiledNetwork(neuralNetwork, layerSizes);
+
+        // Number the nodes of each layer in creation order, which is the order the edges were created in.
+        for (int l = 0; l < numOfLayers; l++) {
+            int index = 0;
+            for (INode node : neuralNetwork.getNodesAtLayer(l)) {
+                if (node instanceof Bias) {
+                    compiled.biasValues[l] = ((Bias) node).getValue();
+                } else {
+                    if (l == 0) {
+                        compiled.inputNodes[index] = (InputNode) node;
+                    }
+                    compiled.nodeIndices.put(node, index++);
+                }
+            }
+        }
+
+        compiled.refresh();
+
+        return compiled;
+    }
+
+    /**
+     * Copies the current weights of the edges of the graph, and the activation functions of the network, into
+     * the compiled network.
+     *
+     * @throws IllegalStateException If the graph is no longer fully connected, for example after an edge was
+     *                               removed.
+     */
+    public synchronized void refresh() {
+
+        weightVersion = neuralNetwork.getWeightVersion();
+
+        for (int l = 0; l < activationFunctions.length; l++) {
+            activationFunctions[l] = l == activationFunctions.length - 1
+                    ? neuralNetwork.getOutputActivationFunction() : neuralNetwork.getActivationFunction();
+        }
+
+        for (int l = 0; l < weights.length; l++) {
+            int numOfInputs = layerSizes[l];
+            DenseLayer dense = denseLayer(l);
+
+            if (dense != null) {
+                if (!dense.isFullyConnected()) {
+                    throw new IllegalStateException("Layer " + l + " is not fully connected");
+                }
+                dense.copyWeights(weights[l], biases[l]);
+                continue;
+            }
+
+            // The compiled layer adds the bias value once per input, so every pair of nodes needs exactly one edge.
+            boolean[] connected = new boolean[weights[l].length + biases[l].length];
+            int numOfEdges = 0;
+
+            for (NodeEdge edge : neuralNetwork.getEdges().get(l)) {
+                int to = nodeIndices.get(edge.getToNode());
+                int slot = edge.getFromNode() instanceof Bias
+                        ? weights[l].length + to : to * numOfInputs + nodeIndices.get(edge.getFromNode());
+
+                if (connected[slot]) {
+                    throw new IllegalStateException("Layer " + l + " has more than one edge between two nodes");
+                }
+                connected[slot] = true;
+                numOfEdges++;
+
+                if (slot >= weights[l].length) {
+                    biases[l][to] = edge.getWeight();
+                } else {
+                    weights[l][slot] = edge.getWeight();
+                }
+            }
+
+            if (numOfEdges != connected.length) {
+                throw new IllegalStateException("Layer " + l + " is not fully connected");
+            }
+        }
+    }
+
+    /**
+     * Returns true if the weights of the graph changed since they were last copied.
+     *
+     * @return Returns true if the weights of the graph changed since they were last copied.
+     */
+    public synchronized boolean isStale() {
+        return weightVersion != neuralNetwork.getWeightVersion();
+    }
+
+    /**
+     * Runs a forward pass layer by layer.
+     *
+     * @param inputs  The input values. Only the first n values are used, where n is the number of inputs.
+     * @param outputs The array the outputs are written to.
+     */
+    public synchronized void forward(double[] inputs, double[] outputs) {
+
+        System.arraycopy(inputs, 0, activations[0], 0, layerSizes[0]);
+
+        for (int l = 0; l < weights.length; l++) {
+            forwardLayer(activations[l], 0, activations[l + 1], 0, weights[l], biases[l], biasValues[l],
+                    layerSizes[l], layerSizes[l + 1], activationFunctions[l]);
+        }
+
+        System.arraycopy(activations[weights.length], 0, outputs, 0, outputs.length);
+    }
+
+    /**
+     * Calculates the outputs of one layer from the outputs of the layer before it, summing the terms of each
+     * node in the same order as {@link HiddenNode#netOutput()} and then activating the whole layer at once.
+     *
+     * @param in                 The array holding the outputs of the previous layer.
+     * @param inOffset           The index of the first output of the previous layer.
+     * @param out                The array the outputs of the layer are written to.
+     * @param outOffset          The index the outputs of the layer are written from.
+     * @param w                  The row-major weight matrix of the layer.
+     * @param b                  The weights of the edges from the bias node.
+     * @param biasValue          The value of the bias node.
+     * @param numOfInputs        The number of nodes in the previous layer.
+     * @param numOfOutputs       The number of nodes in the layer.
+     * @param activationFunction The activation function.
+     */
+    static void forwardLayer(double[] in, int inOffset, double[] out, int outOffset, double[] w, double[] b,
+                             double biasValue, int numOfInputs, int numOfOutputs,
+                             ActivationFunction activationFunction) {
+
+        for (int j = 0; j < numOfOutputs; j++) {
+            double net = 0;
+            int row = j * numOfInputs;
+            for (int k = 0; k < numOfInputs; k++) {
+                net += in[inOffset + k] * w[row + k] + biasValue;
+            }
+            net += biasValue * b[j] + biasValue;
+            out[outOffset + j] = net;
+        }
+
+        activationFunction.applyInPlace(out, outOffset, outOffset + numOfOutputs);
+    }
+
+    /**
+     * Calculates the outputs of one layer for a batch of samples as a single matrix-matrix product.
+     *
+     * @param in                 A batch x inputs matrix with the outputs of the previous layer.
+     * @param w                  The row-major weight matrix of the layer.
+     * @param b                  The weights of the edges from the bias node.
+     * @param biasValue          The value of the bias node.
+     * @param numOfOutputs       The number of nodes in the layer.
+     * @param activationFunction The activation function.
+     * @return Returns a batch x outputs matrix with the outputs of the layer.
+     */
+    static Matrix forwardLayer(Matrix in, double[] w, double[] b, double biasValue, int numOfOutputs,
+                               ActivationFunction activationFunction) {
+
+        int numOfInputs = in.getNumOfCols();
+        Matrix net = Matrix.multTransposed(in, new Matrix(w, numOfOutputs, numOfInputs));
+        double[] values = net.getData();
+        // The graph adds the bias value once per incoming edge, including the edge from the bias node.
+        double edgeBias = (numOfInputs + 1) * biasValue;
+
+        for (int i = 0; i < values.length; i += numOfOutputs) {
+            for (int j = 0; j < numOfOutputs; j++) {
+                values[i + j] += biasValue * b[j] + edgeBias;
+            }
+            activationFunction.applyInPlace(values, i, i + numOfOutputs);
+        }
+
+        return net;
+    }
+
+    /**
+     * Runs a forward pass using the values currently held by the input nodes of the graph.
+     *
+     * @param outputs The array the outputs are written to.
+     */
+    public synchronized void forward(double[] outputs) {
+
+        double[] inputs = activations[0];
+        for (int i = 0; i < inputNodes.length; i++) {
+            inputs[i] = inputNodes[i].getInputVal();
+        }
+
+        forward(inputs, outputs);
+    }
+
+    /**
+     * Runs a forward pass for a batch of samples at once. Each layer is one matrix-matrix product of the
+     * activations of the previous layer with the transposed weights, so the weights are read once per batch
+     * rather than once per sample. Results match {@link #forward(double[], double[])} up to rounding. Only the
+     * weights are shared, so threads may run batches concurrently.
+     *
+     * @param inputs A batch x inputs matrix with one sample per row.
+     * @return Returns the activations of every layer, one batch x nodes matrix per layer. Index 0 holds the
+     * inputs and the last index holds the outputs.
+     * @throws IllegalArgumentException If the number of columns does not match the number of inputs.
+     */
+    public Matrix[] forward(Matrix inputs) {
+
+        if (inputs.getNumOfCols() != layerSizes[0]) {
+            throw new IllegalArgumentException("Expected " + layerSizes[0] + " inputs but got " + inputs.getNumOfCols());
+        }
+
+        Matrix[] layerActivations = new Matrix[layerSizes.length];
+        layerActivations[0] = inputs;
+
+        for (int l = 0; l < weights.length; l++) {
+            layerActivations[l + 1] = forwardLayer(layerActivations[l], weights[l], biases[l], biasValues[l],
+                    layerSizes[l + 1], activationFunctions[l]);
+        }
+
+        return layerActivations;
+    }
+
+    /**
+     * Runs a backward pass for a batch of samples and adds the weight gradients to the accumulated ones.
+     *
+     * @param layerActivations The activations returned by {@link #forward(Matrix)} for the batch.
+     * @param targets          A batch x outputs matrix with the target outputs of each sample.
+     * @throws IllegalArgumentException If the targets don't match the size of the output layer.
+     * @see #backward(Matrix[], Matrix, Gradients)
+     */
+    public synchronized void backward(Matrix[] layerActivations, Matrix targets) {
+        backward(layerActivations, targets, gradients);
+    }
+
+    /**
+     * Runs a backward pass for a batch of samples and adds the weight gradients to the given ones. Error
+     * terms are calculated the same way as {@link SimpleNeuralNet#backpropagate(Double, Double)}, except that each
+     * output node uses its own target, and are propagated one layer at a time as matrix-matrix products. Only
+     * the weights are shared, so threads may run batches concurrently into their own gradients.
+     *
+     * @param layerActivations The activations returned by {@link #forward(Matrix)} for the batch.
+     * @param targets          A batch x outputs matrix with the target outputs of each sample.
+     * @param gradients        The gradients to add to, created by {@link #newGradients()}.
+     * @throws IllegalArgumentException If the targets don't match the size of the output layer.
+     */
+    public void backward(Matrix[] layerActivations, Matrix targets, Gradients gradients) {
+
+        int outputLayer = layerSizes.length - 1;
+        Matrix outputs = layerActivations[outputLayer];
+
+        if (targets.getNumOfRows() != outputs.getNumOfRows() || targets.getNumOfCols() != outputs.getNumOfCols()) {
+            throw new IllegalArgumentException("Targets don't match the size of the outputs");
+        }
+
+        double[] out = outputs.getData();
+        double[] target = targets.getData();
+        double[] delta = new double[out.length];
+
+        for (int i = 0; i < out.length; i++) {
+            delta[i] = -(target[i] - out[i]);
+        }
+        int numOfOutputs = outputs.getNumOfCols();
+        for (int i = 0; i < delta.length; i += numOfOutputs) {
+            activationFunctions[outputLayer - 1].deltaInPlace(delta, out, i, i + numOfOutputs);
+        }
+
+        Matrix deltas = new Matrix(delta, outputs.getNumOfRows(), outputs.getNumOfCols());
+        Kernels kernels = Kernels.get();
+
+        for (int l = outputLayer - 1; l >= 0; l--) {
+            Matrix previous = layerActivations[l];
+
+            // Every edge's gradient is the error term of its to node times the output of its from node.
+            double[] gradient = Matrix.mult(deltas.transpose(), previous).getData();
+            kernels.axpy(1, gradient, 0, gradients.weights[l], 0, gradient.length);
+
+            double[] d = deltas.getData();
+            int numOfNodes = layerSizes[l + 1];
+            for (int i = 0; i < d.length; i += numOfNodes) {
+                kernels.axpy(biasValues[l], d, i, gradients.biases[l], 0, numOfNodes);
+            }
+
+            if (l > 0) {
+                // Like HiddenNode.calculateDelta, the error of a hidden node sums the error terms of the nodes it
+                // feeds, weighted by the edges.
+                Matrix errors = Matrix.mult(deltas, new Matrix(weights[l], layerSizes[l + 1], layerSizes[l]));
+                double[] e = errors.getData();
+                double[] a = previous.getData();
+                int numOfInputs = layerSizes[l];
+                for (int i = 0; i < e.length; i += numOfInputs) {
+                    activationFunctions[l - 1].deltaInPlace(e, a, i, i + numOfInputs);
+                }
+                deltas = errors;
+            }
+        }
+
+        gradients.numOfSamples += targets.getNumOfRows();
+    }
+
+    /**
+     * Updates the weights with the average of the accumulated gradients, copies them back into the edges of the
+     * graph and clears the gradients.
+     *
+     * @param learningRate The learning rate.
+     */
+    public synchronized void applyGradients(double learningRate) {
+
+        if (gradients.numOfSamples == 0) {
+            return;
+        }
+
+        applyGradients(gradients, learningRate);
+        writeBack();
+    }
+
+    // Returns the gradients accumulated by backward(Matrix[], Matrix) and not yet applied.
+    Gradients getGradients() {
+        return gradients;
+    }
+
+    /**
+     * Updates the weights with the average of the given gradients and clears them. The edges of the graph are
+     * not updated. The weights are written without locking, so concurrent callers race on them.
+     *
+     * @param gradients    The gradients to apply.
+     * @param learningRate The learning rate.
+     */
+    public void applyGradients(Gradients gradients, double learningRate) {
+
+        if (gradients.numOfSamples == 0) {
+            return;
+        }
+
+        double step = learningRate / gradients.numOfSamples;
+        Kernels kernels = Kernels.get();
+
+        for (int l = 0; l < weights.length; l++) {
+            kernels.axpy(-step, gradients.weights[l], 0, weights[l], 0, weights[l].length);
+            kernels.axpy(-step, gradients.biases[l], 0, biases[l], 0, biases[l].length);
+        }
+
+        gradients.clear();
+    }
+
+    /**
+     * Discards the accumulated gradients.
+     */
+    public synchronized void clearGradients() {
+        gradients.clear();
+    }
+
+    /**
+     * Creates an empty set of gradients for this network.
+     *
+     * @return Returns an empty set of gradients for this network.
+     */
+    public Gradients newGradients() {
+        return new Gradients(layerSizes);
+    }
+
+    /**
+     * Copies the compiled weights into the edges of the graph.
+     */
+    public synchronized void writeBack() {
+
+        for (int l = 0; l < weights.length; l++) {
+            int numOfInputs = layerSizes[l];
+            DenseLayer dense = denseLayer(l);
+
+            if (dense != null) {
+                dense.setWeights(weights[l], biases[l]);
+            }
+
+            for (NodeEdge edge : dense != null ? dense.getExtraEdges() : neuralNetwork.getEdges().get(l)) {
+                int to = nodeIndices.get(edge.getToNode());
+
+                if (edge.getFromNode() instanceof Bias) {
+                    edge.setWeight(biases[l][to]);
+                } else {
+                    edge.setWeight(weights[l][to * numOfInputs + nodeIndices.get(edge.getFromNode())]);
+                }
+            }
+        }
+
+        neuralNetwork.weightsChanged();
+        weightVersion = neuralNetwork.getWeightVersion();
+    }
+
+    // Returns the dense layer storing the weights of a layer in the layout of this network, or null if the
+    // weights have to be copied edge by edge.
+    private DenseLayer denseLayer(int layer) {
+
+        DenseLayer dense = DenseLayer.of(neuralNetwork.getEdges().get(layer));
+
+        if (dense == null || dense.getNumOfInputs() != layerSizes[layer]
+                || dense.getNumOfOutputs() != layerSizes[layer + 1]) {
+            return null;
+        }
+        return dense;
+    }
+
+    /**
+     * Copies the current weights into an immutable snapshot for concurrent inference.
+     *
+     * @return Returns a snapshot of the current weights.
+     */
+    public synchronized WeightSnapshot snapshot() {
+        return new WeightSnapshot(weightVersion, layerSizes, weights, biases, biasValues, activationFunctions);
+    }
+
+    // Returns the live weight matrix of a layer.
+    double[] getWeights(int layer) {
+        return weights[layer];
+    }
+
+    // Returns the live weights of the edges from the bias node of a layer.
+    double[] getBiases(int layer) {
+        return biases[layer];
+    }
+
+    // Returns the value of the bias node of a layer.
+    double getBiasValue(int layer) {
+        return biasValues[layer];
+    }
+
+    // Returns the activation function applied to the outputs of the weights of a layer.
+    ActivationFunction getActivationFunction(int layer) {
+        return activationFunctions[layer];
+    }
+
+    /**
+     * Returns the number of nodes at each layer, excluding bias nodes.
+     *
+     * @return Returns the number of nodes at each layer, excluding bias nodes.
+     */
+    public int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    /**
+     * Returns the number of inputs of the network.
+     *
+     * @return Returns the number of inputs of the network.
+     */
+    public int getNumOfInputs() {
+        return layerSizes[0];
+    }
+
+    /**
+     * Returns the number of outputs of the network.
+     *
+     * @return Returns the number of outputs of the network.
+     */
+    public int getNumOfOutputs() {
+        return layerSizes[layerSizes.length - 1];
+    }
+}
@@ -0,0 +1,308 @@
+package neuralnets;
+
+import utils.ActivationFunction;
+import utils.Kernels;
+
+import java.util.Arrays;
+
+/**
+ * A copy of a {@link CompiledNetwork} for batch training in {@link Precision#FLOAT} or {@link Precision#MIXED}
+ * precision. Weights, activations and gradients are stored as floats, and every layer is a float matrix-matrix
+ * product, so a pass moves half the bytes of the double network. Error terms are calculated the same way as
+ * {@link CompiledNetwork#backward(utils.Matrix[], utils.Matrix)}, so training follows the double network up to
+ * rounding.
+ *
+ * Weights are copied in from the compiled network with {@link #load(CompiledNetwork)} and back with
+ * {@link #store(CompiledNetwork)}. Not thread-safe; the network it trains owns it.
+ */
+final class FloatNetwork {
+
+    private final Precision precision;
+    private final int[] layerSizes;
+    private final float[][] weights;
+    private final float[][] biases;
+    private final float[] biasValues;
+    private final ActivationFunction[] activationFunctions;
+    private final float[][] weightGradients;
+    private final float[][] biasGradients;
+    // The weights updated in mixed precision, which the float weights are rounded from. Null otherwise.
+    private final double[][] masterWeights;
+    private final double[][] masterBiases;
+    private int numOfSamples;
+
+    /**
+     * Creates a float network with the layers of a compiled network. Its weights are zero until loaded.
+     *
+     * @param layerSizes The number of nodes at each layer, excluding bias nodes.
+     * @param precision  {@link Precision#FLOAT} or {@link Precision#MIXED}.
+     */
+    FloatNetwork(int[] layerSizes, Precision precision) {
+
+        int numOfLayers = layerSizes.length - 1;
+        this.precision = precision;
+        this.layerSizes = layerSizes.clone();
+        weights = new float[numOfLayers][];
+        biases = new float[numOfLayers][];
+        biasValues = new float[numOfLayers];
+        activationFunctions = new ActivationFunction[numOfLayers];
+        weightGradients = new float[numOfLayers][];
+        biasGradients = new float[numOfLayers][];
+        masterWeights = precision == Precision.MIXED ? new double[numOfLayers][] : null;
+        masterBiases = precision == Precision.MIXED ? new double[numOfLayers][] : null;
+
+        for (int l = 0; l < numOfLayers; l++) {
+            weights[l] = new float[layerSizes[l + 1] * layerSizes[l]];
+            biases[l] = new float[layerSizes[l + 1]];
+            weightGradients[l] = new float[weights[l].length];
+            biasGradients[l] = new float[biases[l].length];
+            if (masterWeights != null) {
+                masterWeights[l] = new double[weights[l].length];
+                masterBiases[l] = new double[biases[l].length];
+            }
+        }
+    }
+
+    /**
+     * Returns the precision the network trains in.
+     *
+     * @return Returns the precision the network trains in.
+     */
+    Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Copies the weights and activation functions of a compiled network with the same layers, rounding the
+     * weights to floats. In mixed precision the master weights keep them exactly.
+     *
+     * @param network The network to copy from.
+     */
+    void load(CompiledNetwork network) {
+
+        for (int l = 0; l < weights.length; l++) {
+            toFloats(network.getWeights(l), weights[l]);
+            toFloats(network.getBiases(l), biases[l]);
+            biasValues[l] = (float) network.getBiasValue(l);
+            activationFunctions[l] = network.getActivationFunction(l);
+
+            if (masterWeights != null) {
+                System.arraycopy(network.getWeights(l), 0, masterWeights[l], 0, masterWeights[l].length);
+                System.arraycopy(network.getBiases(l), 0, masterBiases[l], 0, masterBiases[l].length);
+            }
+        }
+
+        clearGradients();
+    }
+
+    private static void toFloats(double[] from, float[] to) {
+        for (int i = 0; i < to.length; i++) {
+            to[i] = (float) from[i];
+        }
+    }
+
+    /**
+     * Copies the weights into a compiled network with the same layers and from there into the edges of its
+     * graph. In mixed precision the master weights are copied.
+     *
+     * @param network The network to copy into.
+     */
+    void store(CompiledNetwork network) {
+
+        for (int l = 0; l < weights.length; l++) {
+            double[] w = network.getWeights(l);
+            double[] b = network.getBiases(l);
+
+            if (masterWeights != null) {
+                System.arraycopy(masterWeights[l], 0, w, 0, w.length);
+                System.arraycopy(masterBiases[l], 0, b, 0, b.length);
+            } else {
+                for (int i = 0; i < w.length; i++) {
+                    w[i] = weights[l][i];
+                }
+                for (int j = 0; j < b.length; j++) {
+                    b[j] = biases[l][j];
+                }
+            }
+        }
+
+        network.writeBack();
+    }
+
+    /**
+     * Runs a forward pass for a batch of samples.
+     *
+     * @param inputs       The inputs of the samples, one sample after the other.
+     * @param numOfSamples The number of samples.
+     * @return Returns the activations of every layer, one sample after the other. Index 0 holds the inputs and
+     * the last index holds the outputs.
+     */
+    float[][] forward(float[] inputs, int numOfSamples) {
+
+        Kernels kernels = Kernels.get();
+        float[][] layerActivations = new float[layerSizes.length][];
+        layerActivations[0] = inputs;
+
+        for (int l = 0; l < weights.length; l++) {
+            int numOfInputs = layerSizes[l];
+            int numOfOutputs = layerSizes[l + 1];
+            float[] out = new float[numOfSamples * numOfOutputs];
+
+            // The weight matrix is the transpose of the right operand of inputs x weights^T.
+            kernels.gemm(layerActivations[l], weights[l], out, numOfInputs, numOfOutputs, 0, numOfSamples);
+
+            float biasValue = biasValues[l];
+            // The graph adds the bias value once per incoming edge, including the edge from the bias node.
+            float edgeBias = (numOfInputs + 1) * biasValue;
+            float[] b = biases[l];
+
+            for (int i = 0; i < out.length; i += numOfOutputs) {
+                for (int j = 0; j < numOfOutputs; j++) {
+                    out[i + j] += biasValue * b[j] + edgeBias;
+                }
+                activationFunctions[l].applyInPlace(out, i, i + numOfOutputs);
+            }
+
+            layerActivations[l + 1] = out;
+        }
+
+        return layerActivations;
+    }
+
+    /**
+     * Runs a backward pass for a batch of samples and adds the weight gradients to the accumulated ones.
+     *
+     * @param layerActivations The activations returned by {@link #forward(float[], int)} for the batch.
+     * @param targets          The target outputs of the samples, one sample after the other.
+     * @param numOfSamples     The number of samples.
+     */
+    void backward(float[][] layerActivations, float[] targets, int numOfSamples) {
+
+        Kernels kernels = Kernels.get();
+        int outputLayer = layerSizes.length - 1;
+        float[] out = layerActivations[outputLayer];
+        float[] delta = new float[numOfSamples * layerSizes[outputLayer]];
+
+        for (int i = 0; i < delta.length; i++) {
+            delta[i] = -(targets[i] - out[i]);
+        }
+        int numOfOutputs = layerSizes[outputLayer];
+        for (int i = 0; i < delta.length; i += numOfOutputs) {
+            activationFunctions[outputLayer - 1].deltaInPlace(delta, out, i, i + numOfOutputs);
+        }
+
+        for (int l = outputLayer - 1; l >= 0; l--) {
+            float[] previous = layerActivations[l];
+            int numOfInputs = layerSizes[l];
+            int numOfNodes = layerSizes[l + 1];
+
+            // Every edge's gradient is the error term of its to node times the output of its from node, summed
+            // over the samples: deltas^T x previous.
+            kernels.gemm(transpose(delta, numOfSamples, numOfNodes), transpose(previous, numOfSamples, numOfInputs),
+                    weightGradients[l], numOfSamples, numOfInputs, 0, numOfNodes);
+
+            for (int i = 0; i < delta.length; i += numOfNodes) {
+                kernels.axpy(biasValues[l], delta, i, biasGradients[l], 0, numOfNodes);
+            }
+
+            if (l > 0) {
+                // Like HiddenNode.calculateDelta, the error of a hidden node sums the error terms of the nodes it
+                // feeds, weighted by the edges.
+                float[] errors = new float[numOfSamples * numOfInputs];
+                kernels.gemm(delta, transpose(weights[l], numOfNodes, numOfInputs), errors, numOfNodes,
+                        numOfInputs, 0, numOfSamples);
+
+                for (int i = 0; i < errors.length; i += numOfInputs) {
+                    activationFunctions[l - 1].deltaInPlace(errors, previous, i, i + numOfInputs);
+                }
+                delta = errors;
+            }
+        }
+
+        this.numOfSamples += numOfSamples;
+    }
+
+    // Returns the transpose of a row-major rows x cols array.
+    private static float[] transpose(float[] m, int rows, int cols) {
+
+        float[] t = new float[rows * cols];
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                t[j * rows + i] = m[i * cols + j];
+            }
+        }
+
+        return t;
+    }
+
+    /**
+     * Updates the weights with the average of the accumulated gradients and clears them. In mixed precision the
+     * master weights are updated and the float weights rounded from them.
+     *
+     * @param learningRate The learning rate.
+     */
+    void applyGradients(double learningRate) {
+
+        if (numOfSamples == 0) {
+            return;
+        }
+
+        double step = learningRate / numOfSamples;
+
+        for (int l = 0; l < weights.length; l++) {
+            if (masterWeights != null) {
+                update(masterWeights[l], weights[l], weightGradients[l], step);
+                update(masterBiases[l], biases[l], biasGradients[l], step);
+            } else {
+                Kernels.get().axpy((float) -step, weightGradients[l], 0, weights[l], 0, weights[l].length);
+                Kernels.get().axpy((float) -step, biasGradients[l], 0, biases[l], 0, biases[l].length);
+            }
+        }
+
+        clearGradients();
+    }
+
+    // Updates master weights in double and rounds them into the float weights.
+    private static void update(double[] master, float[] weights, float[] gradients, double step) {
+        for (int i = 0; i < master.length; i++) {
+            master[i] -= step * gradients[i];
+            weights[i] = (float) master[i];
+        }
+    }
+
+    private void clearGradients() {
+
+        for (int l = 0; l < weights.length; l++) {
+            Arrays.fill(weightGradients[l], 0);
+            Arrays.fill(biasGradients[l], 0);
+        }
+
+        numOfSamples = 0;
+    }
+
+    /**
+     * Returns the Euclidean norm of the accumulated gradients.
+     *
+     * @return Returns the Euclidean norm of the accumulated gradients.
+     */
+    double gradientNorm() {
+
+        double sum = 0;
+
+        for (int l = 0; l < weights.length; l++) {
+            sum += Kernels.get().dot(weightGradients[l], 0, weightGradients[l], 0, weightGradients[l].length);
+            sum += Kernels.get().dot(biasGradients[l], 0, biasGradients[l], 0, biasGradients[l].length);
+        }
+
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Returns the number of samples the accumulated gradients were summed over.
+     *
+     * @return Returns the number of samples the accumulated gradients were summed over.
+     */
+    int getNumOfSamples() {
+        return numOfSamples;
+    }
+}
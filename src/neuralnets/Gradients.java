@@ -0,0 +1,85 @@
+package neuralnets;
+
+import utils.Kernels;
+
+import java.util.Arrays;
+
+/**
+ * Weight gradients summed over a number of samples, laid out like the weight matrices and bias vectors of a
+ * {@link CompiledNetwork}. Each training thread owns its own instance, so gradients can be calculated
+ * concurrently and reduced afterwards.
+ */
+public class Gradients {
+
+    final double[][] weights;
+    final double[][] biases;
+    int numOfSamples;
+
+    Gradients(int[] layerSizes) {
+
+        weights = new double[layerSizes.length - 1][];
+        biases = new double[layerSizes.length - 1][];
+
+        for (int l = 0; l < weights.length; l++) {
+            weights[l] = new double[layerSizes[l + 1] * layerSizes[l]];
+            biases[l] = new double[layerSizes[l + 1]];
+        }
+    }
+
+    /**
+     * Adds the gradients of another instance of the same network to these.
+     *
+     * @param other The gradients to add.
+     */
+    public void add(Gradients other) {
+
+        Kernels kernels = Kernels.get();
+
+        for (int l = 0; l < weights.length; l++) {
+            kernels.axpy(1, other.weights[l], 0, weights[l], 0, weights[l].length);
+            kernels.axpy(1, other.biases[l], 0, biases[l], 0, biases[l].length);
+        }
+
+        numOfSamples += other.numOfSamples;
+    }
+
+    /**
+     * Resets the gradients to zero.
+     */
+    public void clear() {
+
+        for (int l = 0; l < weights.length; l++) {
+            Arrays.fill(weights[l], 0);
+            Arrays.fill(biases[l], 0);
+        }
+
+        numOfSamples = 0;
+    }
+
+    /**
+     * Returns the number of samples the gradients were summed over.
+     *
+     * @return Returns the number of samples the gradients were summed over.
+     */
+    public int getNumOfSamples() {
+        return numOfSamples;
+    }
+
+    /**
+     * Returns the Euclidean norm of the gradients.
+     *
+     * @return Returns the Euclidean norm of the gradients.
+     */
+    public double norm() {
+
+        Kernels kernels = Kernels.get();
+        double sum = 0;
+
+        for (int l = 0; l < weights.length; l++) {
+            sum += kernels.dot(weights[l], 0, weights[l], 0, weights[l].length);
+            sum += kernels.dot(biases[l], 0, biases[l], 0, biases[l].length);
+        }
+
+        return Math.sqrt(sum);
+    }
+}
@@ -0,0 +1,382 @@
+package neuralnets;
+
+import utils.ActivationFunction;
+import utils.Activations;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * A model saved by {@link ModelSerializer}, read in place from a buffer. Predictions read the weights straight
+ * out of the buffer, so a memory-mapped model is never copied onto the heap, and many threads can predict with
+ * it at once. The model is read-only.
+ */
+public final class MappedModel {
+
+    // "NNET" read as a little-endian int.
+    static final int MAGIC = 0x54454E4E;
+    static final int VERSION = 2;
+    // Magic, version, number of layers, two activation ids, the precision id, two activation parameters and the
+    // learning rate. Version 1 has padding in place of the precision id, which reads as double precision.
+    static final int FIXED_HEADER_SIZE = 48;
+
+    // The bias values, followed by the weights if they are doubles.
+    private final DoubleBuffer doubles;
+    // The weights if they are floats, otherwise null.
+    private final FloatBuffer floats;
+    private final Precision precision;
+    private final int[] layerSizes;
+    private final ActivationFunction activationFunction;
+    private final ActivationFunction outputActivationFunction;
+    private final double learningRate;
+    private final double[] biasValues;
+    // Index in doubles of the weight matrix and bias weights of each layer.
+    private final int[] weightOffsets;
+    private final int[] biasOffsets;
+    private final int maxLayerSize;
+
+    /**
+     * Reads the header of a model and indexes its weight blocks. The weights themselves are not read.
+     *
+     * @param buffer A buffer holding a whole model from its position on.
+     * @throws IOException If the buffer does not hold a valid model.
+     */
+    MappedModel(ByteBuffer buffer) throws IOException {
+
+        ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        Header header = new Header(data, data.remaining());
+
+        activationFunction = header.activationFunction;
+        outputActivationFunction = header.outputActivationFunction;
+        learningRate = header.learningRate;
+        precision = header.precision;
+        layerSizes = header.layerSizes;
+        int numOfLayers = layerSizes.length;
+
+        int max = 0;
+        for (int layerSize : layerSizes) {
+            max = Math.max(max, layerSize);
+        }
+        maxLayerSize = max;
+
+        data.position(headerSize(numOfLayers));
+        ByteBuffer body = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        doubles = body.asDoubleBuffer();
+
+        // The header has checked that the whole body fits in the buffer, so the offsets fit in ints.
+        long offset;
+        if (precision == Precision.FLOAT) {
+            body.position(8 * (numOfLayers - 1));
+            floats = body.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            offset = 0;
+        } else {
+            floats = null;
+            offset = numOfLayers - 1;
+        }
+
+        biasValues = new double[numOfLayers - 1];
+        weightOffsets = new int[numOfLayers - 1];
+        biasOffsets = new int[numOfLayers - 1];
+
+        for (int l = 0; l < numOfLayers - 1; l++) {
+            biasValues[l] = doubles.get(l);
+            weightOffsets[l] = (int) offset;
+            offset += (long) layerSizes[l + 1] * layerSizes[l];
+            biasOffsets[l] = (int) offset;
+            offset += layerSizes[l + 1];
+        }
+    }
+
+    /**
+     * The header of a model: its layers, activation functions, precision and learning rate.
+     */
+    static final class Header {
+
+        final int[] layerSizes;
+        final ActivationFunction activationFunction;
+        final ActivationFunction outputActivationFunction;
+        final double learningRate;
+        final Precision precision;
+
+        /**
+         * Reads the header of a model and checks that the model fits in the given number of bytes.
+         *
+         * @param data A little-endian buffer holding the header from its start.
+         * @param size The number of bytes of the model, which may be more than the buffer holds.
+         * @throws IOException If the buffer does not hold a valid header or the model is larger than its size.
+         */
+        Header(ByteBuffer data, long size) throws IOException {
+
+            if (data.limit() < FIXED_HEADER_SIZE || data.getInt(0) != MAGIC) {
+                throw new IOException("Not a neural network model");
+            }
+            if (data.getInt(4) < 1 || data.getInt(4) > VERSION) {
+                throw new IOException("Unsupported model version " + data.getInt(4));
+            }
+
+            int numOfLayers = data.getInt(8);
+            // Bounded by the size of the buffer first, so that the size of the header cannot overflow.
+            if (numOfLayers < 2 || numOfLayers > (data.limit() - FIXED_HEADER_SIZE) / 4
+                    || headerSize(numOfLayers) > data.limit()) {
+                throw new IOException("Corrupt model header");
+            }
+
+            try {
+                activationFunction = Activations.fromId(data.getInt(12), data.getDouble(24));
+                outputActivationFunction = Activations.fromId(data.getInt(16), data.getDouble(32));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            // Functions over a whole layer, such as softmax, can only be used at the output layer.
+            if (!activationFunction.isElementwise()) {
+                throw new IOException("Hidden activation function " + activationFunction + " is not elementwise");
+            }
+            learningRate = data.getDouble(40);
+            precision = precisionFromId(data.getInt(20));
+
+            layerSizes = new int[numOfLayers];
+            for (int l = 0; l < numOfLayers; l++) {
+                layerSizes[l] = data.getInt(FIXED_HEADER_SIZE + 4 * l);
+                if (layerSizes[l] < 1) {
+                    throw new IOException("Corrupt model header");
+                }
+            }
+
+            // Checked a layer at a time, so that the sizes in a corrupt header cannot overflow the sum.
+            int weightSize = precision == Precision.FLOAT ? 4 : 8;
+            long modelSize = headerSize(numOfLayers) + 8L * (numOfLayers - 1);
+            for (int l = 0; l < numOfLayers - 1 && modelSize <= size; l++) {
+                long numOfWeights = layerSizes[l + 1] * (layerSizes[l] + 1L);
+                modelSize = numOfWeights > (size - modelSize) / weightSize ? size + 1
+                        : modelSize + weightSize * numOfWeights;
+            }
+            if (modelSize > size) {
+                throw new IOException("Model is truncated");
+            }
+        }
+    }
+
+    /**
+     * Returns the number identifying a precision in model files.
+     *
+     * @param precision The precision.
+     * @return Returns the number identifying the precision.
+     */
+    static int getPrecisionId(Precision precision) {
+        switch (precision) {
+            case FLOAT:
+                return 1;
+            case MIXED:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+
+    private static Precision precisionFromId(int id) throws IOException {
+        switch (id) {
+            case 0:
+                return Precision.DOUBLE;
+            case 1:
+                return Precision.FLOAT;
+            case 2:
+                return Precision.MIXED;
+            default:
+                throw new IOException("Unknown precision id " + id);
+        }
+    }
+
+    /**
+     * Returns the size in bytes of the header of a model with the given number of layers, which is padded so
+     * that the weights that follow are aligned to 8 bytes. The number of layers must fit in the model, or the
+     * size overflows.
+     *
+     * @param numOfLayers The number of layers.
+     * @return Returns the size of the header in bytes.
+     */
+    static int headerSize(int numOfLayers) {
+        int size = FIXED_HEADER_SIZE + 4 * numOfLayers;
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * Returns the number of bytes following the header of a model with the given layer sizes: a double for the
+     * bias value of each layer, and the weights, which are floats in float precision and doubles otherwise.
+     *
+     * @param layerSizes The number of nodes at each layer.
+     * @param precision  The precision of the model.
+     * @return Returns the number of bytes following the header.
+     */
+    static long bodySize(int[] layerSizes, Precision precision) {
+        long numOfWeights = 0;
+        for (int l = 0; l < layerSizes.length - 1; l++) {
+            numOfWeights += (long) layerSizes[l + 1] * (layerSizes[l] + 1);
+        }
+        return 8L * (layerSizes.length - 1) + (precision == Precision.FLOAT ? 4 : 8) * numOfWeights;
+    }
+
+    /**
+     * Returns the length of the scratch buffer {@link #predict(double[], double[], double[])} needs.
+     *
+     * @return Returns the length of the scratch buffer needed for a prediction.
+     */
+    public int getScratchSize() {
+        return 2 * maxLayerSize;
+    }
+
+    /**
+     * Calculates the outputs of the model for the given inputs, reading the weights from the buffer. The results
+     * are identical to those of the network the model was saved from.
+     *
+     * @param inputs  The input values. Only the first n values are used, where n is the number of inputs.
+     * @param outputs The array the outputs are written to.
+     * @param scratch A buffer of at least {@link #getScratchSize()} values, used by one thread at a time.
+     * @throws IllegalArgumentException If the scratch buffer is too small.
+     */
+    public void predict(double[] inputs, double[] outputs, double[] scratch) {
+
+        if (scratch.length < getScratchSize()) {
+            throw new IllegalArgumentException("Scratch buffer must hold at least " + getScratchSize() + " values");
+        }
+
+        double[] in = inputs;
+        int inOffset = 0;
+        int outOffset = 0;
+
+        for (int l = 0; l < layerSizes.length - 1; l++) {
+            int numOfInputs = layerSizes[l];
+            int numOfOutputs = layerSizes[l + 1];
+            double biasValue = biasValues[l];
+
+            // Same order of terms as CompiledNetwork.forwardLayer.
+            for (int j = 0; j < numOfOutputs; j++) {
+                double net = 0;
+                int row = weightOffsets[l] + j * numOfInputs;
+                if (floats != null) {
+                    for (int k = 0; k < numOfInputs; k++) {
+                        net += in[inOffset + k] * floats.get(row + k) + biasValue;
+                    }
+                    net += biasValue * floats.get(biasOffsets[l] + j) + biasValue;
+                } else {
+                    for (int k = 0; k < numOfInputs; k++) {
+                        net += in[inOffset + k] * doubles.get(row + k) + biasValue;
+                    }
+                    net += biasValue * doubles.get(biasOffsets[l] + j) + biasValue;
+                }
+                scratch[outOffset + j] = net;
+            }
+
+            getActivationFunction(l).applyInPlace(scratch, outOffset, outOffset + numOfOutputs);
+
+            in = scratch;
+            inOffset = outOffset;
+            outOffset = outOffset == 0 ? maxLayerSize : 0;
+        }
+
+        System.arraycopy(scratch, inOffset, outputs, 0, layerSizes[layerSizes.length - 1]);
+    }
+
+    /**
+     * Copies the weights of a layer into the given arrays.
+     *
+     * @param layer   The layer of the weights.
+     * @param weights The array receiving the row-major weight matrix of the layer.
+     * @param biases  The array receiving the weights of the edges from the bias node.
+     */
+    void copyWeights(int layer, double[] weights, double[] biases) {
+
+        if (floats != null) {
+            int numOfWeights = layerSizes[layer + 1] * layerSizes[layer];
+            for (int i = 0; i < numOfWeights; i++) {
+                weights[i] = floats.get(weightOffsets[layer] + i);
+            }
+            for (int j = 0; j < layerSizes[layer + 1]; j++) {
+                biases[j] = floats.get(biasOffsets[layer] + j);
+            }
+            return;
+        }
+
+        DoubleBuffer view = doubles.duplicate();
+        view.position(weightOffsets[layer]);
+        view.get(weights, 0, layerSizes[layer + 1] * layerSizes[layer]);
+        view.position(biasOffsets[layer]);
+        view.get(biases, 0, layerSizes[layer + 1]);
+    }
+
+    // Returns the value of the bias node of a layer.
+    double getBiasValue(int layer) {
+        return biasValues[layer];
+    }
+
+    // Returns the activation function applied to the outputs of the weights of a layer.
+    private ActivationFunction getActivationFunction(int layer) {
+        return layer == layerSizes.length - 2 ? outputActivationFunction : activationFunction;
+    }
+
+    /**
+     * Returns the number of nodes at each layer, excluding bias nodes.
+     *
+     * @return Returns the number of nodes at each layer, excluding bias nodes.
+     */
+    public int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    /**
+     * Returns the activation function of the hidden layers.
+     *
+     * @return Returns the activation function of the hidden layers.
+     */
+    public ActivationFunction getActivationFunction() {
+        return activationFunction;
+    }
+
+    /**
+     * Returns the activation function of the output layer.
+     *
+     * @return Returns the activation function of the output layer.
+     */
+    public ActivationFunction getOutputActivationFunction() {
+        return outputActivationFunction;
+    }
+
+    /**
+     * Returns the precision of the network the model was saved from. Weights are stored as floats in float
+     * precision and as doubles otherwise.
+     *
+     * @return Returns the precision of the network the model was saved from.
+     */
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Returns the learning rate the model was saved with.
+     *
+     * @return Returns the learning rate the model was saved with.
+     */
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    /**
+     * Returns the number of inputs of the model.
+     *
+     * @return Returns the number of inputs of the model.
+     */
+    public int getNumOfInputs() {
+        return layerSizes[0];
+    }
+
+    /**
+     * Returns the number of outputs of the model.
+     *
+     * @return Returns the number of outputs of the model.
+     */
+    public int getNumOfOutputs() {
+        return layerSizes[layerSizes.length - 1];
+    }
+}
@@ -0,0 +1,410 @@
+package neuralnets;
+
+import utils.ActivationFunction;
+import utils.Activations;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Saves and loads {@link SimpleNeuralNet}s in a compact binary format.
+ *
+ * A model file holds, in little-endian order: the magic bytes "NNET", the format version, the number of layers,
+ * the ids of the hidden and output activation functions (see {@link Activations#getId}), the id of the
+ * {@link Precision} of the network, the parameters of the activation functions, the learning rate and the number
+ * of nodes at each layer. After padding to 8 bytes come the bias values of each layer as doubles and then, for
+ * each layer, its row-major weight matrix followed by the weights of the edges from its bias node. Weights are
+ * floats in float precision, which halves the size of the file, and doubles otherwise. Files are read by
+ * memory-mapping them, and the weight blocks are copied in bulk.
+ *
+ * {@link QuantizedNetwork}s are saved in a format of their own, also little-endian: the magic bytes "NNQ8", the
+ * format version, the number of layers and the number of nodes at each layer. After padding to 8 bytes, each layer
+ * has the id of its activation function, the zero point of its inputs, the parameter of the activation function,
+ * the bias value and the scale of the inputs, followed by the scale of each row of weights as doubles, the weights
+ * of the edges from the bias node as doubles and the 8-bit weight matrix, padded to 8 bytes.
+ */
+public final class ModelSerializer {
+
+    // "NNQ8" read as a little-endian int.
+    private static final int QUANTIZED_MAGIC = 0x38514E4E;
+    private static final int QUANTIZED_VERSION = 1;
+    // Activation id, input zero point, activation parameter, bias value and input scale.
+    private static final int QUANTIZED_LAYER_HEADER_SIZE = 32;
+
+    private ModelSerializer() {
+    }
+
+    /**
+     * Saves a network to a file, replacing the file if it exists. A network in {@link Precision#FLOAT} is saved
+     * with float weights: its double weights are rounded to float, so loading the file gives back the rounded
+     * weights.
+     *
+     * @param neuralNet The network to save. Its activation functions must be ones from {@link Activations}.
+     * @param path      The file to write.
+     * @throws IOException              If the file cannot be written.
+     * @throws IllegalArgumentException If the network uses an activation function that cannot be saved.
+     */
+    public static void save(SimpleNeuralNet neuralNet, Path path) throws IOException {
+
+        WeightSnapshot snapshot;
+        ActivationFunction activationFunction;
+        ActivationFunction outputActivationFunction;
+        double learningRate;
+        Precision precision;
+
+        synchronized (neuralNet) {
+            snapshot = neuralNet.getTrainingNetwork().snapshot();
+            activationFunction = neuralNet.getActivationFunction();
+            outputActivationFunction = neuralNet.getOutputActivationFunction();
+            learningRate = neuralNet.getLearningRate();
+            precision = neuralNet.getPrecision();
+        }
+
+        save(snapshot, activationFunction, outputActivationFunction, learningRate, precision, path);
+    }
+
+    /**
+     * Saves a snapshot of the weights of a network to a file, replacing the file if it exists.
+     *
+     * @param snapshot                 The weights to save.
+     * @param activationFunction       The activation function of the hidden layers.
+     * @param outputActivationFunction The activation function of the output layer.
+     * @param learningRate             The learning rate of the network.
+     * @param precision                The precision of the network. Weights are rounded to floats in float
+     *                                 precision.
+     * @param path                     The file to write.
+     * @throws IOException              If the file cannot be written.
+     * @throws IllegalArgumentException If an activation function cannot be saved.
+     */
+    static void save(WeightSnapshot snapshot, ActivationFunction activationFunction,
+                     ActivationFunction outputActivationFunction, double learningRate, Precision precision,
+                     Path path) throws IOException {
+
+        int[] layerSizes = snapshot.getLayerSizes();
+        long size = MappedModel.headerSize(layerSizes.length) + MappedModel.bodySize(layerSizes, precision);
+        // Fail before the file is truncated.
+        Activations.getId(activationFunction);
+        Activations.getId(outputActivationFunction);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            write(snapshot, activationFunction, outputActivationFunction, learningRate, precision, buffer);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the weights of a network in the model format, from the start of a buffer.
+     *
+     * @param snapshot                 The weights to write.
+     * @param activationFunction       The activation function of the hidden layers.
+     * @param outputActivationFunction The activation function of the output layer.
+     * @param learningRate             The learning rate of the network.
+     * @param precision                The precision of the network. Weights are rounded to floats in float
+     *                                 precision.
+     * @param buffer                   The buffer to write to, with room for the header and body of the model.
+     * @throws IllegalArgumentException If an activation function cannot be saved.
+     */
+    static void write(WeightSnapshot snapshot, ActivationFunction activationFunction,
+                      ActivationFunction outputActivationFunction, double learningRate, Precision precision,
+                      ByteBuffer buffer) {
+
+        int[] layerSizes = snapshot.getLayerSizes();
+        int headerSize = MappedModel.headerSize(layerSizes.length);
+        ByteBuffer model = writeHeader(layerSizes, activationFunction, outputActivationFunction, learningRate,
+                precision, buffer);
+
+        model.position(headerSize);
+        DoubleBuffer doubles = model.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+
+        for (int l = 0; l < layerSizes.length - 1; l++) {
+            doubles.put(snapshot.getBiasValue(l));
+        }
+
+        if (precision == Precision.FLOAT) {
+            model.position(headerSize + 8 * (layerSizes.length - 1));
+            FloatBuffer floats = model.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            for (int l = 0; l < layerSizes.length - 1; l++) {
+                for (double weight : snapshot.getWeights(l)) {
+                    floats.put((float) weight);
+                }
+                for (double weight : snapshot.getBiases(l)) {
+                    floats.put((float) weight);
+                }
+            }
+        } else {
+            for (int l = 0; l < layerSizes.length - 1; l++) {
+                doubles.put(snapshot.getWeights(l));
+                doubles.put(snapshot.getBiases(l));
+            }
+        }
+    }
+
+    /**
+     * Writes the header of a model from the start of a buffer.
+     *
+     * @param layerSizes               The number of nodes at each layer.
+     * @param activationFunction       The activation function of the hidden layers.
+     * @param outputActivationFunction The activation function of the output layer.
+     * @param learningRate             The learning rate of the network.
+     * @param precision                The precision of the weights that follow the header.
+     * @param buffer                   The buffer to write to.
+     * @return Returns a little-endian view of the buffer from its start, positioned after the header.
+     * @throws IllegalArgumentException If an activation function cannot be saved.
+     */
+    static ByteBuffer writeHeader(int[] layerSizes, ActivationFunction activationFunction,
+                                  ActivationFunction outputActivationFunction, double learningRate,
+                                  Precision precision, ByteBuffer buffer) {
+
+        ByteBuffer model = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        model.position(0);
+
+        model.putInt(MappedModel.MAGIC);
+        model.putInt(MappedModel.VERSION);
+        model.putInt(layerSizes.length);
+        model.putInt(Activations.getId(activationFunction));
+        model.putInt(Activations.getId(outputActivationFunction));
+        model.putInt(MappedModel.getPrecisionId(precision));
+        model.putDouble(Activations.getParameter(activationFunction));
+        model.putDouble(Activations.getParameter(outputActivationFunction));
+        model.putDouble(learningRate);
+        for (int layerSize : layerSizes) {
+            model.putInt(layerSize);
+        }
+
+        model.position(MappedModel.headerSize(layerSizes.length));
+        return model;
+    }
+
+    /**
+     * Loads a network from a file. The weight blocks are copied into the network in bulk.
+     *
+     * @param path The file to read.
+     * @return Returns the loaded network.
+     * @throws IOException If the file cannot be read or does not hold a valid model.
+     */
+    public static SimpleNeuralNet load(Path path) throws IOException {
+
+        MappedModel model = map(path);
+        int[] layerSizes = model.getLayerSizes();
+
+        List<Integer> nodeConfig = new ArrayList<>();
+        for (int layerSize : layerSizes) {
+            nodeConfig.add(layerSize);
+        }
+
+        SimpleNeuralNet neuralNet = new SimpleNeuralNet(nodeConfig, model.getActivationFunction());
+
+        synchronized (neuralNet) {
+            neuralNet.setLearningRate(model.getLearningRate());
+            neuralNet.setPrecision(model.getPrecision());
+            if (model.getOutputActivationFunction() != model.getActivationFunction()) {
+                neuralNet.setOutputActivationFunction(model.getOutputActivationFunction());
+            }
+
+            copyWeights(model, neuralNet);
+        }
+
+        return neuralNet;
+    }
+
+    /**
+     * Copies the weights of a model into a network with the same layers.
+     *
+     * @param model     The model to copy from.
+     * @param neuralNet The network to copy into.
+     * @throws IOException If the layers of the model and the network differ.
+     */
+    static void copyWeights(MappedModel model, SimpleNeuralNet neuralNet) throws IOException {
+
+        synchronized (neuralNet) {
+            CompiledNetwork engine = neuralNet.getTrainingNetwork();
+            int[] layerSizes = model.getLayerSizes();
+
+            if (!Arrays.equals(layerSizes, engine.getLayerSizes())) {
+                throw new IOException("Model has layers " + Arrays.toString(layerSizes) + " but network has "
+                        + Arrays.toString(engine.getLayerSizes()));
+            }
+
+            for (int l = 0; l < layerSizes.length - 1; l++) {
+                model.copyWeights(l, engine.getWeights(l), engine.getBiases(l));
+            }
+            engine.writeBack();
+        }
+    }
+
+    /**
+     * Memory-maps a model file for read-only inference. The weights are not copied; predictions read them from
+     * the mapped file.
+     *
+     * @param path The file to map.
+     * @return Returns the mapped model.
+     * @throws IOException If the file cannot be read or does not hold a valid model.
+     */
+    public static MappedModel map(Path path) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return new MappedModel(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Saves a quantized network to a file, replacing the file if it exists.
+     *
+     * @param network The network to save. Its activation functions must be ones from {@link Activations}.
+     * @param path    The file to write.
+     * @throws IOException              If the file cannot be written.
+     * @throws IllegalArgumentException If the network uses an activation function that cannot be saved.
+     */
+    public static void save(QuantizedNetwork network, Path path) throws IOException {
+
+        int[] layerSizes = network.getLayerSizes();
+        int headerSize = quantizedHeaderSize(layerSizes.length);
+        long size = headerSize;
+        for (int l = 0; l < layerSizes.length - 1; l++) {
+            size += quantizedLayerSize(layerSizes[l], layerSizes[l + 1]);
+            // Fail before the file is truncated.
+            Activations.getId(network.getActivationFunction(l));
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(QUANTIZED_MAGIC);
+            buffer.putInt(QUANTIZED_VERSION);
+            buffer.putInt(layerSizes.length);
+            for (int layerSize : layerSizes) {
+                buffer.putInt(layerSize);
+            }
+
+            int position = headerSize;
+            for (int l = 0; l < layerSizes.length - 1; l++) {
+                ActivationFunction activationFunction = network.getActivationFunction(l);
+                buffer.position(position);
+                buffer.putInt(Activations.getId(activationFunction));
+                buffer.putInt(network.getInputZeroPoint(l));
+                buffer.putDouble(Activations.getParameter(activationFunction));
+                buffer.putDouble(network.getBiasValue(l));
+                buffer.putDouble(network.getInputScale(l));
+                for (double scale : network.getWeightScales(l)) {
+                    buffer.putDouble(scale);
+                }
+                for (double weight : network.getBiases(l)) {
+                    buffer.putDouble(weight);
+                }
+                buffer.put(network.getWeights(l));
+                position += quantizedLayerSize(layerSizes[l], layerSizes[l + 1]);
+            }
+
+            buffer.force();
+        }
+    }
+
+    /**
+     * Loads a quantized network from a file written by {@link #save(QuantizedNetwork, Path)}.
+     *
+     * @param path The file to read.
+     * @return Returns the loaded network.
+     * @throws IOException If the file cannot be read or does not hold a valid quantized model.
+     */
+    public static QuantizedNetwork loadQuantized(Path path) throws IOException {
+
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (data.remaining() < 12 || data.getInt(0) != QUANTIZED_MAGIC) {
+            throw new IOException("Not a quantized neural network model");
+        }
+        if (data.getInt(4) != QUANTIZED_VERSION) {
+            throw new IOException("Unsupported quantized model version " + data.getInt(4));
+        }
+
+        int numOfLayers = data.getInt(8);
+        // Bounded by the size of the file first, so that the size of the header cannot overflow.
+        if (numOfLayers < 2 || numOfLayers > (data.remaining() - 12) / 4
+                || quantizedHeaderSize(numOfLayers) > data.remaining()) {
+            throw new IOException("Corrupt model header");
+        }
+
+        int[] layerSizes = new int[numOfLayers];
+        long size = quantizedHeaderSize(numOfLayers);
+        for (int l = 0; l < numOfLayers; l++) {
+            layerSizes[l] = data.getInt(12 + 4 * l);
+            if (layerSizes[l] < 1) {
+                throw new IOException("Corrupt model header");
+            }
+            if (l > 0) {
+                size += quantizedLayerSize(layerSizes[l - 1], layerSizes[l]);
+            }
+        }
+        if (size > data.remaining()) {
+            throw new IOException("Model is truncated");
+        }
+
+        byte[][] weights = new byte[numOfLayers - 1][];
+        double[][] weightScales = new double[numOfLayers - 1][];
+        double[][] biases = new double[numOfLayers - 1][];
+        double[] biasValues = new double[numOfLayers - 1];
+        double[] inputScales = new double[numOfLayers - 1];
+        int[] inputZeroPoints = new int[numOfLayers - 1];
+        ActivationFunction[] activationFunctions = new ActivationFunction[numOfLayers - 1];
+
+        data.position(quantizedHeaderSize(numOfLayers));
+        for (int l = 0; l < numOfLayers - 1; l++) {
+            int start = data.position();
+            int numOfOutputs = layerSizes[l + 1];
+
+            int activationId = data.getInt();
+            inputZeroPoints[l] = data.getInt();
+            try {
+                activationFunctions[l] = Activations.fromId(activationId, data.getDouble());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            biasValues[l] = data.getDouble();
+            inputScales[l] = data.getDouble();
+
+            weightScales[l] = new double[numOfOutputs];
+            data.asDoubleBuffer().get(weightScales[l]);
+            data.position(data.position() + 8 * numOfOutputs);
+            biases[l] = new double[numOfOutputs];
+            data.asDoubleBuffer().get(biases[l]);
+            data.position(data.position() + 8 * numOfOutputs);
+            weights[l] = new byte[numOfOutputs * layerSizes[l]];
+            data.get(weights[l]);
+
+            data.position(start + (int) quantizedLayerSize(layerSizes[l], numOfOutputs));
+        }
+
+        return new QuantizedNetwork(layerSizes, weights, weightScales, biases, biasValues, inputScales,
+                inputZeroPoints, activationFunctions);
+    }
+
+    // Returns the size of the header of a quantized model, padded to 8 bytes.
+    private static int quantizedHeaderSize(int numOfLayers) {
+        return (12 + 4 * numOfLayers + 7) & ~7;
+    }
+
+    // Returns the size of the block of a layer of a quantized model, padded to 8 bytes.
+    private static long quantizedLayerSize(int numOfInputs, int numOfOutputs) {
+        return QUANTIZED_LAYER_HEADER_SIZE + 16L * numOfOutputs + (((long) numOfOutputs * numOfInputs + 7) & ~7L);
+    }
+}
@@ -2,18 +2,25 @@ package neuralnets;
 
 import neuralnets.nodes.*;
 import neuralnets.visualization.NeuralNetworkVisualizer;
+import utils.ActivationFunction;
 import utils.OutputFunction;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class NeuralNetwork<I, O> {
 
     protected List<Integer> nodeConfig;
     protected Map<Integer, List<NodeEdge>> edges;
     protected List<INode> allNodes;
-    protected OutputFunction<Double, Double> activationFunction;
+    protected ActivationFunction activationFunction;
+    protected ActivationFunction outputActivationFunction;
     protected double learningRate = 0.1;
     protected NeuralNetworkVisualizer nnVisualizer;
+    // Bumped atomically, as edges may be edited and weights published from several threads at once.
+    private final AtomicInteger weightVersion = new AtomicInteger();
+    private final AtomicLong forwardPass = new AtomicLong();
 
     /**
      * Constructs a standard neural net with the given configuration. Weights are
@@ -23,9 +30,10 @@ public abstract class NeuralNetwork<I, O> {
      * @param nodeConfiguration  A list of numbers corresponding to the number of edges at each
      *                           layer. For example: [2, 2, 1] represents a neural net with 2
      *                           inputs, 2 hidden layers and 1 output.
+     * @throws IllegalArgumentException If the activation function applies to whole layers, like softmax.
      */
     public NeuralNetwork(OutputFunction<Double, Double> activationFunction, List<Integer> nodeConfiguration) {
-        this.activationFunction = activationFunction;
+        this.activationFunction = checkElementwise(ActivationFunction.from(activationFunction));
         nodeConfig = nodeConfiguration;
         edges = new HashMap<>();
         allNodes = new ArrayList<>();
@@ -40,10 +48,11 @@ public abstract class NeuralNetwork<I, O> {
      *                           layer. For example: [2, 2, 1] represents a neural net with 2
      *                           inputs, 2 hidden layers and 1 output.
      * @param learningRate       The learning rate of the network.
+     * @throws IllegalArgumentException If the activation function applies to whole layers, like softmax.
      */
     public NeuralNetwork(OutputFunction<Double, Double> activationFunction, double learningRate,
                          List<Integer> nodeConfiguration) {
-        this.activationFunction = activationFunction;
+        this.activationFunction = checkElementwise(ActivationFunction.from(activationFunction));
         this.learningRate = learningRate;
         nodeConfig = nodeConfiguration;
         edges = new HashMap<>();
@@ -55,9 +64,10 @@ public abstract class NeuralNetwork<I, O> {
      * Default Constructor. Weights are randomized and inputs set to 0 as default.
      *
      * @param activationFunction The activation function to be used in the neural net.
+     * @throws IllegalArgumentException If the activation function applies to whole layers, like softmax.
      */
     public NeuralNetwork(OutputFunction<Double, Double> activationFunction) {
-        this.activationFunction = activationFunction;
+        this.activationFunction = checkElementwise(ActivationFunction.from(activationFunction));
         nodeConfig = new ArrayList<>();
         edges = new HashMap<>();
         allNodes = new ArrayList<>();
@@ -188,10 +198,50 @@ public abstract class NeuralNetwork<I, O> {
      * Returns the activation function being used.
      * @return Returns the activation function being used.
      */
-    public synchronized OutputFunction<Double, Double> getActivationFunction() {
+    public synchronized ActivationFunction getActivationFunction() {
         return activationFunction;
     }
 
+    /**
+     * Sets the activation function of the network, for example to swap a trained network over to a lookup
+     * table approximation of its function for faster inference.
+     * @param activationFunction    The activation function.
+     * @throws IllegalArgumentException If the activation function applies to whole layers, like softmax, which
+     *                                  is only supported at the output layer.
+     */
+    public synchronized void setActivationFunction(ActivationFunction activationFunction) {
+        this.activationFunction = checkElementwise(activationFunction);
+        weightsChanged();
+    }
+
+    private static ActivationFunction checkElementwise(ActivationFunction activationFunction) {
+
+        if (!activationFunction.isElementwise()) {
+            throw new IllegalArgumentException(activationFunction + " can only be used at the output layer");
+        }
+
+        return activationFunction;
+    }
+
+    /**
+     * Returns the activation function of the output layer.
+     * @return Returns the activation function of the output layer.
+     */
+    public synchronized ActivationFunction getOutputActivationFunction() {
+        return outputActivationFunction != null ? outputActivationFunction : activationFunction;
+    }
+
+    /**
+     * Sets the activation function of the output layer, such as softmax for classification. The other layers
+     * keep using the activation function of the network. Functions over a whole layer, like softmax, are applied
+     * to all the output nodes at once.
+     * @param outputActivationFunction  The activation function of the output layer.
+     */
+    public synchronized void setOutputActivationFunction(ActivationFunction outputActivationFunction) {
+        this.outputActivationFunction = outputActivationFunction;
+        weightsChanged();
+    }
+
     @Override
     public String toString() {
 
@@ -208,18 +258,13 @@ public abstract class NeuralNetwork<I, O> {
     }
 
     /**
-     * Returns the input edges of a given node.
+     * Returns the input edges of a given node. The list is a read-only view kept up to date as
+     * edges are connected, so the lookup neither scans nor copies the edges of the network.
      * @param node  A node in the NN.
      * @return Returns the input edges of a given node.
      */
     public List<NodeEdge> getInputEdgesFor(INode node) {
-
-
-        ArrayList<NodeEdge> edges = getAllEdges();
-        edges.removeIf(edge -> !edge.getToNode().equals(node));
-
-        return edges;
-
+        return node.getInputEdges();
     }
 
     /**
@@ -228,12 +273,33 @@ public abstract class NeuralNetwork<I, O> {
      * @return Return the output edges of a given node.
      */
     public List<NodeEdge> getOutputEdgesFor(INode node) {
+        return node.getOutputEdges();
+    }
 
-        List<NodeEdge> edges = getAllEdges();
-        edges.removeIf(edge -> !edge.getFromNode().equals(node));
+    /**
+     * Adds an edge to the network at the layer of the edge. The edge is linked to its nodes when
+     * they are set.
+     * @param edge  An edge between two nodes of the NN.
+     */
+    public synchronized void addEdge(NodeEdge edge) {
+        edges.computeIfAbsent(edge.getLayer(), layer -> new ArrayList<>()).add(edge);
+        weightsChanged();
+    }
 
-        return edges;
+    /**
+     * Removes an edge from the network and unlinks it from its nodes.
+     * @param edge  An edge in the NN.
+     */
+    public synchronized void removeEdge(NodeEdge edge) {
 
+        List<NodeEdge> edgesAtLayer = edges.get(edge.getLayer());
+
+        if (edgesAtLayer != null) {
+            edgesAtLayer.remove(edge);
+        }
+
+        edge.disconnect();
+        weightsChanged();
     }
 
     /**
@@ -255,17 +321,6 @@ public abstract class NeuralNetwork<I, O> {
     }
 
 
-    private synchronized ArrayList<NodeEdge> getAllEdges() {
-        Collection<List<NodeEdge>> listEdges = this.edges.values();
-        ArrayList<NodeEdge> edges = new ArrayList<>();
-
-        for (List<NodeEdge> listEdge : listEdges) {
-            edges.addAll(listEdge);
-        }
-
-        return edges;
-    }
-
     /**
      * Returns the bias node at a given layer.
      * @param layer     The layer in the NN.
@@ -273,6 +328,12 @@ public abstract class NeuralNetwork<I, O> {
      */
     public double getBiasAt(int layer) {
 
+        DenseLayer dense = DenseLayer.of(edges.get(layer));
+
+        if (dense != null) {
+            return dense.getBiasValue();
+        }
+
         List<INode> nodesAtLayer = getNodesAtLayer(layer);
         nodesAtLayer.removeIf(e -> !e.getClass().equals(Bias.class));
 
@@ -327,6 +388,41 @@ public abstract class NeuralNetwork<I, O> {
         return edges;
     }
 
+    /**
+     * Records that the weight of an edge in the network has changed.
+     */
+    public void weightsChanged() {
+        weightVersion.incrementAndGet();
+        forwardPass.incrementAndGet();
+    }
+
+    /**
+     * Starts a new forward pass, discarding the outputs cached by the nodes during the previous one.
+     * Called whenever an input or a weight changes.
+     */
+    public void invalidateActivations() {
+        forwardPass.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of the current forward pass. Nodes cache their outputs against it so that each
+     * output is computed once per pass, however many downstream nodes ask for it.
+     *
+     * @return Returns the number of the current forward pass.
+     */
+    public long getForwardPass() {
+        return forwardPass.get();
+    }
+
+    /**
+     * Returns a counter that changes every time a weight in the network changes.
+     *
+     * @return Returns a counter that changes every time a weight in the network changes.
+     */
+    public int getWeightVersion() {
+        return weightVersion.get();
+    }
+
     public void setVisualizer(NeuralNetworkVisualizer neuralNetworkVisualizer) {
         this.nnVisualizer = neuralNetworkVisualizer;
     }
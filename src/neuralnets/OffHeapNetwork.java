@@ -0,0 +1,608 @@
+package neuralnets;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import utils.ActivationFunction;
+import utils.Kernels;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A network whose weights, gradients and activations live in one segment of native memory outside the Java heap,
+ * for networks too large to keep as a graph of edges. The garbage collector sees a single segment however many
+ * weights the network has, and the segment may be larger than 2 GB. The network is built on the incubating
+ * foreign memory API, so the JVM must be started with {@code --add-modules jdk.incubator.foreign}. Its memory counts
+ * against the limit set by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+ *
+ * The weights are kept in the format of {@link ModelSerializer}, so {@link #asModel()} gives a read-only
+ * {@link MappedModel} over them without copying, which any number of threads can predict with, and
+ * {@link #save(Path)} writes them to a file as they are. Training runs one mini-batch at a time through the
+ * activations, which hold up to the batch size given when the network is created; the gradients are calculated
+ * the same way as {@link CompiledNetwork#backward(utils.Matrix[], utils.Matrix)}. Each layer is computed a row of
+ * weights at a time: the row is copied onto the heap in bulk and used for every sample of the batch.
+ *
+ * {@link #close()} frees the memory at once. Networks that are never closed are freed once they and every model
+ * returned by {@link #asModel()} are no longer reachable.
+ */
+public final class OffHeapNetwork implements AutoCloseable {
+
+    // Frees the memory of networks that are not closed.
+    private static final Cleaner CLEANER = Cleaner.create();
+    // The largest number of doubles copied through one buffer view of the memory.
+    private static final int MAX_TRANSFER = Integer.MAX_VALUE / 8;
+
+    private final int[] layerSizes;
+    private final ActivationFunction activationFunction;
+    private final ActivationFunction outputActivationFunction;
+    private final int maxBatchSize;
+    private final long memorySize;
+    private final long modelSize;
+    private final double[] biasValues;
+    // Index in the weights and gradients of the weight matrix and bias weights of each layer.
+    private final long[] weightOffsets;
+    private final long[] biasOffsets;
+    // Index in the memory of the first weight, gradient and activation. Weights start with the bias values.
+    private final long weightsIndex;
+    private final long gradientsIndex;
+    private final long activationsIndex;
+    private final long numOfWeights;
+    // Index in the activations of the outputs of each layer, with the inputs at layer 0.
+    private final long[] activationOffsets;
+    // The rows of a batch and of a weight matrix being calculated, on the heap because the kernels and the
+    // activation functions work on arrays.
+    private final double[] inputRows;
+    private final double[] outputRows;
+    private final double[] deltaRows;
+    private final double[] previousDeltaRows;
+    private final double[] weightRow;
+    private final double[] gradientRow;
+    private final double[] biasRow;
+
+    private final ResourceScope scope;
+    // Null once closed.
+    private MemorySegment memory;
+    private double learningRate;
+
+    private OffHeapNetwork(int[] layerSizes, ActivationFunction activationFunction,
+                           ActivationFunction outputActivationFunction, double learningRate, int maxBatchSize) {
+
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+
+        int numOfLayers = layerSizes.length - 1;
+        this.layerSizes = layerSizes.clone();
+        this.activationFunction = activationFunction;
+        this.outputActivationFunction = outputActivationFunction;
+        this.learningRate = learningRate;
+        this.maxBatchSize = maxBatchSize;
+
+        biasValues = new double[numOfLayers];
+        weightOffsets = new long[numOfLayers];
+        biasOffsets = new long[numOfLayers];
+        activationOffsets = new long[layerSizes.length];
+
+        // Offsets follow the body of a model, which starts with the bias value of each layer.
+        long offset = numOfLayers;
+        for (int l = 0; l < numOfLayers; l++) {
+            weightOffsets[l] = offset;
+            offset += (long) layerSizes[l + 1] * layerSizes[l];
+            biasOffsets[l] = offset;
+            offset += layerSizes[l + 1];
+        }
+        numOfWeights = offset;
+
+        int max = 0;
+        long numOfActivations = 0;
+        for (int l = 0; l < layerSizes.length; l++) {
+            activationOffsets[l] = numOfActivations;
+            numOfActivations += (long) maxBatchSize * layerSizes[l];
+            max = Math.max(max, layerSizes[l]);
+        }
+        if ((long) maxBatchSize * max > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A batch of " + maxBatchSize + " samples of layers of " + max
+                    + " nodes does not fit in an array");
+        }
+
+        inputRows = new double[maxBatchSize * max];
+        outputRows = new double[maxBatchSize * max];
+        deltaRows = new double[maxBatchSize * max];
+        previousDeltaRows = new double[maxBatchSize * max];
+        weightRow = new double[max];
+        gradientRow = new double[max];
+        biasRow = new double[max];
+
+        long headerSize = MappedModel.headerSize(layerSizes.length);
+        weightsIndex = headerSize / 8;
+        gradientsIndex = weightsIndex + numOfWeights;
+        activationsIndex = gradientsIndex + numOfWeights;
+        modelSize = headerSize + 8 * numOfWeights;
+        memorySize = 8 * (activationsIndex + numOfActivations);
+
+        scope = ResourceScope.newSharedScope(CLEANER);
+        memory = MemorySegment.allocateNative(memorySize, 8, scope);
+    }
+
+    /**
+     * Copies the weights, activation functions and learning rate of a network into native memory.
+     *
+     * @param neuralNet    The network to copy. Its activation functions must be ones from
+     *                     {@link utils.Activations}.
+     * @param maxBatchSize The largest number of samples per weight update the network will be trained with.
+     * @return Returns the copy of the network.
+     * @throws IllegalArgumentException If the batch size is not positive or the network uses an activation
+     *                                  function that cannot be saved.
+     */
+    public static OffHeapNetwork copyOf(SimpleNeuralNet neuralNet, int maxBatchSize) {
+
+        synchronized (neuralNet) {
+            WeightSnapshot snapshot = neuralNet.getTrainingNetwork().snapshot();
+            int[] layerSizes = snapshot.getLayerSizes();
+            OffHeapNetwork network = new OffHeapNetwork(layerSizes, neuralNet.getActivationFunction(),
+                    neuralNet.getOutputActivationFunction(), neuralNet.getLearningRate(), maxBatchSize);
+
+            try {
+                network.writeHeader();
+                for (int l = 0; l < layerSizes.length - 1; l++) {
+                    network.biasValues[l] = snapshot.getBiasValue(l);
+                    network.put(network.weightsIndex + l, network.biasValues, l, 1);
+                    network.put(network.weightsIndex + network.weightOffsets[l], snapshot.getWeights(l), 0,
+                            layerSizes[l + 1] * layerSizes[l]);
+                    network.put(network.weightsIndex + network.biasOffsets[l], snapshot.getBiases(l), 0,
+                            layerSizes[l + 1]);
+                }
+            } catch (RuntimeException e) {
+                network.close();
+                throw e;
+            }
+
+            return network;
+        }
+    }
+
+    /**
+     * Loads a model file saved by {@link ModelSerializer} straight into native memory, without building the
+     * graph of the network on the heap. Files of more than 2 GB can be loaded.
+     *
+     * @param path         The file to read.
+     * @param maxBatchSize The largest number of samples per weight update the network will be trained with.
+     * @return Returns the loaded network.
+     * @throws IOException              If the file cannot be read or does not hold a valid model.
+     * @throws IllegalArgumentException If the batch size is not positive.
+     */
+    public static OffHeapNetwork load(Path path, int maxBatchSize) throws IOException {
+
+        try (ResourceScope fileScope = ResourceScope.newConfinedScope()) {
+
+            long size = Files.size(path);
+            MemorySegment file = MemorySegment.mapFile(path, 0, size, FileChannel.MapMode.READ_ONLY, fileScope);
+            ByteBuffer headerData = file.asSlice(0, Math.min(size, Integer.MAX_VALUE)).asByteBuffer()
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            MappedModel.Header header = new MappedModel.Header(headerData, size);
+
+            OffHeapNetwork network = new OffHeapNetwork(header.layerSizes, header.activationFunction,
+                    header.outputActivationFunction, header.learningRate, maxBatchSize);
+            try {
+                network.writeHeader();
+                network.readBody(file, header.precision);
+            } catch (RuntimeException e) {
+                network.close();
+                throw e;
+            }
+
+            return network;
+        }
+    }
+
+    // Writes the header of the model in double precision.
+    private void writeHeader() {
+        ModelSerializer.writeHeader(layerSizes, activationFunction, outputActivationFunction, learningRate,
+                Precision.DOUBLE, memory.asSlice(0, 8 * weightsIndex).asByteBuffer());
+    }
+
+    // Copies the bias values and weights of a mapped model file, widening the weights of float models.
+    private void readBody(MemorySegment file, Precision precision) {
+
+        long bodyStart = 8 * weightsIndex;
+
+        if (precision != Precision.FLOAT) {
+            // The body is laid out as the weights are.
+            memory.asSlice(bodyStart, 8 * numOfWeights).copyFrom(file.asSlice(bodyStart, 8 * numOfWeights));
+        } else {
+            memory.asSlice(bodyStart, 8L * biasValues.length).copyFrom(file.asSlice(bodyStart,
+                    8L * biasValues.length));
+            // The floats follow the bias values, so their index is that of the weight less the bias values.
+            long floatsStart = bodyStart + 8L * biasValues.length - 4L * biasValues.length;
+
+            for (int l = 0; l < biasValues.length; l++) {
+                int numOfInputs = layerSizes[l];
+                int numOfOutputs = layerSizes[l + 1];
+                for (int j = 0; j < numOfOutputs; j++) {
+                    long row = weightOffsets[l] + (long) j * numOfInputs;
+                    readFloats(file, floatsStart + 4 * row, weightRow, numOfInputs);
+                    put(weightsIndex + row, weightRow, 0, numOfInputs);
+                }
+                readFloats(file, floatsStart + 4 * biasOffsets[l], biasRow, numOfOutputs);
+                put(weightsIndex + biasOffsets[l], biasRow, 0, numOfOutputs);
+            }
+        }
+
+        for (int l = 0; l < biasValues.length; l++) {
+            biasValues[l] = MemoryAccess.getDoubleAtIndex(memory, weightsIndex + l, ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    // Widens little-endian floats of a file into an array.
+    private static void readFloats(MemorySegment file, long position, double[] values, int length) {
+        FloatBuffer floats = file.asSlice(position, 4L * length).asByteBuffer().order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer();
+        for (int i = 0; i < length; i++) {
+            values[i] = floats.get(i);
+        }
+    }
+
+    /**
+     * Returns a read-only model over the weights in native memory. Predictions read the weights in place, so they
+     * see every update made by training; train and predict at different times to get consistent outputs. Once the
+     * network is closed, predicting with the model throws an {@link IllegalStateException}.
+     *
+     * @return Returns a model over the weights of the network.
+     * @throws IllegalStateException If the network is closed or its model takes more than 2 GB, the most a
+     *                               {@link MappedModel} can read.
+     */
+    public synchronized MappedModel asModel() {
+
+        ensureOpen();
+        if (modelSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Model takes " + modelSize + " bytes, more than 2 GB");
+        }
+
+        try {
+            return new MappedModel(memory.asSlice(0, modelSize).asByteBuffer().asReadOnlyBuffer());
+        } catch (IOException e) {
+            // The memory always holds a valid model.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Trains the network with mini-batch gradient descent. The gradients of every sample in a batch are
+     * accumulated and the weights are updated once per batch with their average.
+     *
+     * @param inputs    The training inputs, one sample per row.
+     * @param targets   The target outputs, one sample per row.
+     * @param batchSize The number of samples per weight update. The last batch of an epoch may be smaller.
+     * @param epoch     Epoch time of the training.
+     * @throws IllegalArgumentException If the batch size is not positive or larger than the batch size the
+     *                                  network was created for, or the number of inputs and targets differ.
+     * @throws IllegalStateException    If the network is closed.
+     */
+    public synchronized void trainBatch(double[][] inputs, double[][] targets, int batchSize, int epoch) {
+
+        ensureOpen();
+        if (batchSize < 1 || batchSize > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + maxBatchSize);
+        }
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Number of inputs and targets differ");
+        }
+
+        int numOfInputs = layerSizes[0];
+        int outputLayer = layerSizes.length - 1;
+
+        for (int e = 0; e < epoch; e++) {
+            for (int start = 0; start < inputs.length; start += batchSize) {
+                int size = Math.min(batchSize, inputs.length - start);
+
+                for (int i = 0; i < size; i++) {
+                    System.arraycopy(inputs[start + i], 0, inputRows, i * numOfInputs, numOfInputs);
+                }
+                put(activationsIndex + activationOffsets[0], inputRows, 0, size * numOfInputs);
+                for (int l = 0; l < outputLayer; l++) {
+                    forwardLayer(l, size);
+                }
+
+                backward(targets, start, size);
+                applyGradients(size);
+            }
+        }
+    }
+
+    /**
+     * Calculates the outputs of the network for the given inputs, using the activations of the network. Threads
+     * that predict concurrently should use {@link #asModel()} instead.
+     *
+     * @param inputs  The input values. Only the first n values are used, where n is the number of inputs.
+     * @param outputs The array the outputs are written to.
+     * @throws IllegalStateException If the network is closed.
+     */
+    public synchronized void predict(double[] inputs, double[] outputs) {
+
+        ensureOpen();
+        int outputLayer = layerSizes.length - 1;
+
+        put(activationsIndex + activationOffsets[0], inputs, 0, layerSizes[0]);
+        for (int l = 0; l < outputLayer; l++) {
+            forwardLayer(l, 1);
+        }
+        get(activationsIndex + activationOffsets[outputLayer], outputs, 0, layerSizes[outputLayer]);
+    }
+
+    // Calculates the outputs of a layer for the first numOfSamples rows of the activations of the layer before.
+    private void forwardLayer(int layer, int numOfSamples) {
+
+        int numOfInputs = layerSizes[layer];
+        int numOfOutputs = layerSizes[layer + 1];
+        double biasValue = biasValues[layer];
+
+        get(activationsIndex + activationOffsets[layer], inputRows, 0, numOfSamples * numOfInputs);
+        get(weightsIndex + biasOffsets[layer], biasRow, 0, numOfOutputs);
+
+        for (int j = 0; j < numOfOutputs; j++) {
+            get(weightsIndex + weightOffsets[layer] + (long) j * numOfInputs, weightRow, 0, numOfInputs);
+
+            for (int i = 0; i < numOfSamples; i++) {
+                int in = i * numOfInputs;
+
+                // Same order of terms as CompiledNetwork.forwardLayer.
+                double net = 0;
+                for (int k = 0; k < numOfInputs; k++) {
+                    net += inputRows[in + k] * weightRow[k] + biasValue;
+                }
+                net += biasValue * biasRow[j] + biasValue;
+                outputRows[i * numOfOutputs + j] = net;
+            }
+        }
+
+        ActivationFunction function = getActivationFunction(layer);
+        for (int i = 0; i < numOfSamples; i++) {
+            function.applyInPlace(outputRows, i * numOfOutputs, (i + 1) * numOfOutputs);
+        }
+        put(activationsIndex + activationOffsets[layer + 1], outputRows, 0, numOfSamples * numOfOutputs);
+    }
+
+    // Adds the gradients of a batch whose activations have been calculated.
+    private void backward(double[][] targets, int start, int numOfSamples) {
+
+        int outputLayer = layerSizes.length - 1;
+        int numOfOutputs = layerSizes[outputLayer];
+        Kernels kernels = Kernels.get();
+        // The error terms of the layer being propagated and of the layer before alternate between two arrays.
+        double[] delta = deltaRows;
+        double[] previousDelta = previousDeltaRows;
+
+        get(activationsIndex + activationOffsets[outputLayer], outputRows, 0, numOfSamples * numOfOutputs);
+        for (int i = 0; i < numOfSamples; i++) {
+            int row = i * numOfOutputs;
+            for (int j = 0; j < numOfOutputs; j++) {
+                delta[row + j] = -(targets[start + i][j] - outputRows[row + j]);
+            }
+            getActivationFunction(outputLayer - 1).deltaInPlace(delta, outputRows, row, row + numOfOutputs);
+        }
+
+        for (int l = outputLayer - 1; l >= 0; l--) {
+            int numOfInputs = layerSizes[l];
+            int numOfNodes = layerSizes[l + 1];
+            double biasValue = biasValues[l];
+
+            get(activationsIndex + activationOffsets[l], inputRows, 0, numOfSamples * numOfInputs);
+            get(gradientsIndex + biasOffsets[l], biasRow, 0, numOfNodes);
+            if (l > 0) {
+                Arrays.fill(previousDelta, 0, numOfSamples * numOfInputs, 0);
+            }
+
+            for (int j = 0; j < numOfNodes; j++) {
+                long w = weightOffsets[l] + (long) j * numOfInputs;
+                get(gradientsIndex + w, gradientRow, 0, numOfInputs);
+                if (l > 0) {
+                    get(weightsIndex + w, weightRow, 0, numOfInputs);
+                }
+
+                for (int i = 0; i < numOfSamples; i++) {
+                    double d = delta[i * numOfNodes + j];
+                    // Every edge's gradient is the error term of its to node times the output of its from node.
+                    kernels.axpy(d, inputRows, i * numOfInputs, gradientRow, 0, numOfInputs);
+                    biasRow[j] += biasValue * d;
+                    if (l > 0) {
+                        // Like HiddenNode.calculateDelta, the error of a hidden node sums the error terms of the
+                        // nodes it feeds, weighted by the edges.
+                        kernels.axpy(d, weightRow, 0, previousDelta, i * numOfInputs, numOfInputs);
+                    }
+                }
+
+                put(gradientsIndex + w, gradientRow, 0, numOfInputs);
+            }
+            put(gradientsIndex + biasOffsets[l], biasRow, 0, numOfNodes);
+
+            if (l > 0) {
+                for (int i = 0; i < numOfSamples; i++) {
+                    int row = i * numOfInputs;
+                    getActivationFunction(l - 1).deltaInPlace(previousDelta, inputRows, row, row + numOfInputs);
+                }
+
+                double[] swap = delta;
+                delta = previousDelta;
+                previousDelta = swap;
+            }
+        }
+    }
+
+    // Updates the weights with the average of the gradients of a batch and clears the gradients.
+    private void applyGradients(int numOfSamples) {
+
+        double step = learningRate / numOfSamples;
+        Kernels kernels = Kernels.get();
+
+        for (int l = 0; l < biasValues.length; l++) {
+            int numOfInputs = layerSizes[l];
+            int numOfNodes = layerSizes[l + 1];
+
+            for (int j = 0; j < numOfNodes; j++) {
+                long w = weightOffsets[l] + (long) j * numOfInputs;
+                get(weightsIndex + w, weightRow, 0, numOfInputs);
+                get(gradientsIndex + w, gradientRow, 0, numOfInputs);
+                kernels.axpy(-step, gradientRow, 0, weightRow, 0, numOfInputs);
+                put(weightsIndex + w, weightRow, 0, numOfInputs);
+            }
+
+            get(weightsIndex + biasOffsets[l], weightRow, 0, numOfNodes);
+            get(gradientsIndex + biasOffsets[l], gradientRow, 0, numOfNodes);
+            kernels.axpy(-step, gradientRow, 0, weightRow, 0, numOfNodes);
+            put(weightsIndex + biasOffsets[l], weightRow, 0, numOfNodes);
+        }
+
+        memory.asSlice(8 * gradientsIndex, 8 * numOfWeights).fill((byte) 0);
+    }
+
+    // Returns the activation function applied to the outputs of the weights of a layer.
+    private ActivationFunction getActivationFunction(int layer) {
+        return layer == layerSizes.length - 2 ? outputActivationFunction : activationFunction;
+    }
+
+    // Copies doubles of the memory, from the given index in doubles on, into an array in bulk.
+    private void get(long index, double[] values, int offset, int length) {
+        for (int done = 0; done < length; done += MAX_TRANSFER) {
+            int count = Math.min(MAX_TRANSFER, length - done);
+            doubles(index + done, count).get(values, offset + done, count);
+        }
+    }
+
+    // Copies doubles of an array into the memory, from the given index in doubles on, in bulk.
+    private void put(long index, double[] values, int offset, int length) {
+        for (int done = 0; done < length; done += MAX_TRANSFER) {
+            int count = Math.min(MAX_TRANSFER, length - done);
+            doubles(index + done, count).put(values, offset + done, count);
+        }
+    }
+
+    // Returns a little-endian view of a region of the memory.
+    private DoubleBuffer doubles(long index, int length) {
+        return memory.asSlice(8 * index, 8L * length).asByteBuffer().order(ByteOrder.LITTLE_ENDIAN)
+                .asDoubleBuffer();
+    }
+
+    /**
+     * Copies the weights into the edges of a network with the same layers.
+     *
+     * @param neuralNet The network to copy into.
+     * @throws IOException           If the layers of the network differ.
+     * @throws IllegalStateException If the network is closed.
+     */
+    public synchronized void copyTo(SimpleNeuralNet neuralNet) throws IOException {
+
+        ensureOpen();
+
+        synchronized (neuralNet) {
+            CompiledNetwork engine = neuralNet.getTrainingNetwork();
+
+            if (!Arrays.equals(layerSizes, engine.getLayerSizes())) {
+                throw new IOException("Model has layers " + Arrays.toString(layerSizes) + " but network has "
+                        + Arrays.toString(engine.getLayerSizes()));
+            }
+
+            for (int l = 0; l < biasValues.length; l++) {
+                get(weightsIndex + weightOffsets[l], engine.getWeights(l), 0, layerSizes[l + 1] * layerSizes[l]);
+                get(weightsIndex + biasOffsets[l], engine.getBiases(l), 0, layerSizes[l + 1]);
+            }
+            engine.writeBack();
+        }
+
+        neuralNet.weightsTrained();
+    }
+
+    /**
+     * Saves the network to a file in the format of {@link ModelSerializer}, replacing the file if it exists.
+     *
+     * @param path The file to write.
+     * @throws IOException           If the file cannot be written.
+     * @throws IllegalStateException If the network is closed.
+     */
+    public synchronized void save(Path path) throws IOException {
+
+        ensureOpen();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long position = 0; position < modelSize; position += 8L * MAX_TRANSFER) {
+                ByteBuffer model = memory.asSlice(position, Math.min(8L * MAX_TRANSFER, modelSize - position))
+                        .asByteBuffer();
+                while (model.hasRemaining()) {
+                    channel.write(model);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the learning rate used by {@link #trainBatch(double[][], double[][], int, int)} and saved with the
+     * weights.
+     *
+     * @param learningRate The learning rate.
+     * @throws IllegalStateException If the network is closed.
+     */
+    public synchronized void setLearningRate(double learningRate) {
+        ensureOpen();
+        this.learningRate = learningRate;
+        // The learning rate is the last field of the fixed part of the header.
+        MemoryAccess.setDoubleAtOffset(memory, MappedModel.FIXED_HEADER_SIZE - 8, ByteOrder.LITTLE_ENDIAN,
+                learningRate);
+    }
+
+    /**
+     * Returns the learning rate.
+     *
+     * @return Returns the learning rate.
+     */
+    public synchronized double getLearningRate() {
+        return learningRate;
+    }
+
+    /**
+     * Returns the number of bytes of native memory the network holds.
+     *
+     * @return Returns the size of the memory of the network in bytes.
+     */
+    public long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * Returns whether the network has been closed.
+     *
+     * @return Returns true if the network has been closed.
+     */
+    public synchronized boolean isClosed() {
+        return memory == null;
+    }
+
+    /**
+     * Closes the network and frees its memory. Models returned by {@link #asModel()} can no longer be used either.
+     * Closing a closed network has no effect.
+     *
+     * @throws IllegalStateException If another thread is predicting with a model of the network at that moment.
+     */
+    @Override
+    public synchronized void close() {
+        if (memory != null) {
+            scope.close();
+            memory = null;
+        }
+    }
+
+    private void ensureOpen() {
+        if (memory == null) {
+            throw new IllegalStateException("Network is closed");
+        }
+    }
+}
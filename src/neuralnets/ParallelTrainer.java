@@ -0,0 +1,201 @@
+package neuralnets;
+
+import utils.Matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trains a {@link SimpleNeuralNet} with several threads by splitting the training set between them. The threads
+ * share the weights of the network's compiled form, and the edges of the graph are updated when training ends.
+ */
+public class ParallelTrainer {
+
+    /**
+     * How the threads combine their updates.
+     */
+    public enum Mode {
+        /**
+         * Every batch is split between the threads. Each thread calculates the gradients of its part into its
+         * own buffer, and the buffers are summed into a single update once all threads finish. The result
+         * matches {@link SimpleNeuralNet#trainBatch(double[][], double[][], int, int)} up to rounding.
+         */
+        SYNCHRONOUS,
+        /**
+         * Every thread trains on its own share of the training set and applies its updates straight to the shared
+         * weights without locking. Updates from different threads may overwrite each other, which works well when
+         * gradients are sparse or small and removes all waiting between threads.
+         */
+        HOGWILD
+    }
+
+    private final SimpleNeuralNet neuralNet;
+    private final Mode mode;
+    private final int numOfThreads;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a trainer with its own pool of worker threads.
+     *
+     * @param neuralNet    The network to train.
+     * @param numOfThreads The number of worker threads.
+     * @param mode         How the threads combine their updates.
+     * @throws IllegalArgumentException If the number of threads is not positive.
+     */
+    public ParallelTrainer(SimpleNeuralNet neuralNet, int numOfThreads, Mode mode) {
+
+        if (numOfThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+
+        this.neuralNet = neuralNet;
+        this.mode = mode;
+        this.numOfThreads = numOfThreads;
+        this.executor = Executors.newFixedThreadPool(numOfThreads, runnable -> {
+            Thread thread = new Thread(runnable, "neural-net-trainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Trains the network. The network is locked for the duration, so other calls on it wait until training ends.
+     *
+     * @param inputs    The training inputs, one sample per row.
+     * @param targets   The target outputs, one sample per row.
+     * @param batchSize The number of samples per weight update. In synchronous mode a batch is split between
+     *                  the threads; in Hogwild mode every thread updates after each batch of its own.
+     * @param epoch     Epoch time of the training.
+     * @throws IllegalArgumentException If the batch size is not positive or the number of inputs and targets
+     *                                  differ.
+     */
+    public void train(double[][] inputs, double[][] targets, int batchSize, int epoch) {
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Number of inputs and targets differ");
+        }
+
+        synchronized (neuralNet) {
+
+            if (neuralNet.getEdges().isEmpty() || inputs.length == 0) {
+                return;
+            }
+
+            CompiledNetwork engine = neuralNet.getTrainingNetwork();
+            Gradients[] gradients = new Gradients[numOfThreads];
+            for (int t = 0; t < numOfThreads; t++) {
+                gradients[t] = engine.newGradients();
+            }
+
+            try {
+                for (int e = 0; e < epoch; e++) {
+                    if (mode == Mode.SYNCHRONOUS) {
+                        trainSynchronousEpoch(engine, gradients, inputs, targets, batchSize);
+                    } else {
+                        trainHogwildEpoch(engine, gradients, inputs, targets, batchSize);
+                    }
+                }
+            } finally {
+                engine.writeBack();
+                neuralNet.weightsTrained();
+            }
+        }
+    }
+
+    private void trainSynchronousEpoch(CompiledNetwork engine, Gradients[] gradients, double[][] inputs,
+                                       double[][] targets, int batchSize) {
+
+        double learningRate = neuralNet.getLearningRate();
+
+        for (int start = 0; start < inputs.length; start += batchSize) {
+            int size = Math.min(batchSize, inputs.length - start);
+            List<Callable<Void>> tasks = new ArrayList<>();
+
+            for (int t = 0; t < numOfThreads; t++) {
+                int from = start + (int) ((long) size * t / numOfThreads);
+                int to = start + (int) ((long) size * (t + 1) / numOfThreads);
+                Gradients threadGradients = gradients[t];
+
+                if (from < to) {
+                    tasks.add(() -> {
+                        accumulate(engine, threadGradients, inputs, targets, from, to - from);
+                        return null;
+                    });
+                }
+            }
+
+            runAll(tasks);
+
+            // Reduce into the first buffer and apply a single update.
+            for (int t = 1; t < numOfThreads; t++) {
+                gradients[0].add(gradients[t]);
+                gradients[t].clear();
+            }
+            engine.applyGradients(gradients[0], learningRate);
+        }
+    }
+
+    private void trainHogwildEpoch(CompiledNetwork engine, Gradients[] gradients, double[][] inputs,
+                                   double[][] targets, int batchSize) {
+
+        double learningRate = neuralNet.getLearningRate();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        for (int t = 0; t < numOfThreads; t++) {
+            int from = (int) ((long) inputs.length * t / numOfThreads);
+            int to = (int) ((long) inputs.length * (t + 1) / numOfThreads);
+            Gradients threadGradients = gradients[t];
+
+            tasks.add(() -> {
+                for (int start = from; start < to; start += batchSize) {
+                    accumulate(engine, threadGradients, inputs, targets, start, Math.min(batchSize, to - start));
+                    engine.applyGradients(threadGradients, learningRate);
+                }
+                return null;
+            });
+        }
+
+        runAll(tasks);
+    }
+
+    // Adds the gradients of a range of samples to the given buffer.
+    private static void accumulate(CompiledNetwork engine, Gradients gradients, double[][] inputs,
+                                   double[][] targets, int from, int size) {
+
+        Matrix[] activations = engine.forward(Matrix.fromRows(inputs, from, size, engine.getNumOfInputs()));
+        engine.backward(activations, Matrix.fromRows(targets, from, size, engine.getNumOfOutputs()), gradients);
+    }
+
+    // Runs the tasks on the worker threads and waits for all of them, rethrowing the first failure.
+    private void runAll(List<Callable<Void>> tasks) {
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Training was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops the worker threads. The trainer cannot be used afterwards.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
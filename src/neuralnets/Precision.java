@@ -0,0 +1,24 @@
+package neuralnets;
+
+/**
+ * Which kernels a {@link SimpleNeuralNet} runs batch training on. The network keeps its weights in double in every
+ * precision; float and mixed precision train a float copy of them, which is written back when training ends.
+ */
+public enum Precision {
+    /**
+     * Everything is stored as 64-bit doubles.
+     */
+    DOUBLE,
+    /**
+     * The copy of the weights, the activations and the gradients of batch training are 32-bit floats, which halves
+     * the memory traffic of every pass. Models are saved with float weights, so saving rounds the double weights
+     * of the network to float; weights set by graph training or by hand lose their extra digits in a round trip.
+     */
+    FLOAT,
+    /**
+     * Like {@link #FLOAT}, except that a double master copy of the weights takes the updates and the float
+     * weights are rounded from it after each one, so updates too small to change a float are not lost. Models
+     * are saved with the double master weights.
+     */
+    MIXED
+}
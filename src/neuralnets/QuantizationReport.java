@@ -0,0 +1,65 @@
+package neuralnets;
+
+/**
+ * How closely the outputs of a {@link QuantizedNetwork} follow those of the network it was quantized from, as
+ * measured by {@link QuantizedNetwork#evaluate(WeightSnapshot, double[], int)}.
+ */
+public final class QuantizationReport {
+
+    private final int numOfSamples;
+    private final double maxAbsoluteError;
+    private final double meanAbsoluteError;
+    private final double agreement;
+
+    QuantizationReport(int numOfSamples, double maxAbsoluteError, double meanAbsoluteError, double agreement) {
+
+        this.numOfSamples = numOfSamples;
+        this.maxAbsoluteError = maxAbsoluteError;
+        this.meanAbsoluteError = meanAbsoluteError;
+        this.agreement = agreement;
+    }
+
+    /**
+     * Returns the number of samples compared.
+     *
+     * @return Returns the number of samples compared.
+     */
+    public int getNumOfSamples() {
+        return numOfSamples;
+    }
+
+    /**
+     * Returns the largest difference between an output of the quantized network and the same output of the
+     * original network.
+     *
+     * @return Returns the largest absolute error over all outputs of all samples.
+     */
+    public double getMaxAbsoluteError() {
+        return maxAbsoluteError;
+    }
+
+    /**
+     * Returns the mean difference between the outputs of the quantized network and the original network.
+     *
+     * @return Returns the mean absolute error over all outputs of all samples.
+     */
+    public double getMeanAbsoluteError() {
+        return meanAbsoluteError;
+    }
+
+    /**
+     * Returns the fraction of samples for which both networks give their largest output at the same index, which
+     * is the fraction of predicted classes that quantization leaves unchanged.
+     *
+     * @return Returns the fraction of samples on which the networks agree, between 0 and 1.
+     */
+    public double getAgreement() {
+        return agreement;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[Quantization samples=%d, max error=%.4g, mean error=%.4g, agreement=%.2f%%]",
+                numOfSamples, maxAbsoluteError, meanAbsoluteError, 100 * agreement);
+    }
+}
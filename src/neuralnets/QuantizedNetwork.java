@@ -0,0 +1,350 @@
+package neuralnets;
+
+import utils.ActivationFunction;
+import utils.Kernels;
+import utils.Matrix;
+
+/**
+ * A network for inference with its weights quantized to 8-bit integers, a quarter of the size of the double
+ * weights. Each row of a weight matrix, the weights into one node, has its own scale, and the weights are rounded
+ * to the nearest multiple of it in [-127, 127]. The inputs of each layer are quantized too, with a scale and zero
+ * point chosen from the range of values seen during calibration, so every layer is an integer dot product per node.
+ * The sums are converted back to doubles before the bias and the activation function are applied.
+ *
+ * Quantized outputs only approximate the outputs of the network; {@link #evaluate(WeightSnapshot, double[], int)}
+ * measures how closely. A quantized network is immutable and can be used by many threads at once.
+ */
+public final class QuantizedNetwork {
+
+    // Number of samples pushed through the layers at a time during calibration.
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final int[] layerSizes;
+    private final byte[][] weights;
+    private final double[][] weightScales;
+    private final double[][] biases;
+    private final double[] biasValues;
+    private final double[] inputScales;
+    private final int[] inputZeroPoints;
+    private final ActivationFunction[] activationFunctions;
+    // The sum of each row of the quantized weights, which removes the zero point of the inputs from the sums.
+    private final int[][] rowSums;
+    // The bias each node adds to its sum, as in CompiledNetwork.forwardLayer.
+    private final double[][] nodeBiases;
+    private final int maxLayerSize;
+
+    QuantizedNetwork(int[] layerSizes, byte[][] weights, double[][] weightScales, double[][] biases,
+                     double[] biasValues, double[] inputScales, int[] inputZeroPoints,
+                     ActivationFunction[] activationFunctions) {
+
+        int numOfLayers = layerSizes.length - 1;
+        this.layerSizes = layerSizes.clone();
+        this.weights = weights;
+        this.weightScales = weightScales;
+        this.biases = biases;
+        this.biasValues = biasValues;
+        this.inputScales = inputScales;
+        this.inputZeroPoints = inputZeroPoints;
+        this.activationFunctions = activationFunctions;
+        rowSums = new int[numOfLayers][];
+        nodeBiases = new double[numOfLayers][];
+
+        for (int l = 0; l < numOfLayers; l++) {
+            int numOfInputs = layerSizes[l];
+            int numOfOutputs = layerSizes[l + 1];
+            rowSums[l] = new int[numOfOutputs];
+            nodeBiases[l] = new double[numOfOutputs];
+
+            for (int j = 0; j < numOfOutputs; j++) {
+                int sum = 0;
+                for (int k = 0; k < numOfInputs; k++) {
+                    sum += weights[l][j * numOfInputs + k];
+                }
+                rowSums[l][j] = sum;
+                // The graph adds the bias value once per incoming edge, including the edge from the bias node.
+                nodeBiases[l][j] = biasValues[l] * biases[l][j] + (numOfInputs + 1) * biasValues[l];
+            }
+        }
+
+        int max = 0;
+        for (int size : layerSizes) {
+            max = Math.max(max, size);
+        }
+        maxLayerSize = max;
+    }
+
+    /**
+     * Quantizes the weights of a network. The calibration samples are run through the network to find the range
+     * of the inputs of every layer, so they should be representative of the inputs the network will see; values
+     * outside the range seen are clamped.
+     *
+     * @param snapshot          The weights to quantize.
+     * @param calibrationInputs The inputs of the calibration samples, one after the other.
+     * @param numOfSamples      The number of calibration samples.
+     * @return Returns the quantized network.
+     * @throws IllegalArgumentException If there are no samples or the array is too small for them.
+     */
+    public static QuantizedNetwork quantize(WeightSnapshot snapshot, double[] calibrationInputs, int numOfSamples) {
+
+        int[] layerSizes = snapshot.getLayerSizes();
+        int numOfLayers = layerSizes.length - 1;
+
+        if (numOfSamples < 1) {
+            throw new IllegalArgumentException("Calibration needs at least one sample");
+        }
+        if (calibrationInputs.length < numOfSamples * layerSizes[0]) {
+            throw new IllegalArgumentException("Array is too small for " + numOfSamples + " samples");
+        }
+
+        // The range of each layer's inputs always includes 0, so that 0 is represented exactly.
+        double[] min = new double[numOfLayers];
+        double[] max = new double[numOfLayers];
+
+        for (int start = 0; start < numOfSamples; start += MAX_BATCH_SIZE) {
+            int size = Math.min(MAX_BATCH_SIZE, numOfSamples - start);
+            double[] batch = new double[size * layerSizes[0]];
+            System.arraycopy(calibrationInputs, start * layerSizes[0], batch, 0, batch.length);
+
+            Matrix activations = new Matrix(batch, size, layerSizes[0]);
+            for (int l = 0; l < numOfLayers; l++) {
+                for (double value : activations.getData()) {
+                    min[l] = Math.min(min[l], value);
+                    max[l] = Math.max(max[l], value);
+                }
+                if (l < numOfLayers - 1) {
+                    activations = CompiledNetwork.forwardLayer(activations, snapshot.getWeights(l),
+                            snapshot.getBiases(l), snapshot.getBiasValue(l), layerSizes[l + 1],
+                            snapshot.getActivationFunction(l));
+                }
+            }
+        }
+
+        byte[][] weights = new byte[numOfLayers][];
+        double[][] weightScales = new double[numOfLayers][];
+        double[][] biases = new double[numOfLayers][];
+        double[] biasValues = new double[numOfLayers];
+        double[] inputScales = new double[numOfLayers];
+        int[] inputZeroPoints = new int[numOfLayers];
+        ActivationFunction[] activationFunctions = new ActivationFunction[numOfLayers];
+
+        for (int l = 0; l < numOfLayers; l++) {
+            int numOfInputs = layerSizes[l];
+            int numOfOutputs = layerSizes[l + 1];
+            double[] w = snapshot.getWeights(l);
+            weights[l] = new byte[w.length];
+            weightScales[l] = new double[numOfOutputs];
+
+            for (int j = 0; j < numOfOutputs; j++) {
+                int row = j * numOfInputs;
+                double largest = 0;
+                for (int k = 0; k < numOfInputs; k++) {
+                    largest = Math.max(largest, Math.abs(w[row + k]));
+                }
+
+                double scale = largest > 0 ? largest / 127 : 1;
+                weightScales[l][j] = scale;
+                for (int k = 0; k < numOfInputs; k++) {
+                    weights[l][row + k] = (byte) Math.round(w[row + k] / scale);
+                }
+            }
+
+            biases[l] = snapshot.getBiases(l).clone();
+            biasValues[l] = snapshot.getBiasValue(l);
+            inputScales[l] = max[l] > min[l] ? (max[l] - min[l]) / 255 : 1;
+            inputZeroPoints[l] = (int) Math.max(-128, Math.min(127, Math.round(-128 - min[l] / inputScales[l])));
+            activationFunctions[l] = snapshot.getActivationFunction(l);
+        }
+
+        return new QuantizedNetwork(layerSizes, weights, weightScales, biases, biasValues, inputScales,
+                inputZeroPoints, activationFunctions);
+    }
+
+    /**
+     * Calculates the outputs of the network for the given inputs.
+     *
+     * @param inputs  The input values. Only the first n values are used, where n is the number of inputs.
+     * @param outputs The array the outputs are written to.
+     */
+    public void predict(double[] inputs, double[] outputs) {
+        predict(inputs, 0, outputs, 0, new byte[maxLayerSize], new double[maxLayerSize]);
+    }
+
+    /**
+     * Calculates the outputs for a batch of samples, one sample at a time.
+     *
+     * @param inputs       The inputs of every sample, one after the other.
+     * @param numOfSamples The number of samples.
+     * @param outputs      The array the outputs of every sample are written to, one after the other.
+     * @throws IllegalArgumentException If the arrays are too small for the number of samples.
+     */
+    public void predictBatch(double[] inputs, int numOfSamples, double[] outputs) {
+
+        int numOfInputs = getNumOfInputs();
+        int numOfOutputs = getNumOfOutputs();
+
+        if (inputs.length < numOfSamples * numOfInputs || outputs.length < numOfSamples * numOfOutputs) {
+            throw new IllegalArgumentException("Arrays are too small for " + numOfSamples + " samples");
+        }
+
+        byte[] quantized = new byte[maxLayerSize];
+        double[] values = new double[maxLayerSize];
+
+        for (int i = 0; i < numOfSamples; i++) {
+            predict(inputs, i * numOfInputs, outputs, i * numOfOutputs, quantized, values);
+        }
+    }
+
+    private void predict(double[] inputs, int inOffset, double[] outputs, int outOffset, byte[] quantized,
+                         double[] values) {
+
+        Kernels kernels = Kernels.get();
+        quantizeInputs(inputs, inOffset, layerSizes[0], quantized, 0);
+
+        for (int l = 0; l < weights.length; l++) {
+            int numOfInputs = layerSizes[l];
+            int numOfOutputs = layerSizes[l + 1];
+            double inputScale = inputScales[l];
+            int zeroPoint = inputZeroPoints[l];
+
+            for (int j = 0; j < numOfOutputs; j++) {
+                int sum = kernels.dot(weights[l], j * numOfInputs, quantized, 0, numOfInputs) - zeroPoint
+                        * rowSums[l][j];
+                values[j] = sum * (weightScales[l][j] * inputScale) + nodeBiases[l][j];
+            }
+
+            activationFunctions[l].applyInPlace(values, 0, numOfOutputs);
+
+            if (l < weights.length - 1) {
+                quantizeInputs(values, 0, numOfOutputs, quantized, l + 1);
+            }
+        }
+
+        System.arraycopy(values, 0, outputs, outOffset, getNumOfOutputs());
+    }
+
+    // Quantizes values with the scale and zero point of the inputs of a layer, clamping values out of range.
+    private void quantizeInputs(double[] values, int offset, int length, byte[] quantized, int layer) {
+
+        double inverseScale = 1 / inputScales[layer];
+        int zeroPoint = inputZeroPoints[layer];
+
+        for (int i = 0; i < length; i++) {
+            long q = Math.round(values[offset + i] * inverseScale) + zeroPoint;
+            quantized[i] = (byte) Math.max(-128, Math.min(127, q));
+        }
+    }
+
+    /**
+     * Compares the outputs of the quantized network with those of the network it was quantized from.
+     *
+     * @param reference    The weights the network was quantized from.
+     * @param inputs       The inputs of the samples to compare on, one after the other.
+     * @param numOfSamples The number of samples.
+     * @return Returns the differences between the outputs.
+     * @throws IllegalArgumentException If the networks have different numbers of inputs or outputs, or the array
+     *                                  is too small for the number of samples.
+     */
+    public QuantizationReport evaluate(WeightSnapshot reference, double[] inputs, int numOfSamples) {
+
+        int numOfOutputs = getNumOfOutputs();
+
+        if (reference.getNumOfInputs() != getNumOfInputs() || reference.getNumOfOutputs() != numOfOutputs) {
+            throw new IllegalArgumentException("Networks have different inputs or outputs");
+        }
+
+        double[] expected = new double[numOfSamples * numOfOutputs];
+        double[] actual = new double[numOfSamples * numOfOutputs];
+        reference.predictBatch(inputs, numOfSamples, expected);
+        predictBatch(inputs, numOfSamples, actual);
+
+        double maxError = 0;
+        double sumOfErrors = 0;
+        int agreements = 0;
+
+        for (int i = 0; i < numOfSamples; i++) {
+            int offset = i * numOfOutputs;
+            for (int j = offset; j < offset + numOfOutputs; j++) {
+                double error = Math.abs(expected[j] - actual[j]);
+                maxError = Math.max(maxError, error);
+                sumOfErrors += error;
+            }
+            if (argMax(expected, offset, numOfOutputs) == argMax(actual, offset, numOfOutputs)) {
+                agreements++;
+            }
+        }
+
+        return new QuantizationReport(numOfSamples, maxError,
+                numOfSamples == 0 ? 0 : sumOfErrors / ((double) numOfSamples * numOfOutputs),
+                numOfSamples == 0 ? 1 : (double) agreements / numOfSamples);
+    }
+
+    private static int argMax(double[] values, int offset, int length) {
+
+        int best = 0;
+        for (int j = 1; j < length; j++) {
+            if (values[offset + j] > values[offset + best]) {
+                best = j;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns the number of inputs of the network.
+     *
+     * @return Returns the number of inputs of the network.
+     */
+    public int getNumOfInputs() {
+        return layerSizes[0];
+    }
+
+    /**
+     * Returns the number of outputs of the network.
+     *
+     * @return Returns the number of outputs of the network.
+     */
+    public int getNumOfOutputs() {
+        return layerSizes[layerSizes.length - 1];
+    }
+
+    // Returns the number of nodes at each layer, excluding bias nodes.
+    int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    // Returns the row-major quantized weight matrix of a layer. The array must not be modified.
+    byte[] getWeights(int layer) {
+        return weights[layer];
+    }
+
+    // Returns the scale of each row of the weight matrix of a layer. The array must not be modified.
+    double[] getWeightScales(int layer) {
+        return weightScales[layer];
+    }
+
+    // Returns the weights of the edges from the bias node of a layer. The array must not be modified.
+    double[] getBiases(int layer) {
+        return biases[layer];
+    }
+
+    // Returns the value of the bias node of a layer.
+    double getBiasValue(int layer) {
+        return biasValues[layer];
+    }
+
+    // Returns the scale of the quantized inputs of a layer.
+    double getInputScale(int layer) {
+        return inputScales[layer];
+    }
+
+    // Returns the quantized value representing an input of 0 to a layer.
+    int getInputZeroPoint(int layer) {
+        return inputZeroPoints[layer];
+    }
+
+    // Returns the activation function of a layer.
+    ActivationFunction getActivationFunction(int layer) {
+        return activationFunctions[layer];
+    }
+}
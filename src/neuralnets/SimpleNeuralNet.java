@@ -1,20 +1,50 @@
 package neuralnets;
 
+import neuralnets.data.TrainingDataSource;
 import neuralnets.nodes.*;
+import utils.ActivationFunction;
+import utils.Activations;
+import utils.Matrix;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
 public class SimpleNeuralNet extends NeuralNetwork<Double, Double> {
 
+    private CompiledNetwork compiledNetwork;
+    // Compiled network used for batch training while the network is not in compiled execution mode.
+    private CompiledNetwork trainingNetwork;
+    // Weights read by lock-free predictions. Replaced as a whole whenever training publishes new weights.
+    private volatile WeightSnapshot weightSnapshot;
+    // Nodes of each layer excluding bias nodes, and the error term of each of them during the backward pass.
+    private HiddenNode[][] layerNodes;
+    private double[][] deltas;
+    private final TrainingMonitor trainingMonitor = new TrainingMonitor();
+    private Precision precision = Precision.DOUBLE;
+    // Float copy of the weights that batch training runs on in float and mixed precision.
+    private FloatNetwork floatNetwork;
+
     public SimpleNeuralNet(List<Integer> nodeConfig) {
-        super(out -> 1 / (1 + Math.exp(-out)), nodeConfig);
+        super(Activations.SIGMOID, nodeConfig);
+        initialize();
+    }
+
+    /**
+     * Constructs a network with the given activation function at every layer.
+     *
+     * @param nodeConfig         The number of nodes at each layer.
+     * @param activationFunction The activation function, for example one of {@link Activations}.
+     */
+    public SimpleNeuralNet(List<Integer> nodeConfig, ActivationFunction activationFunction) {
+        super(activationFunction, nodeConfig);
         initialize();
     }
 
     public SimpleNeuralNet() {
-        super(out -> 1 / (1 + Math.exp(-out)));
+        super(Activations.SIGMOID);
     }
 
     /**
@@ -31,8 +61,6 @@ public class SimpleNeuralNet extends NeuralNetwork<Double, Double> {
             int numOfFromNodes = nodeConfig.get(i - 1);
             int numOfToNodes = nodeConfig.get(i);
 
-            List<NodeEdge> edges = new ArrayList<>();
-
             // If it's the first iteration of the loop we will want to create the InputNodes and then add a Bias node.
             // Otherwise the fromNodes become the toNodes because they would have already been created on the previous
             // iteration.
@@ -65,36 +93,450 @@ public class SimpleNeuralNet extends NeuralNetwork<Double, Double> {
 
             allNodes.addAll(toNodes);
 
-            // Links all nodes to form a fully connected network.
-            for (INode fromNode : fromNodes) {
-                for (INode toNode : toNodes) {
-                    // Do not connect to bias nodes.
-                    if (!(toNode instanceof Bias))
-                        edges.add(new NodeEdge(i - 1, fromNode, toNode));
-                }
-            }
+            // Links all nodes to form a fully connected network, storing the weights of the layer in packed
+            // arrays. Do not connect to bias nodes.
+            List<INode> connectedNodes = new ArrayList<>(toNodes);
+            connectedNodes.removeIf(node -> node instanceof Bias);
+
             // Insert edges onto map.
-            this.edges.put(i - 1, edges);
+            this.edges.put(i - 1, new DenseLayer(i - 1, fromNodes, connectedNodes).getEdges());
+
+        }
+
+        layerNodes = new HiddenNode[nodeConfig.size()][];
+        deltas = new double[nodeConfig.size()][];
 
+        for (int l = 1; l < nodeConfig.size(); l++) {
+            List<INode> nodes = getNodesAtLayer(l);
+            nodes.removeIf(e -> e instanceof Bias);
+            layerNodes[l] = nodes.toArray(new HiddenNode[0]);
+            deltas[l] = new double[nodes.size()];
         }
 
     }
 
 
+    /**
+     * Switches the network to compiled execution. The graph is lowered into per-layer weight matrices, and
+     * {@link #output()} runs layer by layer over them instead of traversing the nodes. The matrices are
+     * refreshed whenever a weight of the graph changes.
+     */
+    public synchronized void compile() {
+        compiledNetwork = CompiledNetwork.compile(this);
+    }
+
+    /**
+     * Switches the network back to evaluating the node graph.
+     */
+    public synchronized void decompile() {
+        compiledNetwork = null;
+    }
+
+    /**
+     * Returns true if the network is in compiled execution mode.
+     *
+     * @return Returns true if the network is in compiled execution mode.
+     */
+    public synchronized boolean isCompiled() {
+        return compiledNetwork != null;
+    }
+
+    /**
+     * Sets which kernels batch training runs on. In float and mixed precision the weights are rounded into a
+     * float copy when training starts, and the edges of the graph receive the trained weights when it ends. The
+     * network keeps its weights in double, so the float copy adds to its memory rather than halving it.
+     * Predictions and training on the graph are unaffected.
+     *
+     * @param precision The precision of batch training.
+     */
+    public synchronized void setPrecision(Precision precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * Returns the precision of batch training.
+     *
+     * @return Returns the precision of batch training.
+     */
+    public synchronized Precision getPrecision() {
+        return precision;
+    }
+
     @Override
     public void train(Map<List<Double>, List<Double>> inputOutputMap, int epoch) {
 
         // Loop until epoch time has expired
         for (int i = 0; i < epoch; i++) {
             // Iterate through all input/output list pairs
-            train(inputOutputMap);
+            trainEpoch(inputOutputMap, i + 1);
+
+        }
+
+    }
+
+    /**
+     * Trains the network, taking checkpoints as it goes. If the checkpointer holds a checkpoint, its weights are
+     * restored first and training resumes from the epoch it was taken at.
+     *
+     * @param inputOutputMap A map containing the input and output lists to be used for training.
+     * @param epoch          Epoch time of the training, counting the epochs trained before a resume.
+     * @param checkpointer   The checkpointer that saves and restores the weights.
+     * @throws IOException If a checkpoint cannot be read or written.
+     */
+    public void train(Map<List<Double>, List<Double>> inputOutputMap, int epoch, Checkpointer checkpointer)
+            throws IOException {
+
+        for (int e = checkpointer.restore(this); e < epoch; e++) {
+            trainEpoch(inputOutputMap, e + 1);
+            checkpointer.epochFinished(this, e + 1);
+        }
+
+        checkpointer.flush();
+    }
+
+    /**
+     * Trains the network with mini-batch gradient descent. The gradients of every sample in a batch are
+     * accumulated and the weights are updated once per batch with their average. Batches run as matrix-matrix
+     * products on the compiled network, so larger batches amortize the cost of reading the weights.
+     *
+     * @param inputOutputMap A map containing the input and output lists to be used for training.
+     * @param batchSize      The number of samples per weight update.
+     * @param epoch          Epoch time of the training.
+     */
+    public void trainBatch(Map<List<Double>, List<Double>> inputOutputMap, int batchSize, int epoch) {
+
+        double[][] inputs = new double[inputOutputMap.size()][];
+        double[][] targets = new double[inputOutputMap.size()][];
+        int i = 0;
+
+        for (Map.Entry<List<Double>, List<Double>> entry : inputOutputMap.entrySet()) {
+            inputs[i] = toArray(entry.getKey());
+            targets[i++] = toArray(entry.getValue());
+        }
+
+        trainBatch(inputs, targets, batchSize, epoch);
+    }
+
+    /**
+     * Trains the network with mini-batch gradient descent. The gradients of every sample in a batch are
+     * accumulated and the weights are updated once per batch with their average.
+     *
+     * @param inputs    The training inputs, one sample per row.
+     * @param targets   The target outputs, one sample per row.
+     * @param batchSize The number of samples per weight update. The last batch of an epoch may be smaller.
+     * @param epoch     Epoch time of the training.
+     * @throws IllegalArgumentException If the batch size is not positive or the number of inputs and targets
+     *                                  differ.
+     */
+    public synchronized void trainBatch(double[][] inputs, double[][] targets, int batchSize, int epoch) {
+        trainBatch(inputs, targets, batchSize, 0, epoch);
+    }
 
+    // Trains from the epoch after firstEpoch up to lastEpoch, numbering the epochs reported to the monitor.
+    private synchronized void trainBatch(double[][] inputs, double[][] targets, int batchSize, int firstEpoch,
+                                         int lastEpoch) {
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Number of inputs and targets differ");
+        }
+        if (edges.isEmpty() || inputs.length == 0) {
+            return;
+        }
+
+        CompiledNetwork engine = getTrainingNetwork();
+        int numOfInputs = engine.getNumOfInputs();
+        int numOfOutputs = engine.getNumOfOutputs();
+
+        boolean monitored = trainingMonitor.isEnabled();
+        FloatNetwork network = precision == Precision.DOUBLE ? null : getFloatNetwork(engine);
+        float[] floatInputs = network == null ? null : new float[batchSize * numOfInputs];
+        float[] floatTargets = network == null ? null : new float[batchSize * numOfOutputs];
+
+        try {
+            for (int e = firstEpoch; e < lastEpoch; e++) {
+                if (monitored) {
+                    trainingMonitor.startEpoch();
+                }
+
+                for (int start = 0; start < inputs.length; start += batchSize) {
+                    int size = Math.min(batchSize, inputs.length - start);
+
+                    if (network != null) {
+                        toFloats(inputs, start, size, numOfInputs, floatInputs);
+                        toFloats(targets, start, size, numOfOutputs, floatTargets);
+                        trainStep(network, floatInputs, floatTargets, size, monitored);
+                    } else {
+                        trainStep(engine, Matrix.fromRows(inputs, start, size, numOfInputs),
+                                Matrix.fromRows(targets, start, size, numOfOutputs), monitored);
+                    }
+                }
+
+                if (monitored) {
+                    trainingMonitor.finishEpoch(e + 1);
+                }
+            }
+        } finally {
+            if (network != null) {
+                network.store(engine);
+            }
+            weightsTrained();
+        }
+    }
+
+    /**
+     * Trains the network with mini-batch gradient descent on samples streamed from a data source. Batches are
+     * read into buffers allocated once, so memory use does not depend on the size of the data set. Each epoch is
+     * one pass over the source, in the order the source returns the samples.
+     *
+     * @param source    The source of the training samples. It is reset at the start of every epoch.
+     * @param batchSize The number of samples per weight update. The last batch of an epoch may be smaller.
+     * @param epoch     Epoch time of the training.
+     * @throws IOException              If the samples cannot be read.
+     * @throws IllegalArgumentException If the batch size is not positive or the samples of the source don't
+     *                                  match the input and output layers.
+     */
+    public synchronized void trainBatch(TrainingDataSource source, int batchSize, int epoch) throws IOException {
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (edges.isEmpty()) {
+            return;
+        }
+
+        CompiledNetwork engine = getTrainingNetwork();
+        int numOfInputs = engine.getNumOfInputs();
+        int numOfOutputs = engine.getNumOfOutputs();
+
+        if (source.getNumOfInputs() != numOfInputs || source.getNumOfOutputs() != numOfOutputs) {
+            throw new IllegalArgumentException("Data source has " + source.getNumOfInputs() + " inputs and "
+                    + source.getNumOfOutputs() + " outputs but the network has " + numOfInputs + " and "
+                    + numOfOutputs);
         }
 
+        double[] inputs = new double[batchSize * numOfInputs];
+        double[] targets = new double[batchSize * numOfOutputs];
+        Matrix inputBatch = new Matrix(inputs, batchSize, numOfInputs);
+        Matrix targetBatch = new Matrix(targets, batchSize, numOfOutputs);
+
+        boolean monitored = trainingMonitor.isEnabled();
+        FloatNetwork network = precision == Precision.DOUBLE ? null : getFloatNetwork(engine);
+        float[] floatInputs = network == null ? null : new float[inputs.length];
+        float[] floatTargets = network == null ? null : new float[targets.length];
+
+        try {
+            for (int e = 0; e < epoch; e++) {
+                if (monitored) {
+                    trainingMonitor.startEpoch();
+                }
+
+                source.reset();
+                int size;
+
+                while ((size = source.read(inputs, targets, batchSize)) > 0) {
+                    if (network != null) {
+                        // Only the first size rows of the buffers are read.
+                        toFloats(inputs, floatInputs, size * numOfInputs);
+                        toFloats(targets, floatTargets, size * numOfOutputs);
+                        trainStep(network, floatInputs, floatTargets, size, monitored);
+                    } else if (size == batchSize) {
+                        trainStep(engine, inputBatch, targetBatch, monitored);
+                    } else {
+                        // The last batch of the epoch.
+                        trainStep(engine, new Matrix(Arrays.copyOf(inputs, size * numOfInputs), size, numOfInputs),
+                                new Matrix(Arrays.copyOf(targets, size * numOfOutputs), size, numOfOutputs),
+                                monitored);
+                    }
+
+                    if (size < batchSize) {
+                        break;
+                    }
+                }
+
+                if (monitored) {
+                    trainingMonitor.finishEpoch(e + 1);
+                }
+            }
+        } finally {
+            if (network != null) {
+                network.store(engine);
+            }
+            weightsTrained();
+        }
+    }
+
+    /**
+     * Trains the network with mini-batch gradient descent, taking checkpoints as it goes. If the checkpointer
+     * holds a checkpoint, its weights are restored first and training resumes from the epoch it was taken at.
+     *
+     * @param inputs       The training inputs, one sample per row.
+     * @param targets      The target outputs, one sample per row.
+     * @param batchSize    The number of samples per weight update. The last batch of an epoch may be smaller.
+     * @param epoch        Epoch time of the training, counting the epochs trained before a resume.
+     * @param checkpointer The checkpointer that saves and restores the weights.
+     * @throws IOException              If a checkpoint cannot be read or written.
+     * @throws IllegalArgumentException If the batch size is not positive or the number of inputs and targets
+     *                                  differ.
+     */
+    public void trainBatch(double[][] inputs, double[][] targets, int batchSize, int epoch,
+                           Checkpointer checkpointer) throws IOException {
+
+        for (int e = checkpointer.restore(this); e < epoch; e++) {
+            trainBatch(inputs, targets, batchSize, e, e + 1);
+            checkpointer.epochFinished(this, e + 1);
+        }
+
+        checkpointer.flush();
+    }
+
+    // Runs the forward pass, backward pass and weight update of one batch, timing them if the monitor is enabled.
+    private void trainStep(CompiledNetwork engine, Matrix inputs, Matrix targets, boolean monitored) {
+
+        if (!monitored) {
+            engine.backward(engine.forward(inputs), targets);
+            engine.applyGradients(learningRate);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Matrix[] activations = engine.forward(inputs);
+        long forwardEnd = System.nanoTime();
+        engine.backward(activations, targets);
+        long backwardEnd = System.nanoTime();
+
+        trainingMonitor.recordGradients(engine.getGradients().norm(), engine.getGradients().getNumOfSamples());
+
+        long updateStart = System.nanoTime();
+        engine.applyGradients(learningRate);
+        long updateEnd = System.nanoTime();
+
+        double[] outputs = activations[activations.length - 1].getData();
+        trainingMonitor.recordLoss(halfSquaredError(outputs, targets.getData(), outputs.length),
+                inputs.getNumOfRows());
+        trainingMonitor.recordForward(forwardEnd - start);
+        trainingMonitor.recordBackward(backwardEnd - forwardEnd);
+        trainingMonitor.recordUpdate(updateEnd - updateStart);
+    }
+
+    // Float version of trainStep(CompiledNetwork, Matrix, Matrix, boolean), on the first size samples of the
+    // buffers.
+    private void trainStep(FloatNetwork network, float[] inputs, float[] targets, int size, boolean monitored) {
+
+        if (!monitored) {
+            network.backward(network.forward(inputs, size), targets, size);
+            network.applyGradients(learningRate);
+            return;
+        }
+
+        long start = System.nanoTime();
+        float[][] activations = network.forward(inputs, size);
+        long forwardEnd = System.nanoTime();
+        network.backward(activations, targets, size);
+        long backwardEnd = System.nanoTime();
+
+        trainingMonitor.recordGradients(network.gradientNorm(), network.getNumOfSamples());
+
+        long updateStart = System.nanoTime();
+        network.applyGradients(learningRate);
+        long updateEnd = System.nanoTime();
+
+        float[] outputs = activations[activations.length - 1];
+        double loss = 0;
+        for (int i = 0; i < outputs.length; i++) {
+            double error = targets[i] - outputs[i];
+            loss += error * error;
+        }
+        trainingMonitor.recordLoss(loss / 2, size);
+        trainingMonitor.recordForward(forwardEnd - start);
+        trainingMonitor.recordBackward(backwardEnd - forwardEnd);
+        trainingMonitor.recordUpdate(updateEnd - updateStart);
+    }
+
+    // Returns the float kernels for the current precision, loaded with the weights of the compiled network. They
+    // hold a float copy of the weights alongside the double ones for as long as the precision is not double.
+    private FloatNetwork getFloatNetwork(CompiledNetwork engine) {
+
+        if (floatNetwork == null || floatNetwork.getPrecision() != precision) {
+            floatNetwork = new FloatNetwork(engine.getLayerSizes(), precision);
+        }
+        floatNetwork.load(engine);
+
+        return floatNetwork;
+    }
+
+    // Copies rows of a two-dimensional array into a flat float array, one row after the other.
+    private static void toFloats(double[][] rows, int fromRow, int numOfRows, int numOfCols, float[] out) {
+        for (int i = 0; i < numOfRows; i++) {
+            double[] row = rows[fromRow + i];
+            for (int j = 0; j < numOfCols; j++) {
+                out[i * numOfCols + j] = (float) row[j];
+            }
+        }
+    }
+
+    private static void toFloats(double[] values, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = (float) values[i];
+        }
+    }
+
+    private static double halfSquaredError(double[] outputs, double[] targets, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            double error = targets[i] - outputs[i];
+            sum += error * error;
+        }
+        return sum / 2;
+    }
+
+    /**
+     * Returns the monitor that reports {@link TrainingMetrics} of every epoch to its listeners. Training is only
+     * measured while the monitor has listeners.
+     *
+     * @return Returns the training monitor of the network.
+     */
+    public TrainingMonitor getTrainingMonitor() {
+        return trainingMonitor;
+    }
+
+    /**
+     * Returns the compiled network that batch training runs on, with weights up to date with the graph.
+     *
+     * @return Returns the compiled network that batch training runs on.
+     */
+    synchronized CompiledNetwork getTrainingNetwork() {
+
+        CompiledNetwork engine = compiledNetwork;
+
+        if (engine == null) {
+            if (trainingNetwork == null) {
+                trainingNetwork = CompiledNetwork.compile(this);
+            }
+            engine = trainingNetwork;
+        }
+
+        if (engine.isStale()) {
+            engine.refresh();
+        }
+
+        return engine;
+    }
+
+    private static double[] toArray(List<Double> values) {
+        double[] array = new double[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
     }
 
     /**
      * Backpropagtes the error to all edges. The error is then used to perform the calculations to update the weights.
+     * Layers are visited once each in reverse order: the error terms of a layer are calculated from the edge errors
+     * set by the layer after it, and then used to set the errors of the layer's input edges.
      *
      * @param targetOutput The target output of the given output node.
      * @param actualOutput The actual output produced by the output node.
@@ -102,17 +544,48 @@ public class SimpleNeuralNet extends NeuralNetwork<Double, Double> {
     @Override
     public synchronized void backpropagate(Double targetOutput, Double actualOutput) {
 
-        for (INode out : getOutputNodes()) {
-            ((OutputNode) out).calculateError(targetOutput, actualOutput);
+        if (edges.isEmpty()) {
+            return;
+        }
+
+        int outputLayer = layerNodes.length - 1;
+
+        for (int j = 0; j < layerNodes[outputLayer].length; j++) {
+            deltas[outputLayer][j] = ((OutputNode) layerNodes[outputLayer][j]).calculateDelta(targetOutput, actualOutput);
+        }
+
+        for (int l = outputLayer; l > 0; l--) {
+            HiddenNode[] nodes = layerNodes[l];
+            double[] layerDeltas = deltas[l];
+
+            for (int j = 0; j < nodes.length; j++) {
+                nodes[j].setInputErrors(layerDeltas[j]);
+            }
+
+            if (l > 1) {
+                HiddenNode[] previousNodes = layerNodes[l - 1];
+                double[] previousDeltas = deltas[l - 1];
+
+                for (int j = 0; j < previousNodes.length; j++) {
+                    previousDeltas[j] = previousNodes[j].calculateDelta();
+                }
+            }
         }
 
     }
 
-    // Updates all weights from all edges in the network.
+    // Updates all weights from all edges in the network, a whole dense layer at a time.
     private synchronized void updateWeights() {
         for (int i = edges.size() - 1; i >= 0; i--) {
-            for (NodeEdge edge : edges.get(i)) {
-                edge.updateWeight();
+            DenseLayer layer = DenseLayer.of(edges.get(i));
+
+            if (layer != null) {
+                layer.updateWeights(getLearningRate());
+                weightsChanged();
+            } else {
+                for (NodeEdge edge : edges.get(i)) {
+                    edge.updateWeight();
+                }
             }
         }
     }
@@ -127,27 +600,182 @@ public class SimpleNeuralNet extends NeuralNetwork<Double, Double> {
 
     }
 
+    /**
+     * Calculates the outputs for the given inputs without locking the network, so many threads can predict
+     * at once. Predictions read the last published weights; training publishes its weights when it finishes,
+     * and weights set directly on the edges are seen after {@link #publishWeights()}.
+     *
+     * @param inputs  The input values.
+     * @param outputs The array the outputs are written to.
+     * @param scratch A buffer owned by the calling thread, of at least
+     *                {@link WeightSnapshot#getScratchSize()} values.
+     */
+    public void predict(double[] inputs, double[] outputs, double[] scratch) {
+        getWeightSnapshot().predict(inputs, outputs, scratch);
+    }
+
+    /**
+     * Calculates the outputs for many samples at once. The samples run through each layer as one matrix-matrix
+     * product, which is much faster than calling {@link #predict(List)} for each of them.
+     *
+     * @param inputs  The inputs of every sample, one sample per row.
+     * @param outputs The array the outputs are written to, one sample per row.
+     * @throws IllegalArgumentException If there are fewer output rows than input rows.
+     */
+    public void predictBatch(double[][] inputs, double[][] outputs) {
+
+        if (outputs.length < inputs.length) {
+            throw new IllegalArgumentException("Output array is too small for " + inputs.length + " samples");
+        }
+
+        WeightSnapshot snapshot = getCurrentWeights();
+        int numOfInputs = snapshot.getNumOfInputs();
+        int numOfOutputs = snapshot.getNumOfOutputs();
+        double[] flatInputs = Matrix.fromRows(inputs, 0, inputs.length, numOfInputs).getData();
+        double[] flatOutputs = new double[inputs.length * numOfOutputs];
+
+        snapshot.predictBatch(flatInputs, inputs.length, flatOutputs);
+
+        for (int i = 0; i < inputs.length; i++) {
+            System.arraycopy(flatOutputs, i * numOfOutputs, outputs[i], 0, numOfOutputs);
+        }
+    }
+
+    /**
+     * Calculates the outputs for many samples at once. The samples run through each layer as one matrix-matrix
+     * product, which is much faster than calling {@link #predict(List)} for each of them.
+     *
+     * @param inputs       The inputs of every sample, one after the other.
+     * @param numOfSamples The number of samples.
+     * @param outputs      The array the outputs of every sample are written to, one after the other.
+     * @throws IllegalArgumentException If the arrays are too small for the number of samples.
+     */
+    public void predictBatch(double[] inputs, int numOfSamples, double[] outputs) {
+        getCurrentWeights().predictBatch(inputs, numOfSamples, outputs);
+    }
+
+    // Returns a snapshot of the weights, publishing a new one if the weights changed since the last one.
+    private synchronized WeightSnapshot getCurrentWeights() {
+
+        if (weightSnapshot == null || weightSnapshot.getWeightVersion() != getWeightVersion()) {
+            return publishWeights();
+        }
+
+        return weightSnapshot;
+    }
+
+    /**
+     * Returns the last published weights, publishing the current ones if none have been yet.
+     *
+     * @return Returns the last published weights.
+     */
+    public WeightSnapshot getWeightSnapshot() {
+
+        WeightSnapshot snapshot = weightSnapshot;
+
+        if (snapshot == null) {
+            snapshot = publishWeights();
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Copies the current weights into a new snapshot and makes it the one read by lock-free predictions.
+     *
+     * @return Returns the published snapshot.
+     */
+    public synchronized WeightSnapshot publishWeights() {
+
+        WeightSnapshot snapshot = getTrainingNetwork().snapshot();
+        weightSnapshot = snapshot;
+
+        return snapshot;
+    }
+
+    /**
+     * Quantizes the current weights to 8-bit integers for faster, smaller inference. See
+     * {@link QuantizedNetwork#quantize(WeightSnapshot, double[], int)}.
+     *
+     * @param calibrationInputs The inputs of samples representative of those the network will predict for, one
+     *                          sample per row.
+     * @return Returns the quantized network.
+     * @throws IllegalArgumentException If there are no calibration samples.
+     */
+    public QuantizedNetwork quantize(double[][] calibrationInputs) {
+
+        WeightSnapshot snapshot = getCurrentWeights();
+        double[] flatInputs = Matrix.fromRows(calibrationInputs, 0, calibrationInputs.length,
+                snapshot.getNumOfInputs()).getData();
+
+        return QuantizedNetwork.quantize(snapshot, flatInputs, calibrationInputs.length);
+    }
+
+    // Publishes the weights after training if lock-free predictions are in use.
+    synchronized void weightsTrained() {
+        if (weightSnapshot != null) {
+            publishWeights();
+        }
+    }
+
     public List<Double> train(Map<List<Double>, List<Double>> inputOutputMap) {
 
         List<Double> output = new ArrayList<>();
+        // Measured for the monitor's listeners; the graph accumulates no gradients, so no gradient norm is reported.
+        boolean measured = trainingMonitor.isEnabled();
 
         for (Map.Entry<List<Double>, List<Double>> entry : inputOutputMap.entrySet()) {
+            long start = measured ? System.nanoTime() : 0;
             output = predict(entry.getKey());
+            if (measured) {
+                trainingMonitor.recordForward(System.nanoTime() - start);
+            }
+
+            double loss = 0;
             // Iterate through all output edges
             for (int j = 0; j < getOutputNodes().size(); j++) {
+                double error = entry.getValue().get(j) - output.get(j);
+                loss += error * error / 2;
+
+                start = measured ? System.nanoTime() : 0;
                 // Backpropagate the error.
                 backpropagate(entry.getValue().get(j), output.get(j));
+                long backwardEnd = measured ? System.nanoTime() : 0;
                 // Updates the weights.
                 updateWeights();
 
+                if (measured) {
+                    trainingMonitor.recordBackward(backwardEnd - start);
+                    trainingMonitor.recordUpdate(System.nanoTime() - backwardEnd);
+                }
             }
 
-
+            if (measured) {
+                trainingMonitor.recordLoss(loss, 1);
+            }
         }
 
+        weightsTrained();
+
         return output;
     }
 
+    // Trains one epoch on the graph, measuring it as the given epoch if the monitor is enabled.
+    private synchronized void trainEpoch(Map<List<Double>, List<Double>> inputOutputMap, int epoch) {
+
+        boolean measured = trainingMonitor.isEnabled();
+
+        if (measured) {
+            trainingMonitor.startEpoch();
+        }
+
+        train(inputOutputMap);
+
+        if (measured) {
+            trainingMonitor.finishEpoch(epoch);
+        }
+    }
+
 
     @Override
     public synchronized void input(List<Double> inputs) {
@@ -162,6 +790,8 @@ public class SimpleNeuralNet extends NeuralNetwork<Double, Double> {
 
         }
 
+        invalidateActivations();
+
     }
 
 
@@ -174,6 +804,21 @@ public class SimpleNeuralNet extends NeuralNetwork<Double, Double> {
 
         List<Double> outputs = new ArrayList<>();
 
+        if (compiledNetwork != null) {
+            if (compiledNetwork.isStale()) {
+                compiledNetwork.refresh();
+            }
+
+            double[] results = new double[compiledNetwork.getNumOfOutputs()];
+            compiledNetwork.forward(results);
+
+            for (double result : results) {
+                outputs.add(result);
+            }
+
+            return outputs;
+        }
+
         // Adds the output node results to a list
         for (INode outputNode : getOutputNodes()) {
             outputs.add(outputNode.output());
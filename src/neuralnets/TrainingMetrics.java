@@ -0,0 +1,131 @@
+package neuralnets;
+
+/**
+ * Measurements of one epoch of training, reported to the listeners of a {@link TrainingMonitor}.
+ */
+public final class TrainingMetrics {
+
+    private final int epoch;
+    private final int numOfSamples;
+    private final double loss;
+    private final long elapsedNanos;
+    private final long forwardNanos;
+    private final long backwardNanos;
+    private final long updateNanos;
+    private final double gradientNorm;
+    private final long allocatedBytes;
+
+    TrainingMetrics(int epoch, int numOfSamples, double loss, long elapsedNanos, long forwardNanos,
+                    long backwardNanos, long updateNanos, double gradientNorm, long allocatedBytes) {
+
+        this.epoch = epoch;
+        this.numOfSamples = numOfSamples;
+        this.loss = loss;
+        this.elapsedNanos = elapsedNanos;
+        this.forwardNanos = forwardNanos;
+        this.backwardNanos = backwardNanos;
+        this.updateNanos = updateNanos;
+        this.gradientNorm = gradientNorm;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Returns the number of the epoch within its training call, starting at 1.
+     *
+     * @return Returns the number of the epoch.
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns the number of samples trained on in the epoch.
+     *
+     * @return Returns the number of samples trained on in the epoch.
+     */
+    public int getNumOfSamples() {
+        return numOfSamples;
+    }
+
+    /**
+     * Returns the mean over the samples of half the squared error between the targets and the outputs, as
+     * calculated by the forward pass before each update.
+     *
+     * @return Returns the mean loss of the epoch.
+     */
+    public double getLoss() {
+        return loss;
+    }
+
+    /**
+     * Returns the wall-clock time of the epoch.
+     *
+     * @return Returns the wall-clock time of the epoch in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of samples trained on per second of the epoch.
+     *
+     * @return Returns the number of samples trained on per second.
+     */
+    public double getSamplesPerSecond() {
+        return elapsedNanos == 0 ? 0 : numOfSamples * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the time spent calculating outputs.
+     *
+     * @return Returns the time spent in forward passes in nanoseconds.
+     */
+    public long getForwardNanos() {
+        return forwardNanos;
+    }
+
+    /**
+     * Returns the time spent calculating error terms and gradients.
+     *
+     * @return Returns the time spent in backward passes in nanoseconds.
+     */
+    public long getBackwardNanos() {
+        return backwardNanos;
+    }
+
+    /**
+     * Returns the time spent updating weights.
+     *
+     * @return Returns the time spent updating weights in nanoseconds.
+     */
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    /**
+     * Returns the mean over the weight updates of the epoch of the Euclidean norm of the gradient averaged over
+     * the samples of the update.
+     *
+     * @return Returns the mean gradient norm, or NaN if the training method does not calculate gradients.
+     */
+    public double getGradientNorm() {
+        return gradientNorm;
+    }
+
+    /**
+     * Returns the number of bytes allocated on the heap by the training thread during the epoch.
+     *
+     * @return Returns the bytes allocated during the epoch, or -1 if the JVM cannot measure them.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[Epoch %d, samples=%d, loss=%.6g, samples/s=%.1f, forward=%.3fms, backward=%.3fms, "
+                        + "update=%.3fms, gradient norm=%.4g, allocated=%dB]", epoch, numOfSamples, loss,
+                getSamplesPerSecond(), forwardNanos / 1e6, backwardNanos / 1e6, updateNanos / 1e6, gradientNorm,
+                allocatedBytes);
+    }
+}
@@ -0,0 +1,167 @@
+package neuralnets;
+
+import neuralnets.visualization.EpochUpdate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects {@link TrainingMetrics} while a network trains and reports them to listeners at the end of every
+ * epoch. Listeners are called one at a time, in order, on a background thread, so a slow listener never holds
+ * up training: if listeners fall more than {@value #MAX_PENDING_UPDATES} epochs behind, the oldest updates not
+ * yet delivered are dropped. Nothing is measured while there are no listeners.
+ *
+ * The background thread exits after {@value #KEEP_ALIVE_SECONDS} seconds without updates.
+ *
+ * The recording methods are called by the training thread only.
+ */
+public class TrainingMonitor {
+
+    // Number of updates that can wait for the listeners before the oldest is dropped.
+    private static final int MAX_PENDING_UPDATES = 1024;
+    // Seconds the background thread waits for another update before it exits.
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private final List<EpochUpdate<TrainingMetrics>> listeners = new CopyOnWriteArrayList<>();
+    private ExecutorService dispatcher;
+
+    private int numOfSamples;
+    private double sumOfLosses;
+    private long startTime;
+    private long forwardNanos;
+    private long backwardNanos;
+    private long updateNanos;
+    private double sumOfGradientNorms;
+    private int numOfUpdates;
+    private long startAllocatedBytes;
+
+    /**
+     * Registers a listener for the metrics of every epoch.
+     *
+     * @param listener The listener, called with the number of the epoch and its metrics.
+     */
+    public synchronized void addListener(EpochUpdate<TrainingMetrics> listener) {
+
+        if (dispatcher == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_PENDING_UPDATES), runnable -> {
+                        Thread thread = new Thread(runnable, "neural-net-training-monitor");
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.DiscardOldestPolicy());
+            // The thread is started again for the next update, so idle monitors hold no thread.
+            executor.allowCoreThreadTimeOut(true);
+            dispatcher = executor;
+        }
+
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener. Updates already handed to the background thread may still reach it.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(EpochUpdate<TrainingMetrics> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns whether there are listeners to measure training for.
+     *
+     * @return Returns true if there are listeners.
+     */
+    public boolean isEnabled() {
+        return !listeners.isEmpty();
+    }
+
+    // Starts measuring an epoch.
+    void startEpoch() {
+
+        numOfSamples = 0;
+        sumOfLosses = 0;
+        forwardNanos = 0;
+        backwardNanos = 0;
+        updateNanos = 0;
+        sumOfGradientNorms = 0;
+        numOfUpdates = 0;
+        startAllocatedBytes = allocatedBytes();
+        startTime = System.nanoTime();
+    }
+
+    // Records the loss of samples trained on: half their summed squared errors.
+    void recordLoss(double loss, int numOfSamples) {
+        sumOfLosses += loss;
+        this.numOfSamples += numOfSamples;
+    }
+
+    void recordForward(long nanos) {
+        forwardNanos += nanos;
+    }
+
+    void recordBackward(long nanos) {
+        backwardNanos += nanos;
+    }
+
+    void recordUpdate(long nanos) {
+        updateNanos += nanos;
+    }
+
+    // Records the norm of the gradients of an update, summed over the given number of samples.
+    void recordGradients(double norm, int numOfSamples) {
+        if (numOfSamples > 0) {
+            sumOfGradientNorms += norm / numOfSamples;
+            numOfUpdates++;
+        }
+    }
+
+    // Finishes measuring an epoch and hands its metrics to the listeners.
+    void finishEpoch(int epoch) {
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        long endAllocatedBytes = allocatedBytes();
+
+        TrainingMetrics metrics = new TrainingMetrics(epoch, numOfSamples,
+                numOfSamples == 0 ? 0 : sumOfLosses / numOfSamples, elapsedNanos, forwardNanos, backwardNanos,
+                updateNanos, numOfUpdates == 0 ? Double.NaN : sumOfGradientNorms / numOfUpdates,
+                startAllocatedBytes < 0 ? -1 : endAllocatedBytes - startAllocatedBytes);
+
+        ExecutorService executor;
+        synchronized (this) {
+            executor = dispatcher;
+        }
+
+        executor.execute(() -> {
+            for (EpochUpdate<TrainingMetrics> listener : listeners) {
+                try {
+                    listener.update(epoch, metrics);
+                } catch (RuntimeException e) {
+                    // A failing listener must not keep the others from their updates.
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        });
+    }
+
+    // Returns the bytes allocated so far by the calling thread, or -1 if the JVM cannot tell.
+    private static long allocatedBytes() {
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+}
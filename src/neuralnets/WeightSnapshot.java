@@ -0,0 +1,168 @@
+package neuralnets;
+
+import utils.ActivationFunction;
+import utils.Matrix;
+
+/**
+ * An immutable copy of the weights of a network. Predictions only read the snapshot and a buffer owned by the
+ * caller, so any number of threads can predict at once without locking, while training goes on against the
+ * network and publishes a new snapshot when it is done.
+ */
+public final class WeightSnapshot {
+
+    // Number of samples pushed through the layers at a time by predictBatch.
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final int[] layerSizes;
+    private final double[][] weights;
+    private final double[][] biases;
+    private final double[] biasValues;
+    private final ActivationFunction[] activationFunctions;
+    private final int maxLayerSize;
+    private final int weightVersion;
+
+    WeightSnapshot(int weightVersion, int[] layerSizes, double[][] weights, double[][] biases, double[] biasValues,
+                   ActivationFunction[] activationFunctions) {
+
+        this.weightVersion = weightVersion;
+        this.layerSizes = layerSizes.clone();
+        this.weights = new double[weights.length][];
+        this.biases = new double[biases.length][];
+        this.biasValues = biasValues.clone();
+        this.activationFunctions = activationFunctions.clone();
+
+        for (int l = 0; l < weights.length; l++) {
+            this.weights[l] = weights[l].clone();
+            this.biases[l] = biases[l].clone();
+        }
+
+        int max = 0;
+        for (int size : layerSizes) {
+            max = Math.max(max, size);
+        }
+        maxLayerSize = max;
+    }
+
+    /**
+     * Returns the length of the scratch buffer {@link #predict(double[], double[], double[])} needs.
+     *
+     * @return Returns the length of the scratch buffer needed for a prediction.
+     */
+    public int getScratchSize() {
+        return 2 * maxLayerSize;
+    }
+
+    /**
+     * Calculates the outputs of the network for the given inputs. The results are identical to
+     * {@link SimpleNeuralNet#predict(java.util.List)} with the same weights.
+     *
+     * @param inputs  The input values. Only the first n values are used, where n is the number of inputs.
+     * @param outputs The array the outputs are written to.
+     * @param scratch A buffer of at least {@link #getScratchSize()} values, used by one thread at a time.
+     * @throws IllegalArgumentException If the scratch buffer is too small.
+     */
+    public void predict(double[] inputs, double[] outputs, double[] scratch) {
+
+        if (scratch.length < getScratchSize()) {
+            throw new IllegalArgumentException("Scratch buffer must hold at least " + getScratchSize() + " values");
+        }
+
+        // Layers alternate between the two halves of the scratch buffer.
+        double[] in = inputs;
+        int inOffset = 0;
+        int outOffset = 0;
+
+        for (int l = 0; l < weights.length; l++) {
+            CompiledNetwork.forwardLayer(in, inOffset, scratch, outOffset, weights[l], biases[l], biasValues[l],
+                    layerSizes[l], layerSizes[l + 1], activationFunctions[l]);
+            in = scratch;
+            inOffset = outOffset;
+            outOffset = outOffset == 0 ? maxLayerSize : 0;
+        }
+
+        System.arraycopy(scratch, inOffset, outputs, 0, layerSizes[layerSizes.length - 1]);
+    }
+
+    /**
+     * Calculates the outputs for a batch of samples. Each layer runs as one matrix-matrix product over the
+     * batch, so the weights are read once per batch instead of once per sample. Results match
+     * {@link #predict(double[], double[], double[])} up to rounding.
+     *
+     * @param inputs       The inputs of every sample, one after the other.
+     * @param numOfSamples The number of samples.
+     * @param outputs      The array the outputs of every sample are written to, one after the other.
+     * @throws IllegalArgumentException If the arrays are too small for the number of samples.
+     */
+    public void predictBatch(double[] inputs, int numOfSamples, double[] outputs) {
+
+        int numOfInputs = getNumOfInputs();
+        int numOfOutputs = getNumOfOutputs();
+
+        if (inputs.length < numOfSamples * numOfInputs || outputs.length < numOfSamples * numOfOutputs) {
+            throw new IllegalArgumentException("Arrays are too small for " + numOfSamples + " samples");
+        }
+
+        // Bound the size of the intermediate matrices for very large batches.
+        for (int start = 0; start < numOfSamples; start += MAX_BATCH_SIZE) {
+            int size = Math.min(MAX_BATCH_SIZE, numOfSamples - start);
+            double[] batch = new double[size * numOfInputs];
+            System.arraycopy(inputs, start * numOfInputs, batch, 0, batch.length);
+
+            Matrix activations = new Matrix(batch, size, numOfInputs);
+            for (int l = 0; l < weights.length; l++) {
+                activations = CompiledNetwork.forwardLayer(activations, weights[l], biases[l], biasValues[l],
+                        layerSizes[l + 1], activationFunctions[l]);
+            }
+
+            System.arraycopy(activations.getData(), 0, outputs, start * numOfOutputs, size * numOfOutputs);
+        }
+    }
+
+    /**
+     * Returns the number of inputs of the network.
+     *
+     * @return Returns the number of inputs of the network.
+     */
+    public int getNumOfInputs() {
+        return layerSizes[0];
+    }
+
+    /**
+     * Returns the number of outputs of the network.
+     *
+     * @return Returns the number of outputs of the network.
+     */
+    public int getNumOfOutputs() {
+        return layerSizes[layerSizes.length - 1];
+    }
+
+    // Weight version of the network the snapshot was taken from.
+    int getWeightVersion() {
+        return weightVersion;
+    }
+
+    // Returns the number of nodes at each layer, excluding bias nodes.
+    int[] getLayerSizes() {
+        return layerSizes.clone();
+    }
+
+    // Returns the row-major weight matrix of a layer. The array must not be modified.
+    double[] getWeights(int layer) {
+        return weights[layer];
+    }
+
+    // Returns the weights of the edges from the bias node of a layer. The array must not be modified.
+    double[] getBiases(int layer) {
+        return biases[layer];
+    }
+
+    // Returns the value of the bias node of a layer.
+    double getBiasValue(int layer) {
+        return biasValues[layer];
+    }
+
+    // Returns the activation function of a layer.
+    ActivationFunction getActivationFunction(int layer) {
+        return activationFunctions[layer];
+    }
+}
@@ -0,0 +1,68 @@
+package neuralnets.data;
+
+/**
+ * A {@link TrainingDataSource} over samples that are already in memory.
+ */
+public class ArrayDataSource implements TrainingDataSource {
+
+    private final double[][] inputs;
+    private final double[][] targets;
+    private final int numOfInputs;
+    private final int numOfOutputs;
+    private int position;
+
+    /**
+     * Creates a source over the given samples. The arrays are not copied.
+     *
+     * @param inputs  The inputs, one sample per row.
+     * @param targets The targets, one sample per row.
+     * @throws IllegalArgumentException If there are no samples or the number of inputs and targets differ.
+     */
+    public ArrayDataSource(double[][] inputs, double[][] targets) {
+
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Number of inputs and targets differ");
+        }
+        if (inputs.length == 0) {
+            throw new IllegalArgumentException("There must be at least one sample");
+        }
+
+        this.inputs = inputs;
+        this.targets = targets;
+        this.numOfInputs = inputs[0].length;
+        this.numOfOutputs = targets[0].length;
+    }
+
+    @Override
+    public int getNumOfInputs() {
+        return numOfInputs;
+    }
+
+    @Override
+    public int getNumOfOutputs() {
+        return numOfOutputs;
+    }
+
+    @Override
+    public int read(double[] inputs, double[] targets, int maxSamples) {
+
+        int count = Math.min(maxSamples, this.inputs.length - position);
+
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(this.inputs[position + i], 0, inputs, i * numOfInputs, numOfInputs);
+            System.arraycopy(this.targets[position + i], 0, targets, i * numOfOutputs, numOfOutputs);
+        }
+
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void reset() {
+        position = 0;
+    }
+
+    @Override
+    public void close() {
+    }
+}
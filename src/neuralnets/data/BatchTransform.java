@@ -0,0 +1,16 @@
+package neuralnets.data;
+
+/**
+ * Transforms a batch of samples in place, for example to decode or normalize them before training.
+ */
+public interface BatchTransform {
+
+    /**
+     * Transforms a batch of samples in place.
+     *
+     * @param inputs       The inputs of the batch, row-major with one sample per row.
+     * @param targets      The targets of the batch, row-major with one sample per row.
+     * @param numOfSamples The number of samples in the batch. The buffers may be longer.
+     */
+    void apply(double[] inputs, double[] targets, int numOfSamples);
+}
@@ -0,0 +1,151 @@
+package neuralnets.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link TrainingDataSource} that streams samples from a file of fixed-size binary records. Each record holds
+ * the inputs of a sample followed by its targets as little-endian doubles, with no header. Records are read
+ * through a channel into a direct buffer a chunk at a time.
+ */
+public class BinaryDataSource implements TrainingDataSource {
+
+    // Size in bytes of the buffer records are read through.
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final int numOfInputs;
+    private final int numOfOutputs;
+    private final ByteBuffer buffer;
+    private final DoubleBuffer doubles;
+    private long position;
+
+    /**
+     * Opens a file of binary records.
+     *
+     * @param path         The file to read.
+     * @param numOfInputs  The number of input values in each record.
+     * @param numOfOutputs The number of target values in each record, after the inputs.
+     * @throws IOException              If the file cannot be opened or does not hold whole records.
+     * @throws IllegalArgumentException If the number of inputs or outputs is not positive.
+     */
+    public BinaryDataSource(Path path, int numOfInputs, int numOfOutputs) throws IOException {
+
+        if (numOfInputs < 1 || numOfOutputs < 1) {
+            throw new IllegalArgumentException("Number of inputs and outputs must be positive");
+        }
+
+        this.numOfInputs = numOfInputs;
+        this.numOfOutputs = numOfOutputs;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        int recordSize = 8 * (numOfInputs + numOfOutputs);
+        if (channel.size() % recordSize != 0) {
+            channel.close();
+            throw new IOException(path + " does not hold whole records of " + recordSize + " bytes");
+        }
+
+        // At least one record, rounded down to whole records.
+        int bufferSize = Math.max(recordSize, BUFFER_SIZE / recordSize * recordSize);
+        buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+        doubles = buffer.asDoubleBuffer();
+        reset();
+    }
+
+    /**
+     * Writes samples to a file of binary records that this source can read, replacing the file if it exists.
+     *
+     * @param path    The file to write.
+     * @param inputs  The inputs, one sample per row.
+     * @param targets The targets, one sample per row.
+     * @throws IOException              If the file cannot be written.
+     * @throws IllegalArgumentException If the number of inputs and targets differ.
+     */
+    public static void write(Path path, double[][] inputs, double[][] targets) throws IOException {
+
+        if (inputs.length != targets.length) {
+            throw new IllegalArgumentException("Number of inputs and targets differ");
+        }
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer record = null;
+
+            for (int i = 0; i < inputs.length; i++) {
+                int size = 8 * (inputs[i].length + targets[i].length);
+                if (record == null || record.capacity() != size) {
+                    record = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+                }
+
+                record.clear();
+                record.asDoubleBuffer().put(inputs[i]).put(targets[i]);
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getNumOfInputs() {
+        return numOfInputs;
+    }
+
+    @Override
+    public int getNumOfOutputs() {
+        return numOfOutputs;
+    }
+
+    @Override
+    public int read(double[] inputs, double[] targets, int maxSamples) throws IOException {
+
+        int count = 0;
+
+        while (count < maxSamples) {
+            if (!doubles.hasRemaining() && !fill()) {
+                break;
+            }
+
+            doubles.get(inputs, count * numOfInputs, numOfInputs);
+            doubles.get(targets, count * numOfOutputs, numOfOutputs);
+            count++;
+        }
+
+        return count;
+    }
+
+    // Reads the next whole records into the buffer. Returns false at the end of the file.
+    private boolean fill() throws IOException {
+
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        buffer.flip();
+
+        doubles.clear();
+        doubles.limit(buffer.limit() / 8);
+        return doubles.hasRemaining();
+    }
+
+    @Override
+    public void reset() {
+        position = 0;
+        doubles.position(0).limit(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,111 @@
+package neuralnets.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A {@link TrainingDataSource} that streams samples from a CSV file. Every non-empty line holds one sample: its
+ * inputs followed by its targets, separated by commas. Lines starting with '#' are skipped.
+ */
+public class CsvDataSource implements TrainingDataSource {
+
+    private final Path path;
+    private final int numOfInputs;
+    private final int numOfOutputs;
+    private BufferedReader reader;
+    private int lineNumber;
+
+    /**
+     * Opens a CSV file of samples.
+     *
+     * @param path         The file to read.
+     * @param numOfInputs  The number of input values on each line.
+     * @param numOfOutputs The number of target values on each line, after the inputs.
+     * @throws IOException              If the file cannot be opened.
+     * @throws IllegalArgumentException If the number of inputs or outputs is not positive.
+     */
+    public CsvDataSource(Path path, int numOfInputs, int numOfOutputs) throws IOException {
+
+        if (numOfInputs < 1 || numOfOutputs < 1) {
+            throw new IllegalArgumentException("Number of inputs and outputs must be positive");
+        }
+
+        this.path = path;
+        this.numOfInputs = numOfInputs;
+        this.numOfOutputs = numOfOutputs;
+        reset();
+    }
+
+    @Override
+    public int getNumOfInputs() {
+        return numOfInputs;
+    }
+
+    @Override
+    public int getNumOfOutputs() {
+        return numOfOutputs;
+    }
+
+    @Override
+    public int read(double[] inputs, double[] targets, int maxSamples) throws IOException {
+
+        int count = 0;
+        String line;
+
+        while (count < maxSamples && (line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+
+            int start = 0;
+            for (int i = 0; i < numOfInputs + numOfOutputs; i++) {
+                int end = line.indexOf(',', start);
+                if (end < 0) {
+                    end = line.length();
+                }
+                if ((end == line.length()) != (i == numOfInputs + numOfOutputs - 1)) {
+                    throw new IOException(path + ":" + lineNumber + ": expected " + (numOfInputs + numOfOutputs)
+                            + " values");
+                }
+
+                double value;
+                try {
+                    value = Double.parseDouble(line.substring(start, end).trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+
+                if (i < numOfInputs) {
+                    inputs[count * numOfInputs + i] = value;
+                } else {
+                    targets[count * numOfOutputs + i - numOfInputs] = value;
+                }
+                start = end + 1;
+            }
+
+            count++;
+        }
+
+        return count;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        close();
+        reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        lineNumber = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+}
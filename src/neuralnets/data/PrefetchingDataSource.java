@@ -0,0 +1,277 @@
+package neuralnets.data;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reads the batches of another {@link TrainingDataSource} ahead of time on a background thread, so training does
+ * not wait for the source to read and decode samples. Batches are read into a fixed ring of buffers allocated
+ * up front: the background thread fills free buffers while training consumes filled ones, and it waits when
+ * every buffer is full, so at most that many batches are held in memory. With two buffers this is double
+ * buffering; more buffers absorb bursts of slow reads.
+ */
+public class PrefetchingDataSource implements TrainingDataSource {
+
+    // How long reset and close wait for the background thread before freeing the buffers it filled meanwhile.
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    private static final class Batch {
+        final double[] inputs;
+        final double[] targets;
+        int numOfSamples;
+        Exception failure;
+
+        Batch(int batchSize, int numOfInputs, int numOfOutputs) {
+            inputs = new double[batchSize * numOfInputs];
+            targets = new double[batchSize * numOfOutputs];
+        }
+    }
+
+    private final TrainingDataSource source;
+    private final BatchTransform transform;
+    private final int batchSize;
+    private final int numOfInputs;
+    private final int numOfOutputs;
+    private final BlockingQueue<Batch> freeBatches;
+    private final BlockingQueue<Batch> filledBatches;
+    private final ExecutorService reader;
+
+    private Future<?> pass;
+    private volatile boolean cancelled;
+    // The batch being consumed, and the number of its samples already read.
+    private Batch current;
+    private int position;
+    private boolean startOfPass;
+    private boolean endOfPass;
+
+    /**
+     * Creates a source that reads ahead from another.
+     *
+     * @param source       The source to read ahead from. It must not be used directly afterwards.
+     * @param batchSize    The number of samples read from the source at a time.
+     * @param numOfBuffers The number of batches that can be held at once, at least 2.
+     * @throws IllegalArgumentException If the batch size is not positive or there are fewer than 2 buffers.
+     */
+    public PrefetchingDataSource(TrainingDataSource source, int batchSize, int numOfBuffers) {
+        this(source, batchSize, numOfBuffers, null);
+    }
+
+    /**
+     * Creates a source that reads ahead from another and transforms each batch on the background thread.
+     *
+     * @param source       The source to read ahead from. It must not be used directly afterwards.
+     * @param batchSize    The number of samples read from the source at a time.
+     * @param numOfBuffers The number of batches that can be held at once, at least 2.
+     * @param transform    The transform applied to every batch after it is read, or null for none.
+     * @throws IllegalArgumentException If the batch size is not positive or there are fewer than 2 buffers.
+     */
+    public PrefetchingDataSource(TrainingDataSource source, int batchSize, int numOfBuffers,
+                                 BatchTransform transform) {
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (numOfBuffers < 2) {
+            throw new IllegalArgumentException("There must be at least 2 buffers");
+        }
+
+        this.source = source;
+        this.transform = transform;
+        this.batchSize = batchSize;
+        this.numOfInputs = source.getNumOfInputs();
+        this.numOfOutputs = source.getNumOfOutputs();
+        this.freeBatches = new ArrayBlockingQueue<>(numOfBuffers);
+        this.filledBatches = new ArrayBlockingQueue<>(numOfBuffers);
+
+        for (int i = 0; i < numOfBuffers; i++) {
+            freeBatches.add(new Batch(batchSize, numOfInputs, numOfOutputs));
+        }
+
+        this.reader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "neural-net-prefetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        startPass();
+    }
+
+    // Starts reading a pass over the source on the background thread.
+    private void startPass() {
+
+        cancelled = false;
+        current = null;
+        position = 0;
+        startOfPass = true;
+        endOfPass = false;
+
+        pass = reader.submit(() -> {
+            try {
+                while (!cancelled) {
+                    Batch batch = freeBatches.take();
+                    batch.failure = null;
+
+                    try {
+                        batch.numOfSamples = source.read(batch.inputs, batch.targets, batchSize);
+                        if (transform != null && batch.numOfSamples > 0) {
+                            transform.apply(batch.inputs, batch.targets, batch.numOfSamples);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        batch.numOfSamples = 0;
+                        batch.failure = e;
+                    }
+
+                    // Never blocks, as there are only as many batches as the queue holds.
+                    filledBatches.add(batch);
+
+                    // A short batch ends the pass.
+                    if (batch.numOfSamples < batchSize) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    @Override
+    public int getNumOfInputs() {
+        return numOfInputs;
+    }
+
+    @Override
+    public int getNumOfOutputs() {
+        return numOfOutputs;
+    }
+
+    @Override
+    public int read(double[] inputs, double[] targets, int maxSamples) throws IOException {
+
+        int count = 0;
+        startOfPass = false;
+
+        while (count < maxSamples && !endOfPass) {
+            if (current == null) {
+                current = takeFilledBatch();
+                position = 0;
+
+                if (current.failure != null) {
+                    Exception failure = current.failure;
+                    releaseCurrent();
+                    endOfPass = true;
+                    if (failure instanceof IOException) {
+                        throw (IOException) failure;
+                    }
+                    throw (RuntimeException) failure;
+                }
+            }
+
+            int n = Math.min(maxSamples - count, current.numOfSamples - position);
+            System.arraycopy(current.inputs, position * numOfInputs, inputs, count * numOfInputs,
+                    n * numOfInputs);
+            System.arraycopy(current.targets, position * numOfOutputs, targets, count * numOfOutputs,
+                    n * numOfOutputs);
+            position += n;
+            count += n;
+
+            if (position == current.numOfSamples) {
+                endOfPass = current.numOfSamples < batchSize;
+                releaseCurrent();
+            }
+        }
+
+        return count;
+    }
+
+    private Batch takeFilledBatch() throws IOException {
+        try {
+            return filledBatches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a batch", e);
+        }
+    }
+
+    // Hands the batch being consumed back to the background thread.
+    private void releaseCurrent() {
+        freeBatches.add(current);
+        current = null;
+    }
+
+    /**
+     * Stops reading the current pass, rewinds the source and starts reading the next pass in the background. A
+     * pass that has not been read from yet is kept.
+     *
+     * @throws IOException If the source cannot be rewound.
+     */
+    @Override
+    public void reset() throws IOException {
+
+        if (startOfPass) {
+            return;
+        }
+
+        stopPass();
+        source.reset();
+        startPass();
+    }
+
+    // Stops the background thread and takes back every buffer.
+    private void stopPass() throws IOException {
+
+        cancelled = true;
+        if (current != null) {
+            releaseCurrent();
+        }
+
+        try {
+            // Keep freeing buffers so the background thread is never stuck waiting for one.
+            while (true) {
+                releaseFilledBatches();
+                try {
+                    pass.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    // Still reading; free the batches it has filled since.
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while stopping the prefetcher", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+
+        releaseFilledBatches();
+    }
+
+    private void releaseFilledBatches() {
+        Batch batch;
+        while ((batch = filledBatches.poll()) != null) {
+            freeBatches.add(batch);
+        }
+    }
+
+    /**
+     * Stops the background thread and closes the source.
+     *
+     * @throws IOException If the source cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            stopPass();
+        } finally {
+            reader.shutdown();
+            source.close();
+        }
+    }
+}
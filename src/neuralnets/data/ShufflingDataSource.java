@@ -0,0 +1,111 @@
+package neuralnets.data;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Shuffles the samples of another {@link TrainingDataSource} within a buffer. The buffer is filled with the next
+ * samples of the source, shuffled and handed out, so the order of the samples changes every pass while memory
+ * stays bounded by the size of the buffer. Samples that are further apart than the buffer are never swapped.
+ */
+public class ShufflingDataSource implements TrainingDataSource {
+
+    private final TrainingDataSource source;
+    private final Random random;
+    private final int numOfInputs;
+    private final int numOfOutputs;
+    private final double[] inputBuffer;
+    private final double[] targetBuffer;
+    private final double[] swap;
+    private int numOfBuffered;
+    private int position;
+
+    /**
+     * Creates a source that shuffles the samples of another within a buffer.
+     *
+     * @param source     The source to shuffle.
+     * @param bufferSize The number of samples shuffled together.
+     * @param random     The random number generator used to shuffle.
+     * @throws IllegalArgumentException If the buffer size is not positive.
+     */
+    public ShufflingDataSource(TrainingDataSource source, int bufferSize, Random random) {
+
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+
+        this.source = source;
+        this.random = random;
+        this.numOfInputs = source.getNumOfInputs();
+        this.numOfOutputs = source.getNumOfOutputs();
+        this.inputBuffer = new double[bufferSize * numOfInputs];
+        this.targetBuffer = new double[bufferSize * numOfOutputs];
+        this.swap = new double[Math.max(numOfInputs, numOfOutputs)];
+    }
+
+    @Override
+    public int getNumOfInputs() {
+        return numOfInputs;
+    }
+
+    @Override
+    public int getNumOfOutputs() {
+        return numOfOutputs;
+    }
+
+    @Override
+    public int read(double[] inputs, double[] targets, int maxSamples) throws IOException {
+
+        int count = 0;
+
+        while (count < maxSamples) {
+            if (position == numOfBuffered && !fill()) {
+                break;
+            }
+
+            int n = Math.min(maxSamples - count, numOfBuffered - position);
+            System.arraycopy(inputBuffer, position * numOfInputs, inputs, count * numOfInputs, n * numOfInputs);
+            System.arraycopy(targetBuffer, position * numOfOutputs, targets, count * numOfOutputs,
+                    n * numOfOutputs);
+
+            position += n;
+            count += n;
+        }
+
+        return count;
+    }
+
+    // Fills the buffer from the source and shuffles it. Returns false once the source is exhausted.
+    private boolean fill() throws IOException {
+
+        numOfBuffered = source.read(inputBuffer, targetBuffer, inputBuffer.length / numOfInputs);
+        position = 0;
+
+        // Fisher-Yates shuffle of the buffered rows.
+        for (int i = numOfBuffered - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            swapRows(inputBuffer, numOfInputs, i, j);
+            swapRows(targetBuffer, numOfOutputs, i, j);
+        }
+
+        return numOfBuffered > 0;
+    }
+
+    private void swapRows(double[] buffer, int rowLength, int i, int j) {
+        System.arraycopy(buffer, i * rowLength, swap, 0, rowLength);
+        System.arraycopy(buffer, j * rowLength, buffer, i * rowLength, rowLength);
+        System.arraycopy(swap, 0, buffer, j * rowLength, rowLength);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        source.reset();
+        numOfBuffered = 0;
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
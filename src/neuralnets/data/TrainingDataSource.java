@@ -0,0 +1,53 @@
+package neuralnets.data;
+
+import java.io.IOException;
+
+/**
+ * A source of training samples that are read a chunk at a time, so a data set never has to fit in memory. Samples
+ * are read into primitive buffers owned by the caller, one sample per row, and keep the order and duplicates of
+ * the underlying data.
+ */
+public interface TrainingDataSource extends AutoCloseable {
+
+    /**
+     * Returns the number of input values of each sample.
+     *
+     * @return Returns the number of input values of each sample.
+     */
+    int getNumOfInputs();
+
+    /**
+     * Returns the number of target values of each sample.
+     *
+     * @return Returns the number of target values of each sample.
+     */
+    int getNumOfOutputs();
+
+    /**
+     * Reads the next samples of the current pass over the data.
+     *
+     * @param inputs     The buffer receiving the inputs, row-major with {@link #getNumOfInputs()} values per sample.
+     * @param targets    The buffer receiving the targets, row-major with {@link #getNumOfOutputs()} values per
+     *                   sample.
+     * @param maxSamples The maximum number of samples to read. The buffers must hold at least this many samples.
+     * @return Returns the number of samples read, which is less than maxSamples only once the pass has reached
+     * the end of the data.
+     * @throws IOException If the samples cannot be read.
+     */
+    int read(double[] inputs, double[] targets, int maxSamples) throws IOException;
+
+    /**
+     * Starts a new pass over the data from its first sample.
+     *
+     * @throws IOException If the data cannot be rewound.
+     */
+    void reset() throws IOException;
+
+    /**
+     * Releases the resources held by the source.
+     *
+     * @throws IOException If the resources cannot be released.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,528 @@
+package neuralnets.nodes;
+
+import tests.ANNUtils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The edges between two fully connected layers of nodes, stored as packed arrays rather than one object per
+ * edge. The weights take 8 bytes each, laid out like {@link neuralnets.CompiledNetwork}: the weight from node k
+ * to node j is at j * numOfInputs + k, and the weights from the bias node are kept apart.
+ *
+ * {@link NodeEdge} objects for these edges are views created on demand, by {@link #getEdges()} and by the edge
+ * lists of the nodes. Views of the same edge are equal, and reading or writing the weight of any of them reads
+ * or writes the arrays. Edges can still be removed and connected again; an edge between two nodes that are
+ * already connected is held by its own object like any edge outside a dense layer. Once edges have been removed,
+ * the edge lists index the stored edges through arrays of their positions, built when a list is first read after
+ * a change, so reading them stays constant time per edge.
+ */
+public final class DenseLayer {
+
+	private final int layer;
+	// The from nodes end with the bias node of the layer.
+	private final INode[] fromNodes;
+	private final INode[] toNodes;
+	private final int numOfInputs;
+	private final double biasValue;
+	private final double[] weights;
+	private final double[] biases;
+	// The error of every edge, indexed like the weights followed by the biases. Allocated when first set.
+	private double[] errors;
+	// Marks removed edges, indexed like the errors. Null until an edge is removed.
+	private boolean[] removed;
+	private int numOfRemoved;
+	// Positions of the stored edges in the order of the edge list, of the from nodes each to node has stored edges
+	// from, and of the to nodes each from node has stored edges to. Built when first needed while edges are
+	// removed, and cleared whenever an edge is removed or stored.
+	private int[] storedEdges;
+	private int[][] storedInputs;
+	private int[][] storedOutputs;
+	// Edges at this layer that are not stored in the arrays.
+	private final List<NodeEdge> extraEdges = new ArrayList<>();
+	private final List<NodeEdge> edges = new Edges();
+
+	/**
+	 * Connects every from node to every to node with an edge of a random weight.
+	 *
+	 * @param layer     The layer of the edges.
+	 * @param fromNodes The nodes the edges leave, ending with the bias node of the layer.
+	 * @param toNodes   The nodes the edges go into, without a bias node.
+	 * @throws IllegalArgumentException If the from nodes do not end with a bias node, if a to node is a bias
+	 *                                  node, or if a node already belongs to a dense layer on the same side.
+	 */
+	public DenseLayer(int layer, List<? extends INode> fromNodes, List<? extends INode> toNodes) {
+
+		if (fromNodes.isEmpty() || !(fromNodes.get(fromNodes.size() - 1) instanceof Bias)) {
+			throw new IllegalArgumentException("The from nodes must end with a bias node");
+		}
+
+		this.layer = layer;
+		this.fromNodes = fromNodes.toArray(new INode[0]);
+		this.toNodes = toNodes.toArray(new INode[0]);
+		numOfInputs = this.fromNodes.length - 1;
+		biasValue = ((Bias) this.fromNodes[numOfInputs]).getValue();
+		weights = new double[this.toNodes.length * numOfInputs];
+		biases = new double[this.toNodes.length];
+
+		for (INode node : this.fromNodes) {
+			if (node.outputLayer != null) {
+				throw new IllegalArgumentException("A from node already belongs to a dense layer");
+			}
+		}
+		for (INode node : this.toNodes) {
+			if (node instanceof Bias || node.inputLayer != null) {
+				throw new IllegalArgumentException("A to node is a bias node or already belongs to a dense layer");
+			}
+		}
+
+		for (int k = 0; k < this.fromNodes.length; k++) {
+			this.fromNodes[k].outputLayer = this;
+			this.fromNodes[k].outputIndex = k;
+		}
+		for (int j = 0; j < this.toNodes.length; j++) {
+			this.toNodes[j].inputLayer = this;
+			this.toNodes[j].inputIndex = j;
+		}
+
+		// Drawn in the order the edges used to be created in, from node by from node.
+		for (int k = 0; k < this.fromNodes.length; k++) {
+			for (int j = 0; j < this.toNodes.length; j++) {
+				setWeight(slot(k, j), ANNUtils.generateRandom());
+			}
+		}
+	}
+
+	/**
+	 * Returns the dense layer whose edges a list holds, or null if the list was not returned by
+	 * {@link #getEdges()}.
+	 *
+	 * @param edges The edges of a layer, such as those in {@link neuralnets.NeuralNetwork#getEdges()}.
+	 * @return Returns the dense layer whose edges the list holds, or null.
+	 */
+	public static DenseLayer of(List<NodeEdge> edges) {
+		return edges instanceof Edges ? ((Edges) edges).owner() : null;
+	}
+
+	/**
+	 * Returns the edges of the layer, from node by from node, followed by the edges added to the list that are
+	 * not stored in the arrays. Removing an edge from the list disconnects it. Added edges must be at this
+	 * layer; edges between two nodes of the layer that are not connected yet are stored in the arrays when
+	 * their nodes are set.
+	 *
+	 * @return Returns the edges of the layer.
+	 */
+	public List<NodeEdge> getEdges() {
+		return edges;
+	}
+
+	/**
+	 * Returns the edges at this layer that are not stored in the arrays.
+	 *
+	 * @return Returns a read-only view of the edges at this layer that are not stored in the arrays.
+	 */
+	public List<NodeEdge> getExtraEdges() {
+		return Collections.unmodifiableList(extraEdges);
+	}
+
+	/**
+	 * Returns the layer of the edges.
+	 *
+	 * @return Returns the layer of the edges.
+	 */
+	public int getLayer() {
+		return layer;
+	}
+
+	/**
+	 * Returns the number of from nodes, excluding the bias node.
+	 *
+	 * @return Returns the number of from nodes, excluding the bias node.
+	 */
+	public int getNumOfInputs() {
+		return numOfInputs;
+	}
+
+	/**
+	 * Returns the number of to nodes.
+	 *
+	 * @return Returns the number of to nodes.
+	 */
+	public int getNumOfOutputs() {
+		return toNodes.length;
+	}
+
+	/**
+	 * Returns true if every from node has exactly one edge to every to node.
+	 *
+	 * @return Returns true if every from node has exactly one edge to every to node.
+	 */
+	public boolean isFullyConnected() {
+		return numOfRemoved == 0 && extraEdges.isEmpty();
+	}
+
+	/**
+	 * Returns the value of the bias node of the layer.
+	 *
+	 * @return Returns the value of the bias node of the layer.
+	 */
+	public double getBiasValue() {
+		return biasValue;
+	}
+
+	/**
+	 * Copies the stored weights. Removed edges have a weight of 0.
+	 *
+	 * @param weights An array of numOfOutputs * numOfInputs weights.
+	 * @param biases  An array of numOfOutputs weights of the edges from the bias node.
+	 */
+	public void copyWeights(double[] weights, double[] biases) {
+
+		System.arraycopy(this.weights, 0, weights, 0, this.weights.length);
+		System.arraycopy(this.biases, 0, biases, 0, this.biases.length);
+
+		if (removed != null) {
+			for (int slot = 0; slot < removed.length; slot++) {
+				if (removed[slot]) {
+					if (slot < weights.length) {
+						weights[slot] = 0;
+					} else {
+						biases[slot - weights.length] = 0;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the stored weights. Removed edges keep a weight of 0.
+	 *
+	 * @param weights An array of numOfOutputs * numOfInputs weights.
+	 * @param biases  An array of numOfOutputs weights of the edges from the bias node.
+	 */
+	public void setWeights(double[] weights, double[] biases) {
+
+		System.arraycopy(weights, 0, this.weights, 0, this.weights.length);
+		System.arraycopy(biases, 0, this.biases, 0, this.biases.length);
+
+		if (removed != null) {
+			for (int slot = 0; slot < removed.length; slot++) {
+				if (removed[slot]) {
+					setWeight(slot, 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Subtracts the learning rate times the error of every edge from its weight, like
+	 * {@link NodeEdge#updateWeight()} for each edge, without notifying the network.
+	 *
+	 * @param learningRate The learning rate.
+	 */
+	public void updateWeights(double learningRate) {
+
+		if (errors != null) {
+			for (int i = 0; i < weights.length; i++) {
+				weights[i] = weights[i] - learningRate * errors[i];
+			}
+			for (int j = 0; j < biases.length; j++) {
+				biases[j] = biases[j] - learningRate * errors[weights.length + j];
+			}
+		}
+
+		for (NodeEdge edge : extraEdges) {
+			edge.updateWeight();
+		}
+	}
+
+	// Returns the net input of a to node, adding the bias value once per input edge like HiddenNode.
+	double netInput(int to) {
+
+		double net = 0;
+		int row = to * numOfInputs;
+
+		for (int k = 0; k < numOfInputs; k++) {
+			if (isStored(row + k)) {
+				net += fromNodes[k].output() * weights[row + k] + biasValue;
+			}
+		}
+		if (isStored(weights.length + to)) {
+			net += fromNodes[numOfInputs].output() * biases[to] + biasValue;
+		}
+
+		return net;
+	}
+
+	// Returns the sum of the error terms of the to nodes times the weights of the output edges of a from node.
+	double deltaSum(int from) {
+
+		double sum = 0;
+
+		for (int j = 0; j < toNodes.length; j++) {
+			int slot = slot(from, j);
+			if (isStored(slot)) {
+				sum += ((HiddenNode) toNodes[j]).delta * getWeight(slot);
+			}
+		}
+
+		return sum;
+	}
+
+	// Sets the error of every input edge of a to node to its error term times the output of the from node.
+	void setInputErrors(int to, double delta) {
+
+		if (errors == null) {
+			errors = new double[weights.length + biases.length];
+		}
+
+		for (int k = 0; k < fromNodes.length; k++) {
+			int slot = slot(k, to);
+			if (isStored(slot)) {
+				errors[slot] = delta * fromNodes[k].output();
+			}
+		}
+	}
+
+	// Returns the edges into a to node, from node by from node.
+	List<NodeEdge> inputEdgesOf(int to) {
+		return new AbstractList<NodeEdge>() {
+
+			@Override
+			public NodeEdge get(int index) {
+				return edgeAt(numOfRemoved == 0 ? checkIndex(index, fromNodes.length) : storedInputs(to)[index], to);
+			}
+
+			@Override
+			public int size() {
+				return numOfRemoved == 0 ? fromNodes.length : storedInputs(to).length;
+			}
+		};
+	}
+
+	// Returns the edges leaving a from node, to node by to node.
+	List<NodeEdge> outputEdgesOf(int from) {
+		return new AbstractList<NodeEdge>() {
+
+			@Override
+			public NodeEdge get(int index) {
+				return edgeAt(from, numOfRemoved == 0 ? checkIndex(index, toNodes.length) : storedOutputs(from)[index]);
+			}
+
+			@Override
+			public int size() {
+				return numOfRemoved == 0 ? toNodes.length : storedOutputs(from).length;
+			}
+		};
+	}
+
+	private interface Slots {
+		int slot(int i);
+	}
+
+	private static int checkIndex(int index, int length) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+		return index;
+	}
+
+	// Returns the from nodes a to node has stored edges from.
+	private int[] storedInputs(int to) {
+
+		if (storedInputs == null) {
+			storedInputs = new int[toNodes.length][];
+		}
+		if (storedInputs[to] == null) {
+			storedInputs[to] = stored(fromNodes.length, k -> slot(k, to));
+		}
+		return storedInputs[to];
+	}
+
+	// Returns the to nodes a from node has stored edges to.
+	private int[] storedOutputs(int from) {
+
+		if (storedOutputs == null) {
+			storedOutputs = new int[fromNodes.length][];
+		}
+		if (storedOutputs[from] == null) {
+			storedOutputs[from] = stored(toNodes.length, j -> slot(from, j));
+		}
+		return storedOutputs[from];
+	}
+
+	// Returns the positions of the stored edges in the order of the edge list, from node by from node.
+	private int[] storedEdges() {
+
+		if (storedEdges == null) {
+			storedEdges = stored(fromNodes.length * toNodes.length, n -> slot(n / toNodes.length, n % toNodes.length));
+		}
+		return storedEdges;
+	}
+
+	// Returns the positions of the stored edges among length edges.
+	private int[] stored(int length, Slots slots) {
+
+		int[] positions = new int[length];
+		int count = 0;
+
+		for (int i = 0; i < length; i++) {
+			if (isStored(slots.slot(i))) {
+				positions[count++] = i;
+			}
+		}
+
+		return count == length ? positions : Arrays.copyOf(positions, count);
+	}
+
+	// Forgets the positions of the stored edges after an edge is removed or stored.
+	private void storedEdgesChanged() {
+		storedEdges = null;
+		storedInputs = null;
+		storedOutputs = null;
+	}
+
+	private NodeEdge edgeAt(int from, int to) {
+		return new NodeEdge(this, slot(from, to), fromNodes[from], toNodes[to]);
+	}
+
+	/**
+	 * Stores a detached edge between a from node and a to node of the layer, unless they are already connected.
+	 *
+	 * @param edge The edge, holding its own weight and error.
+	 * @return Returns the slot the edge is stored in, or -1 if the nodes are already connected.
+	 */
+	int store(NodeEdge edge) {
+
+		int slot = slot(edge.getFromNode().outputIndex, edge.getToNode().inputIndex);
+
+		if (isStored(slot)) {
+			return -1;
+		}
+
+		removed[slot] = false;
+		numOfRemoved--;
+		storedEdgesChanged();
+		setWeight(slot, edge.getWeight());
+		setError(slot, edge.getError());
+		extraEdges.removeIf(e -> e == edge);
+
+		return slot;
+	}
+
+	// Removes the edge in a slot, clearing its weight and error.
+	void remove(int slot) {
+
+		if (removed == null) {
+			removed = new boolean[weights.length + biases.length];
+		}
+
+		if (!removed[slot]) {
+			removed[slot] = true;
+			numOfRemoved++;
+			storedEdgesChanged();
+			setWeight(slot, 0);
+			setError(slot, 0);
+		}
+	}
+
+	double getWeight(int slot) {
+		return slot < weights.length ? weights[slot] : biases[slot - weights.length];
+	}
+
+	void setWeight(int slot, double weight) {
+		if (slot < weights.length) {
+			weights[slot] = weight;
+		} else {
+			biases[slot - weights.length] = weight;
+		}
+	}
+
+	double getError(int slot) {
+		return errors == null ? 0 : errors[slot];
+	}
+
+	void setError(int slot, double error) {
+
+		if (errors == null) {
+			if (error == 0) {
+				return;
+			}
+			errors = new double[weights.length + biases.length];
+		}
+
+		errors[slot] = error;
+	}
+
+	boolean isStored(int slot) {
+		return removed == null || !removed[slot];
+	}
+
+	private int slot(int from, int to) {
+		return from < numOfInputs ? to * numOfInputs + from : weights.length + to;
+	}
+
+	// The edges of the layer from node by from node, with the extra edges at the end.
+	private final class Edges extends AbstractList<NodeEdge> {
+
+		private DenseLayer owner() {
+			return DenseLayer.this;
+		}
+
+		@Override
+		public NodeEdge get(int index) {
+
+			int numOfStored = fromNodes.length * toNodes.length - numOfRemoved;
+
+			if (index >= numOfStored) {
+				return extraEdges.get(index - numOfStored);
+			}
+
+			int i = numOfRemoved == 0 ? checkIndex(index, numOfStored) : storedEdges()[index];
+			return edgeAt(i / toNodes.length, i % toNodes.length);
+		}
+
+		@Override
+		public int size() {
+			return fromNodes.length * toNodes.length - numOfRemoved + extraEdges.size();
+		}
+
+		@Override
+		public boolean add(NodeEdge edge) {
+
+			if (edge.getLayer() != layer) {
+				throw new IllegalArgumentException("The edge is not at layer " + layer);
+			}
+
+			if (!edge.isStoredIn(DenseLayer.this)) {
+				extraEdges.add(edge);
+			}
+			modCount++;
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object o) {
+
+			if (!(o instanceof NodeEdge)) {
+				return false;
+			}
+
+			NodeEdge edge = (NodeEdge) o;
+			if (edge.isStoredIn(DenseLayer.this)) {
+				edge.disconnect();
+				modCount++;
+				return true;
+			}
+
+			if (extraEdges.remove(edge)) {
+				modCount++;
+				return true;
+			}
+			return false;
+		}
+	}
+}
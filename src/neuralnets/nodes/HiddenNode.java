@@ -1,51 +1,159 @@
 package neuralnets.nodes;
 
 import neuralnets.NeuralNetwork;
+import utils.ActivationFunction;
+
+import java.util.ArrayList;
 import java.util.List;
 
 public class HiddenNode extends INode {
 
+	// Outputs computed during the forward pass numbered cachedPass.
+	private long cachedPass = -1;
+	private double cachedNetOutput;
+	private double cachedOutput;
+	// The error term set by the last call to setInputErrors, read by the nodes feeding this one.
+	double delta;
+
 	public HiddenNode(NeuralNetwork<Double, Double> neuralNetwork, int layer) {
 		super(neuralNetwork, layer);
 	}
 
+	/**
+	 * Sets the error of the input edges of this node from the error terms of the nodes it feeds. Only this node
+	 * is visited; the network propagates the error layer by layer, so upstream nodes are updated once each.
+	 */
 	@Override
 	public void backpropagate() {
+		setInputErrors(calculateDelta());
+	}
+
+	/**
+	 * Calculates the error term of this node: the derivative of its activation function times the sum of the
+	 * error terms already set on the nodes its output edges go into, weighted by the edges.
+	 * @return Returns the error term of this node.
+	 */
+	public double calculateDelta() {
 
 		double error = 0;
+		DenseLayer outputs = getDenseOutputs();
+
+		if (outputs != null) {
+			error = outputs.deltaSum(outputIndex);
+		} else {
+			for (NodeEdge edge : neuralNetwork.getOutputEdgesFor(this)) {
+				error += ((HiddenNode) edge.getToNode()).delta * edge.getWeight();
+			}
+		}
+		return getActivationFunction().delta(error, output());
+	}
 
-		List<NodeEdge> outputs = neuralNetwork.getOutputEdgesFor(this);
-		List<NodeEdge> inputs = neuralNetwork.getInputEdgesFor(this);
+	/**
+	 * Records the error term of this node and sets the error of every input edge to it times the output of the
+	 * edge's from node, which is the gradient of the loss with respect to the weight of the edge.
+	 * @param delta		The error term of this node.
+	 */
+	public void setInputErrors(double delta) {
 
-		for (NodeEdge edge : outputs) {
-			error += edge.getError() * edge.getWeight();
-		}
-		double output = output();
+		this.delta = delta;
+		DenseLayer inputs = getDenseInputs();
 
-		for (NodeEdge edge : inputs) {
-			edge.setError(error * output * (1 - output) * edge.getFromNode().output());
-			edge.getFromNode().backpropagate();
+		if (inputs != null) {
+			inputs.setInputErrors(inputIndex, delta);
+			return;
 		}
 
+		for (NodeEdge edge : neuralNetwork.getInputEdgesFor(this)) {
+			edge.setError(delta * edge.getFromNode().output());
+		}
 	}
 
 	// Output of the node by doing the dot product of the Input and Weight vectors
 	@Override
 	public Double output() {
-		return neuralNetwork.getActivationFunction().result(netOutput());
+		evaluate();
+		return cachedOutput;
 
 	}
 
 	public Double netOutput() {
+		evaluate();
+		return cachedNetOutput;
+	}
+
+	// Computes the net output and output once per forward pass of the network.
+	private void evaluate() {
+
+		long pass = neuralNetwork.getForwardPass();
+
+		if (cachedPass == pass) {
+			return;
+		}
+
+		ActivationFunction activationFunction = getActivationFunction();
+
+		if (!activationFunction.isElementwise()) {
+			evaluateLayer(activationFunction, pass);
+			return;
+		}
+
+		cachedNetOutput = netInput();
+		cachedOutput = activationFunction.apply(cachedNetOutput);
+		cachedPass = pass;
+	}
+
+	// Computes the outputs of every node of the layer at once, for functions over a whole layer like softmax.
+	private void evaluateLayer(ActivationFunction activationFunction, long pass) {
+
+		List<HiddenNode> nodes = new ArrayList<>();
+		for (INode node : neuralNetwork.getNodesAtLayer(layer)) {
+			if (node instanceof HiddenNode && !(node instanceof Bias)) {
+				nodes.add((HiddenNode) node);
+			}
+		}
+
+		double[] netOutputs = new double[nodes.size()];
+		for (int i = 0; i < netOutputs.length; i++) {
+			netOutputs[i] = nodes.get(i).netInput();
+		}
+
+		double[] outputs = netOutputs.clone();
+		activationFunction.applyInPlace(outputs, 0, outputs.length);
+
+		for (int i = 0; i < outputs.length; i++) {
+			HiddenNode node = nodes.get(i);
+			node.cachedNetOutput = netOutputs[i];
+			node.cachedOutput = outputs[i];
+			node.cachedPass = pass;
+		}
+	}
+
+	// Sums the inputs of the node, adding the bias value once per input edge.
+	private double netInput() {
+
+		DenseLayer inputs = getDenseInputs();
+
+		if (inputs != null) {
+			return inputs.netInput(inputIndex);
+		}
+
 		double output = 0;
 
 		for (NodeEdge inputEdge : neuralNetwork.getInputEdgesFor(this)) {
-			output += inputEdge.getFromNode().output() * inputEdge.getWeight() + neuralNetwork.getBiasAt(inputEdge.getLayer());
+			output += inputEdge.getFromNode().output() * inputEdge.getWeight()
+					+ neuralNetwork.getBiasAt(inputEdge.getLayer());
 		}
-
 		return output;
 	}
 
+	/**
+	 * Returns the activation function of the layer of this node.
+	 * @return Returns the activation function of the layer of this node.
+	 */
+	protected ActivationFunction getActivationFunction() {
+		return neuralNetwork.getActivationFunction();
+	}
+
 	@Override
 	public String toString() {
 		// TODO Auto-generated method stub
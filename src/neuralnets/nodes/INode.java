@@ -2,6 +2,10 @@ package neuralnets.nodes;
 
 import neuralnets.NeuralNetwork;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public abstract class INode {
 
 	protected static int numOfNodes = 0;
@@ -9,6 +13,16 @@ public abstract class INode {
 	protected int layer;
 	protected NeuralNetwork<Double, Double> neuralNetwork;
 
+	// The dense layers this node is a to node and a from node of, and its position in each. Edges between nodes
+	// of a dense layer are views of its arrays.
+	DenseLayer inputLayer;
+	int inputIndex;
+	DenseLayer outputLayer;
+	int outputIndex;
+	// Any other edges connected to this node, kept up to date by NodeEdge. Created when first needed.
+	private List<NodeEdge> inputEdges;
+	private List<NodeEdge> outputEdges;
+
 	public INode(NeuralNetwork<Double, Double> neuralNetwork, int layer) {
 		this.layer = layer;
 		this.neuralNetwork = neuralNetwork;
@@ -20,4 +34,68 @@ public abstract class INode {
 	public int getLayer() {
 		return layer;
 	}
+
+	/**
+	 * Returns a read-only view of the edges going into this node: those of its dense layer, from node by from
+	 * node, followed by any others in the order they were connected.
+	 * @return Returns a read-only view of the edges going into this node.
+	 */
+	public List<NodeEdge> getInputEdges() {
+		return join(inputLayer != null ? inputLayer.inputEdgesOf(inputIndex) : null, inputEdges);
+	}
+
+	/**
+	 * Returns a read-only view of the edges leaving this node: those of its dense layer, to node by to node,
+	 * followed by any others in the order they were connected.
+	 * @return Returns a read-only view of the edges leaving this node.
+	 */
+	public List<NodeEdge> getOutputEdges() {
+		return join(outputLayer != null ? outputLayer.outputEdgesOf(outputIndex) : null, outputEdges);
+	}
+
+	private static List<NodeEdge> join(List<NodeEdge> stored, List<NodeEdge> others) {
+
+		if (others == null || others.isEmpty()) {
+			return stored != null ? stored : Collections.emptyList();
+		}
+		if (stored == null) {
+			return Collections.unmodifiableList(others);
+		}
+
+		List<NodeEdge> edges = new ArrayList<>(stored);
+		edges.addAll(others);
+		return Collections.unmodifiableList(edges);
+	}
+
+	// Returns the dense layer holding every input edge of this node, or null if there is none.
+	DenseLayer getDenseInputs() {
+		return inputEdges == null || inputEdges.isEmpty() ? inputLayer : null;
+	}
+
+	// Returns the dense layer holding every output edge of this node, or null if there is none.
+	DenseLayer getDenseOutputs() {
+		return outputEdges == null || outputEdges.isEmpty() ? outputLayer : null;
+	}
+
+	void addInputEdge(NodeEdge edge) {
+		if (inputEdges == null)
+			inputEdges = new ArrayList<>();
+		inputEdges.add(edge);
+	}
+
+	void removeInputEdge(NodeEdge edge) {
+		if (inputEdges != null)
+			inputEdges.remove(edge);
+	}
+
+	void addOutputEdge(NodeEdge edge) {
+		if (outputEdges == null)
+			outputEdges = new ArrayList<>();
+		outputEdges.add(edge);
+	}
+
+	void removeOutputEdge(NodeEdge edge) {
+		if (outputEdges != null)
+			outputEdges.remove(edge);
+	}
 }
@@ -13,6 +13,7 @@ public class InputNode extends INode {
 	
 	public synchronized void setInputVal(Double entries) {
 		this.inputVal = entries;
+		neuralNetwork.invalidateActivations();
 	}
 	
 	public synchronized double getInputVal() {
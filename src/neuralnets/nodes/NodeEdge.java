@@ -2,13 +2,28 @@ package neuralnets.nodes;
 
 import tests.ANNUtils;
 
+/**
+ * An edge between two nodes. Edges between the nodes of a {@link DenseLayer} are views of its arrays, created on
+ * demand and equal to any other view of the same edge. Other edges hold their own weight and error.
+ * <p>
+ * Removing an edge from its dense layer makes its other views stale until an edge between the same nodes is stored
+ * again, which they then view: changing their weight, error or nodes throws an {@link IllegalStateException}, and
+ * disconnecting them only detaches them from the layer. An edge keeps its hash code when it is removed or
+ * disconnected, so it can still be found in hash sets, but storing an edge in a dense layer makes it equal to the
+ * views of its slot and changes its hash code.
+ */
 public class NodeEdge {
 
 	private INode fromNode;
 	private INode toNode;
-	private double weight;
 	private int layer;
+	// The dense layer storing the weight and error, and their position in it. Null while they are held below.
+	private DenseLayer storage;
+	private int slot;
+	private double weight;
 	private double error;
+	// Set when the edge is stored in a dense layer and kept when it is taken out.
+	private int hash = System.identityHashCode(this);
 
 	public NodeEdge(int layer) {
 		weight = ANNUtils.generateRandom();
@@ -18,11 +33,21 @@ public class NodeEdge {
 
 
 	public NodeEdge(int layer, INode fromNode, INode toNode) {
-		this.fromNode = fromNode;
-		this.toNode = toNode;
 		this.layer = layer;
 		error = 0;
 		weight = ANNUtils.generateRandom();
+		setFromNode(fromNode);
+		setToNode(toNode);
+	}
+
+	// Creates a view of an edge stored in a dense layer.
+	NodeEdge(DenseLayer storage, int slot, INode fromNode, INode toNode) {
+		this.layer = storage.getLayer();
+		this.storage = storage;
+		this.slot = slot;
+		this.fromNode = fromNode;
+		this.toNode = toNode;
+		hash = 31 * System.identityHashCode(storage) + slot;
 	}
 	
 	public INode getFromNode() {
@@ -34,23 +59,105 @@ public class NodeEdge {
 	}
 
 	public double getWeight() {
-		return weight;
+		return storage != null ? storage.getWeight(slot) : weight;
 	}
 
 	public void setWeight(double weight) {
-		this.weight = weight;
+		store(weight);
+		if (toNode != null)
+			toNode.neuralNetwork.weightsChanged();
 	}
 
 	public void updateWeight() {
-		weight = weight - toNode.neuralNetwork.getLearningRate() * error;
+		store(getWeight() - toNode.neuralNetwork.getLearningRate() * getError());
+		toNode.neuralNetwork.weightsChanged();
+	}
+
+	private void store(double weight) {
+		checkStored();
+		if (storage != null)
+			storage.setWeight(slot, weight);
+		else
+			this.weight = weight;
 	}
 
 	public void setFromNode(INode fromNode) {
+		unlink();
 		this.fromNode = fromNode;
+		link();
 	}
 
 	public void setToNode(INode toNode) {
+		unlink();
 		this.toNode = toNode;
+		link();
+	}
+
+	// Takes the edge out of its dense layer or the edge lists of its nodes, keeping its weight and error.
+	private void unlink() {
+
+		checkStored();
+
+		if (storage != null) {
+			weight = storage.getWeight(slot);
+			error = storage.getError(slot);
+			storage.remove(slot);
+			storage = null;
+			return;
+		}
+
+		if (fromNode != null)
+			fromNode.removeOutputEdge(this);
+		if (toNode != null)
+			toNode.removeInputEdge(this);
+	}
+
+	// Stores the edge in the dense layer of its nodes if they are not connected yet, or lists it on its nodes.
+	private void link() {
+
+		if (fromNode != null && toNode != null && fromNode.outputLayer != null
+				&& fromNode.outputLayer == toNode.inputLayer && fromNode.outputLayer.getLayer() == layer) {
+			int slot = fromNode.outputLayer.store(this);
+
+			if (slot >= 0) {
+				storage = fromNode.outputLayer;
+				this.slot = slot;
+				hash = 31 * System.identityHashCode(storage) + slot;
+				return;
+			}
+		}
+
+		if (fromNode != null)
+			fromNode.addOutputEdge(this);
+		if (toNode != null)
+			toNode.addInputEdge(this);
+	}
+
+	// Throws if the edge is a view of a slot its dense layer no longer stores.
+	private void checkStored() {
+		if (storage != null && !storage.isStored(slot))
+			throw new IllegalStateException("The edge was removed from its layer");
+	}
+
+	// Returns true if the edge is stored in the given dense layer.
+	boolean isStoredIn(DenseLayer layer) {
+		return storage == layer && layer.isStored(slot);
+	}
+
+	/**
+	 * Unlinks the edge from both of its nodes.
+	 */
+	public void disconnect() {
+
+		if (storage != null && !storage.isStored(slot)) {
+			storage = null;
+			fromNode = null;
+			toNode = null;
+			return;
+		}
+
+		setFromNode(null);
+		setToNode(null);
 	}
 
 	public int getLayer() {
@@ -59,14 +166,34 @@ public class NodeEdge {
 
 	@Override
 	public String toString() {
-		return fromNode.toString() + "---------->" + toNode.toString() + ", weight=" + weight;
+		return fromNode.toString() + "---------->" + toNode.toString() + ", weight=" + getWeight();
 	}
 
 	public double getError() {
-		return error;
+		return storage != null ? storage.getError(slot) : error;
 	}
 
 	public void setError(double error) {
-		this.error = error;
+		checkStored();
+		if (storage != null)
+			storage.setError(slot, error);
+		else
+			this.error = error;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+
+		if (storage == null || !(o instanceof NodeEdge)) {
+			return this == o;
+		}
+
+		NodeEdge edge = (NodeEdge) o;
+		return storage == edge.storage && slot == edge.slot;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
 	}
 }
@@ -1,8 +1,7 @@
 package neuralnets.nodes;
 
 import neuralnets.NeuralNetwork;
-
-import java.util.List;
+import utils.ActivationFunction;
 
 public class OutputNode extends HiddenNode {
 
@@ -12,21 +11,29 @@ public class OutputNode extends HiddenNode {
 
     /**
      * Calculates the error on the output node by using the partial derivative of the error with respect to
-     * the output node.
+     * the output node, and sets the error of its input edges. Hidden layers are not visited; see
+     * {@link neuralnets.SimpleNeuralNet#backpropagate(Double, Double)} for the full backward pass.
      * @param targetOutput      The target output.
      * @param actualOutput      The actual output.
      *
      */
     public void calculateError(Double targetOutput, Double actualOutput) {
+        setInputErrors(calculateDelta(targetOutput, actualOutput));
+    }
 
-        double error = -(targetOutput - actualOutput) * actualOutput * (1-actualOutput);
-        List<NodeEdge> inputs = neuralNetwork.getInputEdgesFor(this);
-
-        for (NodeEdge edge : inputs) {
-            edge.setError(error * edge.getFromNode().output());
-            edge.getFromNode().backpropagate();
-        }
+    /**
+     * Calculates the error term of the output node.
+     * @param targetOutput      The target output.
+     * @param actualOutput      The actual output.
+     * @return Returns the error term of the output node.
+     */
+    public double calculateDelta(Double targetOutput, Double actualOutput) {
+        return getActivationFunction().delta(-(targetOutput - actualOutput), actualOutput);
+    }
 
+    @Override
+    protected ActivationFunction getActivationFunction() {
+        return neuralNetwork.getOutputActivationFunction();
     }
 
     @Override
@@ -80,11 +80,26 @@ public class NeuralNetworkVisualizer extends Application {
 
         BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
 
+        // Predict every cell in one batch.
+        int numOfCells = (WIDTH / CELL_WIDTH) * (HEIGHT / CELL_HEIGHT);
+        double[] inputs = new double[numOfCells * 2];
+        double[] outputs = new double[numOfCells];
+
         int i = 0;
+        for (int x = 0; x < WIDTH; x += CELL_WIDTH) {
+            for (int y = HEIGHT - 1; y >= 0; y -= CELL_HEIGHT) {
+                inputs[i++] = (double) x / WIDTH;
+                inputs[i++] = (double) y / HEIGHT;
+            }
+        }
+
+        net.predictBatch(inputs, numOfCells, outputs);
+
+        i = 0;
         for (int x = 0; x < WIDTH; x += CELL_WIDTH) {
 
             for (int y = HEIGHT - 1; y >= 0; y -= CELL_HEIGHT) {
-                double output = net.predict(Arrays.asList((double) x / WIDTH, (double) y / HEIGHT)).get(0);
+                double output = outputs[i++];
                 Color c = Color.grayRgb((int) (255 * output));
                 //System.out.println("x=" + x + ", y=" + y);
                 image.setRGB(x, y - CELL_HEIGHT + 1, CELL_WIDTH, CELL_HEIGHT, pixelData(c), 0, CELL_WIDTH);
@@ -29,6 +29,24 @@ public class ANNUtils {
 
     }
 
+    /**
+     * Returns the inputs of the XOR training set as rows, in the order of {@link #getXORTargets()}.
+     *
+     * @return Returns a new array of the four XOR inputs.
+     */
+    public static double[][] getXORInputs() {
+        return new double[][] {{0, 0}, {0, 1}, {1, 0}, {1, 1}};
+    }
+
+    /**
+     * Returns the targets of the XOR training set as rows, in the order of {@link #getXORInputs()}.
+     *
+     * @return Returns a new array of the four XOR targets.
+     */
+    public static double[][] getXORTargets() {
+        return new double[][] {{0}, {1}, {1}, {0}};
+    }
+
     public static Map<List<Double>, List<Double>> getANDTrainingSet() {
 
         HashMap<List<Double>, List<Double>> inputOutputTrainingData = new HashMap<>();
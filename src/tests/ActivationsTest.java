@@ -0,0 +1,229 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import neuralnets.SimpleNeuralNet;
+import neuralnets.nodes.Bias;
+import neuralnets.nodes.INode;
+import neuralnets.nodes.NodeEdge;
+import org.junit.Test;
+import utils.ActivationFunction;
+import utils.Activations;
+import utils.LookupTableActivation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ActivationsTest {
+
+	@Test
+	public void derivativesMatchFiniteDifferences() {
+
+		ActivationFunction[] functions = {Activations.SIGMOID, Activations.TANH, Activations.RELU,
+				Activations.leakyRelu(0.1)};
+		double h = 1e-6;
+
+		for (ActivationFunction function : functions) {
+			for (double x : new double[] {-2, -0.5, 0.3, 1.7}) {
+				double expected = (function.apply(x + h) - function.apply(x - h)) / (2 * h);
+				assertEquals(expected, function.derivative(function.apply(x)), 1e-6);
+			}
+		}
+
+	}
+
+	@Test
+	public void lookupTablesStayWithinErrorBound() {
+
+		LookupTableActivation[] tables = {Activations.FAST_SIGMOID, Activations.FAST_TANH};
+		ActivationFunction[] exact = {Activations.SIGMOID, Activations.TANH};
+
+		for (int f = 0; f < tables.length; f++) {
+			double maxError = 0;
+			for (double x = -40; x <= 40; x += 0.0001) {
+				maxError = Math.max(maxError, Math.abs(tables[f].apply(x) - exact[f].apply(x)));
+			}
+			assertTrue(maxError <= tables[f].getMaxError());
+		}
+
+	}
+
+	@Test
+	public void softmaxNormalizesLayer() {
+
+		double[] values = {0, 1, 2, 3, 1000};
+		Activations.SOFTMAX.applyInPlace(values, 1, 4);
+
+		assertEquals(0d, values[0], 0);
+		assertEquals(1d, values[1] + values[2] + values[3], 1e-12);
+		assertTrue(values[3] > values[2] && values[2] > values[1]);
+		assertEquals(1000d, values[4], 0);
+
+	}
+
+	@Test
+	public void softmaxOutputLayerTrains() {
+
+		// Wide enough that some hidden nodes escape saturation for any draw of the weights.
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 8, 2}), Activations.TANH);
+		net.setOutputActivationFunction(Activations.SOFTMAX);
+		net.setLearningRate(1);
+		net.compile();
+
+		double[][] inputs = {{0, 0}, {0, 1}, {1, 0}, {1, 1}};
+		double[][] targets = {{1, 0}, {0, 1}, {0, 1}, {0, 1}};
+		net.trainBatch(inputs, targets, 4, 3000);
+
+		double[][] outputs = new double[4][2];
+		net.predictBatch(inputs, outputs);
+
+		for (int i = 0; i < inputs.length; i++) {
+			assertEquals(1d, outputs[i][0] + outputs[i][1], 1e-12);
+			assertTrue(Math.abs(outputs[i][0] - targets[i][0]) < 0.3);
+		}
+
+	}
+
+	@Test
+	public void softmaxAppliesToTheOutputLayerOfTheGraph() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 3}), Activations.TANH);
+		net.setOutputActivationFunction(Activations.SOFTMAX);
+		List<Double> inputs = Arrays.asList(0.4, -0.9);
+
+		List<Double> outputs = net.predict(inputs);
+		net.compile();
+		List<Double> compiled = net.predict(inputs);
+
+		assertEquals(1d, outputs.get(0) + outputs.get(1) + outputs.get(2), 1e-12);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(compiled.get(i), outputs.get(i), 1e-12);
+		}
+
+		try {
+			net.setActivationFunction(Activations.SOFTMAX);
+			fail("Softmax was set on the hidden layers");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+
+	}
+
+	@Test
+	public void hiddenGradientsMatchFiniteDifferences() {
+
+		for (ActivationFunction function : new ActivationFunction[] {Activations.TANH, Activations.leakyRelu(0.1)}) {
+			SimpleNeuralNet net = newGradientCheckNetwork(Arrays.asList(new Integer[] {2, 3, 1}), function);
+			List<Double> inputs = Arrays.asList(0.3, -0.8);
+			double target = 0.2;
+
+			double output = net.predict(inputs).get(0);
+
+			// Negative hidden outputs are where a gradient that includes the output of the node flips sign.
+			boolean negativeOutput = false;
+			for (INode node : net.getNodesAtLayer(1)) {
+				negativeOutput |= !(node instanceof Bias) && node.output() < 0;
+			}
+			assertTrue(negativeOutput);
+
+			net.backpropagate(target, output);
+
+			for (List<NodeEdge> layerEdges : net.getEdges().values()) {
+				for (NodeEdge edge : layerEdges) {
+					double expected = finiteDifference(net, edge, () -> {
+						double error = target - net.predict(inputs).get(0);
+						return error * error / 2;
+					});
+					assertEquals(expected, edge.getError(), 1e-6);
+				}
+			}
+		}
+
+	}
+
+	@Test
+	public void batchGradientsMatchFiniteDifferences() {
+
+		double[][] inputs = {{0.3, -0.8}};
+		double[][] targets = {{0, 1, 0}};
+		ActivationFunction[] functions = {Activations.TANH, Activations.leakyRelu(0.1), Activations.SOFTMAX};
+
+		for (ActivationFunction outputFunction : functions) {
+			SimpleNeuralNet net = newGradientCheckNetwork(Arrays.asList(new Integer[] {2, 4, 3}), Activations.TANH);
+			net.setOutputActivationFunction(outputFunction);
+			// Softmax is paired with the cross-entropy loss, the other functions with the squared error.
+			Loss loss = () -> {
+				List<Double> outputs = net.predict(Arrays.asList(0.3, -0.8));
+				double sum = 0;
+				for (int j = 0; j < outputs.size(); j++) {
+					double error = targets[0][j] - outputs.get(j);
+					sum += outputFunction == Activations.SOFTMAX
+							? -targets[0][j] * Math.log(outputs.get(j)) : error * error / 2;
+				}
+				return sum;
+			};
+
+			List<NodeEdge> edges = new ArrayList<>();
+			List<Double> gradients = new ArrayList<>();
+			for (List<NodeEdge> layerEdges : net.getEdges().values()) {
+				for (NodeEdge edge : layerEdges) {
+					edges.add(edge);
+					gradients.add(finiteDifference(net, edge, loss));
+				}
+			}
+
+			// One step with a learning rate of 1 on a batch of one moves every weight by minus its gradient.
+			double[] before = new double[edges.size()];
+			for (int i = 0; i < before.length; i++) {
+				before[i] = edges.get(i).getWeight();
+			}
+			net.setLearningRate(1);
+			net.trainBatch(inputs, targets, 1, 1);
+
+			for (int i = 0; i < before.length; i++) {
+				assertEquals(gradients.get(i), before[i] - edges.get(i).getWeight(), 1e-6);
+			}
+		}
+
+	}
+
+	private interface Loss {
+		double value();
+	}
+
+	// Returns the central difference of the loss with respect to the weight of an edge.
+	private static double finiteDifference(SimpleNeuralNet net, NodeEdge edge, Loss loss) {
+
+		double weight = edge.getWeight();
+		double h = 1e-6;
+
+		edge.setWeight(weight + h);
+		double above = loss.value();
+		edge.setWeight(weight - h);
+		double below = loss.value();
+		edge.setWeight(weight);
+
+		return (above - below) / (2 * h);
+	}
+
+	// A network with fixed weights whose bias edges offset the bias value the graph adds once per input edge, so
+	// that the net outputs of the hidden nodes have both signs.
+	private static SimpleNeuralNet newGradientCheckNetwork(List<Integer> nodeConfig, ActivationFunction function) {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(nodeConfig, function);
+		int i = 0;
+		for (List<NodeEdge> layerEdges : net.getEdges().values()) {
+			for (NodeEdge edge : layerEdges) {
+				double weight = Math.sin(++i);
+				if (edge.getFromNode() instanceof Bias) {
+					weight -= edge.getToNode().getInputEdges().size() + 1;
+				}
+				edge.setWeight(weight);
+			}
+		}
+		return net;
+	}
+}
@@ -0,0 +1,113 @@
+package tests;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import neuralnets.Checkpointer;
+import neuralnets.ModelSerializer;
+import neuralnets.SimpleNeuralNet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CheckpointerTest {
+
+	private static final double[][] INPUTS = ANNUtils.getXORInputs();
+	private static final double[][] TARGETS = ANNUtils.getXORTargets();
+
+	@Test
+	public void checkpointsAreWrittenEveryInterval() throws IOException {
+
+		Path directory = Files.createTempDirectory("checkpoints");
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+
+		try (Checkpointer checkpointer = new Checkpointer(directory, 5, 0)) {
+			net.trainBatch(INPUTS, TARGETS, 2, 12, checkpointer);
+
+			assertEquals(10, checkpointer.getLatestEpoch());
+			assertNotNull(checkpointer.getLatestCheckpoint());
+		} finally {
+			deleteDirectory(directory);
+		}
+
+	}
+
+	@Test
+	public void resumedTrainingMatchesUninterruptedTraining() throws IOException {
+
+		Path directory = Files.createTempDirectory("checkpoints");
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+		Path initial = directory.resolve("initial.nnet");
+		ModelSerializer.save(net, initial);
+		SimpleNeuralNet uninterrupted = ModelSerializer.load(initial);
+		List<Double> inputs = Arrays.asList(new Double[] {1d, 0d});
+
+		try {
+			try (Checkpointer checkpointer = new Checkpointer(directory, 1, 0)) {
+				net.trainBatch(INPUTS, TARGETS, 4, 20, checkpointer);
+			}
+
+			// A fresh network picks up from the checkpoint at epoch 20.
+			SimpleNeuralNet resumed = ModelSerializer.load(initial);
+			try (Checkpointer checkpointer = new Checkpointer(directory, 1, 0)) {
+				resumed.trainBatch(INPUTS, TARGETS, 4, 30, checkpointer);
+				assertEquals(30, checkpointer.getLatestEpoch());
+			}
+
+			uninterrupted.trainBatch(INPUTS, TARGETS, 4, 30);
+
+			assertEquals(uninterrupted.predict(inputs), resumed.predict(inputs));
+		} finally {
+			deleteDirectory(directory);
+		}
+
+	}
+
+	@Test
+	public void failedWritesAreReportedAndLeaveNoFiles() throws IOException {
+
+		Path directory = Files.createTempDirectory("checkpoints");
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+		net.setOutputActivationFunction(ModelSerializerTest.IDENTITY);
+
+		try (Checkpointer checkpointer = new Checkpointer(directory, 1, 0)) {
+			checkpointer.epochFinished(net, 1);
+
+			try {
+				checkpointer.flush();
+				fail("A checkpoint of a network that cannot be saved was written");
+			} catch (IOException e) {
+				assertTrue(e.getCause() instanceof IllegalArgumentException);
+			}
+			try {
+				checkpointer.epochFinished(net, 2);
+				fail("Training went on after a checkpoint failed");
+			} catch (IllegalStateException e) {
+				// Expected.
+			}
+		} catch (IOException e) {
+			// Expected from close.
+		} finally {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				assertFalse(files.iterator().hasNext());
+			}
+			deleteDirectory(directory);
+		}
+
+	}
+
+	private static void deleteDirectory(Path directory) throws IOException {
+		for (Path file : Files.newDirectoryStream(directory)) {
+			Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+}
@@ -0,0 +1,171 @@
+package tests;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import neuralnets.*;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static tests.NetworkTestSupport.newNetwork;
+
+public class CompiledNetworkTest {
+
+	@Test
+	public void compiledOutputMatchesGraph() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {3, 4, 2, 2}));
+		List<Double> inputs = Arrays.asList(new Double[] {0.2d, -0.7d, 1d});
+
+		List<Double> expected = net.predict(inputs);
+
+		net.compile();
+		assertTrue(net.isCompiled());
+		assertEquals(expected, net.predict(inputs));
+
+	}
+
+	@Test
+	public void compiledOutputFollowsWeightChanges() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 2, 1}));
+		net.compile();
+		net.predict(Arrays.asList(new Double[] {1d, 0d}));
+
+		net.getEdges().get(1).get(0).setWeight(0.5);
+		List<Double> compiled = net.predict(Arrays.asList(new Double[] {1d, 0d}));
+
+		net.decompile();
+		assertEquals(net.predict(Arrays.asList(new Double[] {1d, 0d})), compiled);
+
+	}
+
+	@Test
+	public void prunedGraphsAreNotCompiled() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+		net.compile();
+		net.removeEdge(net.getEdges().get(1).get(0));
+
+		try {
+			net.predict(Arrays.asList(new Double[] {1d, 0d}));
+			fail("A pruned graph was run compiled");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+
+		net.decompile();
+		try {
+			CompiledNetwork.compile(net);
+			fail("A pruned graph was compiled");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+
+	}
+
+	@Test
+	public void batchOfOneMatchesStochasticTraining() {
+
+		SimpleNeuralNet stochastic = newNetwork(Arrays.asList(2, 3, 1), Math::sin);
+		SimpleNeuralNet batched = newNetwork(Arrays.asList(2, 3, 1), Math::sin);
+
+		Map<List<Double>, List<Double>> sample = new HashMap<>();
+		sample.put(Arrays.asList(0.3d, 0.9d), Arrays.asList(1d));
+
+		stochastic.train(sample, 20);
+		batched.trainBatch(sample, 1, 20);
+
+		NetworkTestSupport.assertSameWeights(stochastic, batched, 1e-12);
+
+	}
+
+	@Test
+	public void batchTrainingLearnsAND() {
+
+		SimpleNeuralNet net = newNetwork(Arrays.asList(2, 3, 1), Math::sin);
+		net.setLearningRate(2);
+
+		net.trainBatch(ANNUtils.getANDTrainingSet(), 4, 5000);
+
+		assertTrue(net.predict(Arrays.asList(new Double[] {0d, 0d})).get(0) < 0.2);
+		assertTrue(net.predict(Arrays.asList(new Double[] {1d, 1d})).get(0) > 0.8);
+
+	}
+
+	@Test
+	public void concurrentPredictionsMatchGraph() throws InterruptedException {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 5, 3, 2}));
+		List<Double> expected = net.predict(Arrays.asList(new Double[] {0.4d, 0.6d}));
+		boolean[] matched = new boolean[8];
+		Thread[] threads = new Thread[matched.length];
+
+		for (int t = 0; t < threads.length; t++) {
+			int index = t;
+			threads[t] = new Thread(() -> {
+				double[] outputs = new double[2];
+				double[] scratch = new double[net.getWeightSnapshot().getScratchSize()];
+				boolean match = true;
+				for (int i = 0; i < 1000; i++) {
+					net.predict(new double[] {0.4d, 0.6d}, outputs, scratch);
+					match &= outputs[0] == expected.get(0) && outputs[1] == expected.get(1);
+				}
+				matched[index] = match;
+			});
+			threads[t].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (boolean match : matched) {
+			assertTrue(match);
+		}
+
+	}
+
+	@Test
+	public void batchPredictionMatchesSinglePredictions() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 4, 3}));
+		double[][] inputs = {{0d, 0d}, {0.3d, 0.8d}, {1d, -1d}};
+		double[][] outputs = new double[3][3];
+
+		net.predictBatch(inputs, outputs);
+
+		for (int i = 0; i < inputs.length; i++) {
+			List<Double> expected = net.predict(Arrays.asList(inputs[i][0], inputs[i][1]));
+			for (int j = 0; j < 3; j++) {
+				assertEquals(expected.get(j), outputs[i][j], 1e-12);
+			}
+		}
+
+		net.getEdges().get(0).get(0).setWeight(3);
+		double[] flatOutputs = new double[3];
+		net.predictBatch(new double[] {1d, -1d}, 1, flatOutputs);
+		assertEquals(net.predict(Arrays.asList(1d, -1d)).get(0), flatOutputs[0], 1e-12);
+
+	}
+
+	@Test
+	public void trainingPublishesWeights() {
+
+		SimpleNeuralNet net = newNetwork(Arrays.asList(2, 3, 1), Math::sin);
+		double[] before = new double[1];
+		double[] after = new double[1];
+		double[] scratch = new double[net.getWeightSnapshot().getScratchSize()];
+
+		net.predict(new double[] {1d, 1d}, before, scratch);
+		net.trainBatch(ANNUtils.getANDTrainingSet(), 4, 10);
+		net.predict(new double[] {1d, 1d}, after, scratch);
+
+		assertTrue(before[0] != after[0]);
+		assertEquals(net.predict(Arrays.asList(new Double[] {1d, 1d})).get(0), after[0], 0);
+
+	}
+}
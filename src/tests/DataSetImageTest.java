@@ -0,0 +1,149 @@
+package tests;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import classification.DataSetImage;
+import classification.ImagePixels;
+import neuralnets.data.TrainingDataSource;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DataSetImageTest {
+
+	private static final int SIZE = 5;
+	private static final int HEIGHT = 3;
+	private static final int WIDTH = 2;
+
+	@Test
+	public void imagesAndLabelsAreReadInPlace() throws IOException {
+
+		Path imageFile = writeImages(SIZE);
+		Path labelFile = writeLabels(SIZE);
+
+		try {
+			DataSetImage dataSet = new DataSetImage(imageFile, labelFile);
+
+			assertEquals(SIZE, dataSet.size());
+			assertEquals(WIDTH, dataSet.getWidth());
+			assertEquals(HEIGHT, dataSet.getHeight());
+
+			// Read out of order.
+			double[] pixels = new double[WIDTH * HEIGHT];
+			for (int i = SIZE - 1; i >= 0; i--) {
+				assertEquals(i % 3, dataSet.getLabel(i));
+				dataSet.getImage(i, pixels, 0);
+				assertArrayEquals(expectedPixels(i), pixels, 0);
+
+				ImagePixels.toGrayscale(dataSet.toBufferedImage(i), pixels, 0);
+				assertArrayEquals(expectedPixels(i), pixels, 1e-12);
+			}
+		} finally {
+			Files.delete(imageFile);
+			Files.delete(labelFile);
+		}
+
+	}
+
+	@Test
+	public void batchesCoverTheDataSet() throws IOException {
+
+		Path imageFile = writeImages(SIZE);
+		Path labelFile = writeLabels(SIZE);
+
+		try {
+			DataSetImage dataSet = new DataSetImage(imageFile, labelFile);
+			double[] pixels = new double[2 * WIDTH * HEIGHT];
+			int[] labels = new int[2];
+
+			assertEquals(2, dataSet.getBatch(2, 2, pixels, labels));
+			assertEquals(2, labels[0]);
+			assertEquals(0, labels[1]);
+			assertEquals(expectedPixels(3)[0], pixels[WIDTH * HEIGHT], 0);
+			assertEquals(1, dataSet.getBatch(4, 2, pixels, labels));
+			assertEquals(0, dataSet.getBatch(5, 2, pixels, labels));
+
+			TrainingDataSource source = dataSet.toDataSource(3);
+			double[] targets = new double[2 * 3];
+			int total = 0;
+			int read;
+			while ((read = source.read(pixels, targets, 2)) > 0) {
+				for (int i = 0; i < read; i++) {
+					assertEquals(1, targets[i * 3 + (total + i) % 3], 0);
+				}
+				total += read;
+			}
+			assertEquals(SIZE, total);
+		} finally {
+			Files.delete(imageFile);
+			Files.delete(labelFile);
+		}
+
+	}
+
+	@Test
+	public void mismatchedFilesAreRejected() throws IOException {
+
+		Path imageFile = writeImages(SIZE);
+		Path labelFile = writeLabels(SIZE - 1);
+
+		try {
+			new DataSetImage(imageFile, labelFile);
+			fail("Files with different numbers of images were accepted");
+		} catch (IOException e) {
+			// Expected.
+		}
+
+		try {
+			new DataSetImage(labelFile, imageFile);
+			fail("Files of the wrong shape were accepted");
+		} catch (IOException e) {
+			// Expected.
+		} finally {
+			Files.delete(imageFile);
+			Files.delete(labelFile);
+		}
+
+	}
+
+	private static double[] expectedPixels(int image) {
+		double[] pixels = new double[WIDTH * HEIGHT];
+		for (int p = 0; p < pixels.length; p++) {
+			pixels[p] = ((image * 40 + p * 7) & 0xFF) / 255d;
+		}
+		return pixels;
+	}
+
+	private static Path writeImages(int size) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(16 + size * WIDTH * HEIGHT);
+		buffer.putInt(0x00000803).putInt(size).putInt(HEIGHT).putInt(WIDTH);
+		for (int i = 0; i < size; i++) {
+			for (int p = 0; p < WIDTH * HEIGHT; p++) {
+				buffer.put((byte) (i * 40 + p * 7));
+			}
+		}
+
+		Path file = Files.createTempFile("images", ".idx3-ubyte");
+		Files.write(file, buffer.array());
+		return file;
+	}
+
+	private static Path writeLabels(int size) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(8 + size);
+		buffer.putInt(0x00000801).putInt(size);
+		for (int i = 0; i < size; i++) {
+			buffer.put((byte) (i % 3));
+		}
+
+		Path file = Files.createTempFile("labels", ".idx1-ubyte");
+		Files.write(file, buffer.array());
+		return file;
+	}
+}
@@ -0,0 +1,183 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import neuralnets.CompiledNetwork;
+import neuralnets.SimpleNeuralNet;
+import neuralnets.nodes.DenseLayer;
+import neuralnets.nodes.INode;
+import neuralnets.nodes.NodeEdge;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DenseLayerTest {
+
+	@Test
+	public void edgesAreViewsOfTheLayerWeights() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {3, 4, 2}));
+		DenseLayer layer = DenseLayer.of(net.getEdges().get(0));
+		INode input = net.getInputNodes().get(1);
+
+		assertEquals(0, layer.getLayer());
+		assertEquals(3, layer.getNumOfInputs());
+		assertEquals(4, layer.getNumOfOutputs());
+		assertEquals(16, net.getEdges().get(0).size());
+
+		NodeEdge edge = net.getOutputEdgesFor(input).get(2);
+		NodeEdge sameEdge = net.getInputEdgesFor(edge.getToNode()).get(1);
+		assertEquals(edge, sameEdge);
+		assertEquals(edge.hashCode(), sameEdge.hashCode());
+		assertEquals(edge, net.getEdges().get(0).get(6));
+
+		edge.setWeight(0.25);
+		assertEquals(0.25, sameEdge.getWeight(), 0);
+
+		double[] weights = new double[12];
+		double[] biases = new double[4];
+		layer.copyWeights(weights, biases);
+		assertEquals(0.25, weights[2 * 3 + 1], 0);
+
+		layer.setWeights(new double[12], new double[] {0, 0, 0.5, 0});
+		assertEquals(0, edge.getWeight(), 0);
+		assertEquals(0.5, net.getEdges().get(0).get(14).getWeight(), 0);
+
+	}
+
+	@Test
+	public void removedEdgesCanBeConnectedAgain() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 2, 1}));
+		List<NodeEdge> edges = net.getEdges().get(0);
+		NodeEdge edge = edges.get(1);
+		INode from = edge.getFromNode();
+		INode to = edge.getToNode();
+		edge.setWeight(0.75);
+
+		net.removeEdge(edge);
+		assertEquals(5, edges.size());
+		assertFalse(edges.contains(edge));
+		assertEquals(0.75, edge.getWeight(), 0);
+		assertEquals(2, net.getInputEdgesFor(to).size());
+
+		NodeEdge reconnected = new NodeEdge(0, from, to);
+		reconnected.setWeight(0.125);
+		net.addEdge(reconnected);
+		assertEquals(6, edges.size());
+		assertEquals(0.125, edges.get(1).getWeight(), 0);
+		assertTrue(DenseLayer.of(edges).getExtraEdges().isEmpty());
+
+		// A second edge between the same nodes is held by its own object.
+		NodeEdge duplicate = new NodeEdge(0, from, to);
+		net.addEdge(duplicate);
+		assertEquals(7, edges.size());
+		assertSame(duplicate, edges.get(6));
+		assertEquals(4, net.getInputEdgesFor(to).size());
+		assertSame(duplicate, net.getOutputEdgesFor(from).get(2));
+
+		try {
+			edges.add(new NodeEdge(1));
+			fail("An edge of another layer was added");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+
+	}
+
+	@Test
+	public void edgeListsSkipRemovedEdges() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {3, 4, 2}));
+		List<NodeEdge> edges = net.getEdges().get(0);
+		List<NodeEdge> expected = new ArrayList<>(edges);
+		INode from = edges.get(5).getFromNode();
+		INode to = edges.get(0).getToNode();
+
+		for (int i : new int[] {10, 5, 0}) {
+			net.removeEdge(edges.get(i));
+			expected.remove(i);
+		}
+
+		assertEquals(13, edges.size());
+		assertEquals(expected, edges);
+		assertEquals(expected.get(4), edges.get(4));
+
+		assertEquals(3, net.getInputEdgesFor(to).size());
+		assertSame(net.getInputNodes().get(1), net.getInputEdgesFor(to).get(0).getFromNode());
+		assertEquals(3, net.getOutputEdgesFor(from).size());
+		assertEquals(expected.get(4), net.getOutputEdgesFor(from).get(1));
+
+		try {
+			edges.get(13);
+			fail("An edge past the end of the list was returned");
+		} catch (IndexOutOfBoundsException e) {
+			// Expected.
+		}
+
+	}
+
+	@Test
+	public void removedEdgesKeepTheirWeightsOutOfTheLayer() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 2, 1}));
+		List<NodeEdge> edges = net.getEdges().get(0);
+		DenseLayer layer = DenseLayer.of(edges);
+		NodeEdge edge = edges.get(1);
+		NodeEdge view = net.getOutputEdgesFor(edge.getFromNode()).get(1);
+		Set<NodeEdge> set = new HashSet<>(Arrays.asList(edge));
+
+		net.removeEdge(edge);
+		assertTrue(set.contains(edge));
+
+		try {
+			view.setWeight(1);
+			fail("The weight of a removed edge was set through a view");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+
+		try {
+			view.setError(1);
+			fail("The error of a removed edge was set through a view");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+
+		double[] weights = new double[4];
+		double[] biases = new double[2];
+		layer.setWeights(new double[] {1, 1, 1, 1}, new double[] {1, 1});
+		layer.copyWeights(weights, biases);
+		assertEquals(0, weights[2], 0);
+		assertEquals(1, weights[3], 0);
+
+	}
+
+	@Test
+	public void graphOutputsMatchTheCompiledNetworkAfterBatchTraining() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {3, 5, 2}));
+		double[] before = new double[2];
+		CompiledNetwork.compile(net).forward(new double[] {0.2, 0.9, 0.4}, before);
+
+		net.trainBatch(new double[][] {{0.2, 0.9, 0.4}, {1, 0, 1}}, new double[][] {{1, 0}, {0, 1}}, 2, 20);
+		List<Double> graphOutputs = net.predict(Arrays.asList(0.2, 0.9, 0.4));
+
+		double[] outputs = new double[2];
+		CompiledNetwork.compile(net).forward(new double[] {0.2, 0.9, 0.4}, outputs);
+
+		assertTrue(before[0] != outputs[0]);
+
+		assertEquals(graphOutputs.get(0), outputs[0], 1e-12);
+		assertEquals(graphOutputs.get(1), outputs[1], 1e-12);
+
+	}
+}
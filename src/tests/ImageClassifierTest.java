@@ -1,4 +1,109 @@
 package tests;
 
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import classification.ImageClassifier;
+import classification.ImagePixels;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
 public class ImageClassifierTest {
+
+	@Test
+	public void colorPixelsMatchGetRGB() {
+
+		int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR,
+				BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_565_RGB};
+
+		for (int type : types) {
+			BufferedImage image = new BufferedImage(7, 5, type);
+			for (int y = 0; y < 5; y++) {
+				for (int x = 0; x < 7; x++) {
+					image.setRGB(x, y, 0xFF000000 | (x * 36) << 16 | (y * 50) << 8 | (x * y * 7));
+				}
+			}
+
+			// A sub-image shares the raster of its parent at an offset.
+			BufferedImage subimage = image.getSubimage(2, 1, 4, 3);
+
+			assertGrayscaleMatchesGetRGB(image);
+			assertGrayscaleMatchesGetRGB(subimage);
+		}
+
+	}
+
+	@Test
+	public void grayPixelsAreScaledSamples() {
+
+		BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_BYTE_GRAY);
+		for (int i = 0; i < 6; i++) {
+			image.getRaster().setSample(i % 3, i / 3, 0, i * 51);
+		}
+
+		double[] values = new double[7];
+		ImagePixels.toGrayscale(image, values, 1);
+
+		for (int i = 0; i < 6; i++) {
+			assertEquals(i / 5d, values[i + 1], 1e-12);
+		}
+
+	}
+
+	@Test
+	public void classifierLearnsBarOrientation() {
+
+		ImageClassifier<String> classifier = new ImageClassifier<>(Arrays.asList(new Integer[] {16, 16, 2}));
+		Map<BufferedImage, String> examples = new LinkedHashMap<>();
+
+		for (int i = 0; i < 4; i++) {
+			examples.put(bar(i, true), "horizontal");
+			examples.put(bar(i, false), "vertical");
+		}
+
+		classifier.batchTrain(examples, 0.5, 4, 2000);
+
+		List<BufferedImage> images = new ArrayList<>(examples.keySet());
+		List<String> classes = classifier.classifyBatch(images);
+
+		for (int i = 0; i < images.size(); i++) {
+			assertEquals(examples.get(images.get(i)), classes.get(i));
+			assertEquals(examples.get(images.get(i)), classifier.classify(images.get(i)));
+		}
+
+	}
+
+	// Draws a white line across a black 4x4 image.
+	private static BufferedImage bar(int position, boolean horizontal) {
+
+		BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+		for (int i = 0; i < 4; i++) {
+			if (horizontal) {
+				image.setRGB(i, position, 0xFFFFFF);
+			} else {
+				image.setRGB(position, i, 0xFFFFFF);
+			}
+		}
+		return image;
+	}
+
+	private static void assertGrayscaleMatchesGetRGB(BufferedImage image) {
+
+		double[] values = new double[image.getWidth() * image.getHeight()];
+		ImagePixels.toGrayscale(image, values, 0);
+
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				int pixel = image.getRGB(x, y);
+				double expected = (((pixel >> 16) & 0xFF) * 0.299 + ((pixel >> 8) & 0xFF) * 0.587
+						+ (pixel & 0xFF) * 0.114) / 255;
+				assertEquals(expected, values[y * image.getWidth() + x], 1e-9);
+			}
+		}
+	}
 }
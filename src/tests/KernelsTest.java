@@ -0,0 +1,119 @@
+package tests;
+
+import java.util.Random;
+
+import org.junit.Test;
+import utils.Kernels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+// Compares the kernels chosen at startup with the scalar ones. The build runs the tests with the Vector API, so
+// the SIMD kernels are the ones checked.
+public class KernelsTest {
+
+	// Lengths around multiples of every vector width, to cover the loops over whole vectors and the tails.
+	private static final int[] LENGTHS = {1, 3, 4, 7, 8, 9, 17, 63, 64, 65, 300};
+
+	@Test
+	public void dotMatchesScalarDot() {
+
+		for (int length : LENGTHS) {
+			double[] a = random(length + 2, 1);
+			double[] b = random(length + 3, 2);
+
+			assertEquals(Kernels.scalar().dot(a, 2, b, 3, length), Kernels.get().dot(a, 2, b, 3, length), 1e-12);
+		}
+
+	}
+
+	@Test
+	public void axpyIsIdenticalToScalarAxpy() {
+
+		for (int length : LENGTHS) {
+			double[] x = random(length + 1, 3);
+			double[] expected = random(length, 4);
+			double[] actual = expected.clone();
+
+			Kernels.scalar().axpy(-0.37, x, 1, expected, 0, length);
+			Kernels.get().axpy(-0.37, x, 1, actual, 0, length);
+
+			assertArrayEquals(expected, actual, 0);
+		}
+
+	}
+
+	@Test
+	public void matrixProductsMatchScalarProducts() {
+
+		for (int rows : new int[] {1, 5, 70}) {
+			for (int length : LENGTHS) {
+				int columns = 67;
+				double[] a = random(rows * length, 5);
+				double[] bt = random(columns * length, 6);
+
+				double[] expected = new double[rows * columns];
+				double[] actual = new double[rows * columns];
+				Kernels.scalar().gemm(a, bt, expected, length, columns, 0, rows);
+				Kernels.get().gemm(a, bt, actual, length, columns, 0, rows);
+				assertArrayEquals(expected, actual, 1e-12);
+
+				double[] y = new double[columns + 1];
+				Kernels.get().gemv(bt, columns, length, a, 0, y, 1);
+				for (int j = 0; j < columns; j++) {
+					assertEquals(expected[j], y[j + 1], 1e-12);
+				}
+			}
+		}
+
+	}
+
+	@Test
+	public void leakyReluIsIdenticalToScalarLeakyRelu() {
+
+		for (int length : LENGTHS) {
+			double[] expected = random(length + 1, 7);
+			expected[0] = 0;
+			double[] actual = expected.clone();
+			double[] expectedErrors = random(length + 1, 8);
+			double[] actualErrors = expectedErrors.clone();
+
+			Kernels.scalar().leakyRelu(expected, 0, length + 1, 0.1);
+			Kernels.get().leakyRelu(actual, 0, length + 1, 0.1);
+			Kernels.scalar().leakyReluDelta(expectedErrors, expected, 1, length + 1, 0.1);
+			Kernels.get().leakyReluDelta(actualErrors, actual, 1, length + 1, 0.1);
+
+			assertArrayEquals(expected, actual, 0);
+			assertArrayEquals(expectedErrors, actualErrors, 0);
+		}
+
+	}
+
+	@Test
+	public void byteDotIsIdenticalToScalarByteDot() {
+
+		for (int length : LENGTHS) {
+			byte[] a = new byte[length + 2];
+			byte[] b = new byte[length + 1];
+			Random random = new Random(length);
+			random.nextBytes(a);
+			random.nextBytes(b);
+			a[2] = Byte.MIN_VALUE;
+			b[1] = Byte.MIN_VALUE;
+
+			assertEquals(Kernels.scalar().dot(a, 2, b, 1, length), Kernels.get().dot(a, 2, b, 1, length));
+		}
+
+	}
+
+	private static double[] random(int length, long seed) {
+
+		Random random = new Random(seed);
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = 2 * random.nextDouble() - 1;
+		}
+
+		return values;
+	}
+}
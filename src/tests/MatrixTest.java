@@ -0,0 +1,88 @@
+package tests;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import utils.Matrix;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MatrixTest {
+
+	@Test
+	public void multTest() {
+
+		Matrix a = new Matrix(new Double[][] {{1d, 2d, 3d}, {4d, 5d, 6d}}, 2, 3);
+		Matrix b = new Matrix(new Double[][] {{7d, 8d}, {9d, 10d}, {11d, 12d}}, 3, 2);
+
+		Matrix c = Matrix.mult(a, b);
+
+		assertEquals(2, c.getNumOfRows());
+		assertEquals(2, c.getNumOfCols());
+		assertArrayEquals(new double[] {58d, 64d, 139d, 154d}, c.getData(), 0);
+
+	}
+
+	@Test
+	public void blockedMultMatchesNaiveMult() {
+
+		Matrix a = randomMatrix(70, 130);
+		Matrix b = randomMatrix(130, 67);
+
+		Matrix c = Matrix.mult(a, b);
+
+		for (int i = 0; i < a.getNumOfRows(); i++) {
+			for (int j = 0; j < b.getNumOfCols(); j++) {
+				double expected = 0;
+				for (int k = 0; k < a.getNumOfCols(); k++) {
+					expected += a.get(i, k) * b.get(k, j);
+				}
+				assertEquals(expected, c.get(i, j), 1e-9);
+			}
+		}
+
+	}
+
+	@Test
+	public void parallelMultMatchesMult() {
+
+		Matrix a = randomMatrix(150, 90);
+		Matrix b = randomMatrix(90, 110);
+		ForkJoinPool pool = new ForkJoinPool(4);
+
+		try {
+			Matrix expected = Matrix.mult(a, b);
+			assertArrayEquals(expected.getData(), Matrix.parallelMult(a, b, pool, 1000).getData(), 0);
+			assertArrayEquals(expected.getData(), Matrix.parallelMult(a, b).getData(), 0);
+		} finally {
+			pool.shutdown();
+		}
+
+	}
+
+	@Test
+	public void inPlaceOperationsTest() {
+
+		Matrix a = new Matrix(new double[] {1d, 2d, 3d, 4d}, 2, 2);
+		Matrix b = new Matrix(new double[] {2d, 2d, 2d, 2d}, 2, 2);
+
+		a.add(b).scale(0.5).hadamard(b);
+
+		assertArrayEquals(new double[] {3d, 4d, 5d, 6d}, a.getData(), 0);
+		assertArrayEquals(new double[] {2d, 2d, 2d, 2d}, b.getData(), 0);
+
+	}
+
+	private static Matrix randomMatrix(int rows, int cols) {
+		Random rand = new Random(rows * 31 + cols);
+		Matrix m = new Matrix(rows, cols);
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < cols; j++) {
+				m.set(i, j, rand.nextDouble() - 0.5);
+			}
+		}
+		return m;
+	}
+}
@@ -0,0 +1,165 @@
+package tests;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import neuralnets.*;
+import org.junit.Test;
+import utils.ActivationFunction;
+import utils.Activations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ModelSerializerTest {
+
+	// An activation function that is not one of Activations, so networks using it cannot be saved.
+	static final ActivationFunction IDENTITY = new ActivationFunction() {
+
+		@Override
+		public double apply(double x) {
+			return x;
+		}
+
+		@Override
+		public double derivative(double output) {
+			return 1;
+		}
+	};
+
+	@Test
+	public void savedNetworkLoadsIdentically() throws IOException {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {3, 5, 4, 2}), Activations.TANH);
+		net.setOutputActivationFunction(Activations.SIGMOID);
+		net.setLearningRate(0.25);
+		List<Double> inputs = Arrays.asList(new Double[] {0.1d, -0.4d, 0.9d});
+
+		Path file = Files.createTempFile("model", ".nnet");
+		try {
+			ModelSerializer.save(net, file);
+			SimpleNeuralNet loaded = ModelSerializer.load(file);
+
+			assertEquals(net.getNodeConfig(), loaded.getNodeConfig());
+			assertEquals(0.25, loaded.getLearningRate(), 0);
+			assertEquals(Activations.TANH, loaded.getActivationFunction());
+			assertEquals(Activations.SIGMOID, loaded.getOutputActivationFunction());
+			assertEquals(net.predict(inputs), loaded.predict(inputs));
+		} finally {
+			Files.delete(file);
+		}
+
+	}
+
+	@Test
+	public void mappedModelPredictsIdentically() throws IOException {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 4, 1}));
+		List<Double> expected = net.predict(Arrays.asList(new Double[] {0.7d, 0.2d}));
+
+		Path file = Files.createTempFile("model", ".nnet");
+		try {
+			ModelSerializer.save(net, file);
+			MappedModel model = ModelSerializer.map(file);
+
+			double[] outputs = new double[1];
+			model.predict(new double[] {0.7d, 0.2d}, outputs, new double[model.getScratchSize()]);
+
+			assertEquals(expected.get(0), outputs[0], 0);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+
+	@Test
+	public void modelsWithTooManyLayersAreRejected() throws IOException {
+
+		Path file = Files.createTempFile("model", ".nnet");
+		try {
+			ModelSerializer.save(new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 4, 1})), file);
+			setLayerCount(file, Integer.MAX_VALUE / 4);
+
+			try {
+				ModelSerializer.load(file);
+				fail("A model with more layers than fit in the file was loaded");
+			} catch (IOException e) {
+				// Expected.
+			}
+			try {
+				ModelSerializer.map(file);
+				fail("A model with more layers than fit in the file was mapped");
+			} catch (IOException e) {
+				// Expected.
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+
+	@Test
+	public void modelsWithLayerwiseHiddenActivationsAreRejected() throws IOException {
+
+		Path file = Files.createTempFile("model", ".nnet");
+		try {
+			ModelSerializer.save(new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 4, 1})), file);
+			byte[] bytes = Files.readAllBytes(file);
+			ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(12, Activations.getId(Activations.SOFTMAX));
+			Files.write(file, bytes);
+
+			try {
+				ModelSerializer.load(file);
+				fail("A model with a softmax hidden layer was loaded");
+			} catch (IOException e) {
+				// Expected.
+			}
+			try {
+				ModelSerializer.map(file);
+				fail("A model with a softmax hidden layer was mapped");
+			} catch (IOException e) {
+				// Expected.
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+
+	@Test
+	public void failedSavesLeaveTheFileAsItWas() throws IOException {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 4, 1}));
+		net.setOutputActivationFunction(IDENTITY);
+
+		Path file = Files.createTempFile("model", ".nnet");
+		try {
+			ModelSerializer.save(new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 4, 1})), file);
+			byte[] saved = Files.readAllBytes(file);
+
+			try {
+				ModelSerializer.save(net, file);
+				fail("A network with an activation function that cannot be saved was saved");
+			} catch (IllegalArgumentException e) {
+				// Expected.
+			}
+			assertArrayEquals(saved, Files.readAllBytes(file));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+
+	// Overwrites the number of layers in the header of a saved model.
+	static void setLayerCount(Path file, int numOfLayers) throws IOException {
+		byte[] bytes = Files.readAllBytes(file);
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(8, numOfLayers);
+		Files.write(file, bytes);
+	}
+}
@@ -0,0 +1,87 @@
+package tests;
+
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+import neuralnets.SimpleNeuralNet;
+import neuralnets.nodes.NodeEdge;
+import utils.ActivationFunction;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Networks with fixed weights and assertions on their weights, shared by the tests. It is built with the tests
+ * only, not with the library.
+ */
+final class NetworkTestSupport {
+
+	private NetworkTestSupport() {
+	}
+
+	/**
+	 * Returns a network with the sigmoid activation function at every layer and weights set by
+	 * {@link #setFixedWeights}.
+	 *
+	 * @param nodeConfig The number of nodes at each layer.
+	 * @param weight     The weight of the edge at each position, counting from 1 layer by layer.
+	 * @return Returns the network.
+	 */
+	static SimpleNeuralNet newNetwork(List<Integer> nodeConfig, IntToDoubleFunction weight) {
+		return setFixedWeights(new SimpleNeuralNet(nodeConfig), weight);
+	}
+
+	/**
+	 * Returns a network with the given activation functions and weights set by {@link #setFixedWeights}.
+	 *
+	 * @param nodeConfig               The number of nodes at each layer.
+	 * @param activationFunction       The activation function of the hidden layers.
+	 * @param outputActivationFunction The activation function of the output layer.
+	 * @param weight                   The weight of the edge at each position, counting from 1 layer by layer.
+	 * @return Returns the network.
+	 */
+	static SimpleNeuralNet newNetwork(List<Integer> nodeConfig, ActivationFunction activationFunction,
+			ActivationFunction outputActivationFunction, IntToDoubleFunction weight) {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(nodeConfig, activationFunction);
+		net.setOutputActivationFunction(outputActivationFunction);
+		return setFixedWeights(net, weight);
+	}
+
+	/**
+	 * Sets every weight of a network, those of the bias edges included, to a value that depends only on the
+	 * position of the edge, so that networks of the same shape start out identical.
+	 *
+	 * @param net    The network to set the weights of.
+	 * @param weight The weight of the edge at each position, counting from 1 layer by layer.
+	 * @return Returns the network.
+	 */
+	private static SimpleNeuralNet setFixedWeights(SimpleNeuralNet net, IntToDoubleFunction weight) {
+
+		int i = 0;
+		for (int l = 0; l < net.getEdges().size(); l++) {
+			for (NodeEdge edge : net.getEdges().get(l)) {
+				edge.setWeight(weight.applyAsDouble(++i));
+			}
+		}
+		return net;
+	}
+
+	/**
+	 * Asserts that two networks of the same shape have the same weights.
+	 *
+	 * @param expected The network with the expected weights.
+	 * @param actual   The network to check.
+	 * @param delta    The largest difference allowed between two weights.
+	 */
+	static void assertSameWeights(SimpleNeuralNet expected, SimpleNeuralNet actual, double delta) {
+
+		for (int l = 0; l < expected.getEdges().size(); l++) {
+			List<NodeEdge> expectedEdges = expected.getEdges().get(l);
+			List<NodeEdge> actualEdges = actual.getEdges().get(l);
+			for (int i = 0; i < expectedEdges.size(); i++) {
+				assertEquals("Weight " + i + " of layer " + l, expectedEdges.get(i).getWeight(),
+						actualEdges.get(i).getWeight(), delta);
+			}
+		}
+	}
+}
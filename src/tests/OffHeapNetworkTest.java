@@ -0,0 +1,145 @@
+package tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+import neuralnets.MappedModel;
+import neuralnets.ModelSerializer;
+import neuralnets.OffHeapNetwork;
+import neuralnets.Precision;
+import neuralnets.SimpleNeuralNet;
+import org.junit.Test;
+import utils.Activations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static tests.NetworkTestSupport.newNetwork;
+
+public class OffHeapNetworkTest {
+
+	private static final List<Integer> NODE_CONFIG = Arrays.asList(2, 4, 2);
+	private static final IntToDoubleFunction WEIGHTS = i -> Math.sin(i) / 2;
+
+	private static final double[][] INPUTS = ANNUtils.getXORInputs();
+	// The XOR targets as one-hot classes, so that the network has more than one output.
+	private static final double[][] TARGETS = {{0, 1}, {1, 0}, {1, 0}, {0, 1}};
+
+	@Test
+	public void trainingMatchesCompiledTraining() throws IOException {
+
+		SimpleNeuralNet expected = newNetwork(NODE_CONFIG, Activations.TANH, Activations.SIGMOID, WEIGHTS);
+		SimpleNeuralNet actual = newNetwork(NODE_CONFIG, Activations.TANH, Activations.SIGMOID, WEIGHTS);
+
+		try (OffHeapNetwork network = OffHeapNetwork.copyOf(actual, 2)) {
+			expected.trainBatch(INPUTS, TARGETS, 2, 50);
+			network.trainBatch(INPUTS, TARGETS, 2, 50);
+			network.copyTo(actual);
+		}
+
+		NetworkTestSupport.assertSameWeights(expected, actual, 1e-9);
+
+	}
+
+	@Test
+	public void modelsReadTheWeightsInPlaceUntilTheNetworkIsClosed() {
+
+		SimpleNeuralNet net = newNetwork(NODE_CONFIG, Activations.TANH, Activations.SIGMOID, WEIGHTS);
+		OffHeapNetwork network = OffHeapNetwork.copyOf(net, 4);
+		MappedModel model = network.asModel();
+		double[] scratch = new double[model.getScratchSize()];
+		double[] before = new double[2];
+		double[] after = new double[2];
+		double[] outputs = new double[2];
+
+		model.predict(INPUTS[1], before, scratch);
+		network.trainBatch(INPUTS, TARGETS, 4, 10);
+		model.predict(INPUTS[1], after, scratch);
+		network.predict(INPUTS[1], outputs);
+
+		double[] expected = net.predict(Arrays.asList(0d, 1d)).stream().mapToDouble(Double::doubleValue).toArray();
+		assertArrayEquals(expected, before, 0);
+		assertTrue(before[0] != after[0]);
+		assertArrayEquals(outputs, after, 0);
+
+		network.close();
+		assertTrue(network.isClosed());
+
+		try {
+			model.predict(INPUTS[1], outputs, scratch);
+			fail("A model of a closed network predicted");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+		try {
+			network.trainBatch(INPUTS, TARGETS, 4, 1);
+			fail("A closed network was trained");
+		} catch (IllegalStateException e) {
+			// Expected.
+		}
+
+	}
+
+	@Test
+	public void savedNetworksLoadIntoEitherForm() throws IOException {
+
+		SimpleNeuralNet net = newNetwork(NODE_CONFIG, Activations.TANH, Activations.SIGMOID, WEIGHTS);
+		Path file = Files.createTempFile("model", ".nnet");
+
+		try (OffHeapNetwork network = OffHeapNetwork.copyOf(net, 4)) {
+			network.setLearningRate(0.3);
+			network.trainBatch(INPUTS, TARGETS, 4, 10);
+			network.save(file);
+
+			SimpleNeuralNet loaded = ModelSerializer.load(file);
+			double[] expected = new double[2];
+			network.predict(INPUTS[2], expected);
+			List<Double> outputs = loaded.predict(Arrays.asList(1d, 0d));
+
+			assertEquals(0.3, loaded.getLearningRate(), 0);
+			assertEquals(expected[0], outputs.get(0), 0);
+			assertEquals(expected[1], outputs.get(1), 0);
+
+			try (OffHeapNetwork reloaded = OffHeapNetwork.load(file, 1)) {
+				double[] actual = new double[2];
+				reloaded.predict(INPUTS[2], actual);
+
+				assertArrayEquals(expected, actual, 0);
+				assertEquals(0.3, reloaded.getLearningRate(), 0);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+
+	@Test
+	public void floatModelsLoadWidened() throws IOException {
+
+		SimpleNeuralNet net = newNetwork(NODE_CONFIG, Activations.TANH, Activations.SIGMOID, WEIGHTS);
+		net.setPrecision(Precision.FLOAT);
+		Path file = Files.createTempFile("model", ".nnet");
+
+		try {
+			ModelSerializer.save(net, file);
+			MappedModel model = ModelSerializer.map(file);
+			double[] expected = new double[2];
+			model.predict(INPUTS[3], expected, new double[model.getScratchSize()]);
+
+			try (OffHeapNetwork network = OffHeapNetwork.load(file, 2)) {
+				double[] actual = new double[2];
+				network.predict(INPUTS[3], actual);
+
+				assertArrayEquals(expected, actual, 0);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+}
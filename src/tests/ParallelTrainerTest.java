@@ -0,0 +1,51 @@
+package tests;
+
+import java.util.Arrays;
+
+import neuralnets.*;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static tests.NetworkTestSupport.newNetwork;
+
+public class ParallelTrainerTest {
+
+	private static final double[][] INPUTS = {{0, 0}, {0, 1}, {1, 0}, {1, 1}, {0.5, 0.5}, {0.2, 0.9}, {0.9, 0.1}};
+	private static final double[][] TARGETS = {{0}, {1}, {1}, {1}, {1}, {1}, {1}};
+
+	@Test
+	public void synchronousMatchesBatchTraining() {
+
+		SimpleNeuralNet sequential = newNetwork(Arrays.asList(2, 3, 1), Math::cos);
+		SimpleNeuralNet parallel = newNetwork(Arrays.asList(2, 3, 1), Math::cos);
+		ParallelTrainer trainer = new ParallelTrainer(parallel, 3, ParallelTrainer.Mode.SYNCHRONOUS);
+
+		try {
+			sequential.trainBatch(INPUTS, TARGETS, 7, 50);
+			trainer.train(INPUTS, TARGETS, 7, 50);
+		} finally {
+			trainer.shutdown();
+		}
+
+		NetworkTestSupport.assertSameWeights(sequential, parallel, 1e-12);
+
+	}
+
+	@Test
+	public void hogwildLearnsOR() {
+
+		SimpleNeuralNet net = newNetwork(Arrays.asList(2, 3, 1), Math::cos);
+		net.setLearningRate(2);
+		ParallelTrainer trainer = new ParallelTrainer(net, 2, ParallelTrainer.Mode.HOGWILD);
+
+		try {
+			trainer.train(INPUTS, TARGETS, 1, 3000);
+		} finally {
+			trainer.shutdown();
+		}
+
+		assertTrue(net.predict(Arrays.asList(new Double[] {0d, 0d})).get(0) < 0.2);
+		assertTrue(net.predict(Arrays.asList(new Double[] {1d, 0d})).get(0) > 0.8);
+
+	}
+}
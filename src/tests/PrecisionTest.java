@@ -0,0 +1,136 @@
+package tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+import neuralnets.MappedModel;
+import neuralnets.ModelSerializer;
+import neuralnets.Precision;
+import neuralnets.SimpleNeuralNet;
+import org.junit.Test;
+import utils.Activations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static tests.NetworkTestSupport.newNetwork;
+
+public class PrecisionTest {
+
+	// Weights that floats hold exactly, so that all precisions start out identical.
+	private static final IntToDoubleFunction WEIGHTS = i -> Math.round(Math.sin(i) * 64) / 64d;
+
+	private static final double[][] INPUTS = ANNUtils.getXORInputs();
+	private static final double[][] TARGETS = ANNUtils.getXORTargets();
+
+	@Test
+	public void floatTrainingFollowsDoubleTraining() {
+
+		SimpleNeuralNet expected = newNetwork(Arrays.asList(2, 3, 1), WEIGHTS);
+		expected.trainBatch(INPUTS, TARGETS, 2, 50);
+
+		for (Precision precision : new Precision[] {Precision.FLOAT, Precision.MIXED}) {
+			SimpleNeuralNet net = newNetwork(Arrays.asList(2, 3, 1), WEIGHTS);
+			net.setPrecision(precision);
+			net.trainBatch(INPUTS, TARGETS, 2, 50);
+
+			NetworkTestSupport.assertSameWeights(expected, net, 1e-4);
+		}
+
+	}
+
+	@Test
+	public void mixedPrecisionKeepsUpdatesTooSmallForFloats() {
+
+		SimpleNeuralNet single = newNetwork(Arrays.asList(2, 3, 1), WEIGHTS);
+		single.setPrecision(Precision.FLOAT);
+		single.setLearningRate(1e-9);
+		single.trainBatch(INPUTS, TARGETS, 4, 1);
+
+		SimpleNeuralNet mixed = newNetwork(Arrays.asList(2, 3, 1), WEIGHTS);
+		mixed.setPrecision(Precision.MIXED);
+		mixed.setLearningRate(1e-9);
+		mixed.trainBatch(INPUTS, TARGETS, 4, 1);
+
+		SimpleNeuralNet initial = newNetwork(Arrays.asList(2, 3, 1), WEIGHTS);
+		for (int l = 0; l < initial.getEdges().size(); l++) {
+			for (int i = 0; i < initial.getEdges().get(l).size(); i++) {
+				double weight = initial.getEdges().get(l).get(i).getWeight();
+				assertEquals(weight, single.getEdges().get(l).get(i).getWeight(), 0);
+				if (l == 1) {
+					assertTrue(weight != mixed.getEdges().get(l).get(i).getWeight());
+				}
+			}
+		}
+
+	}
+
+	@Test
+	public void floatModelsAreHalfTheSizeAndPredictIdentically() throws IOException {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {20, 30, 10}), Activations.TANH);
+		net.setPrecision(Precision.FLOAT);
+		double[][] inputs = new double[4][20];
+		double[][] targets = new double[4][10];
+		for (int i = 0; i < 4; i++) {
+			inputs[i][i] = 1;
+			targets[i][i] = 1;
+		}
+		net.trainBatch(inputs, targets, 2, 5);
+
+		Path floatFile = Files.createTempFile("model", ".nnet");
+		Path doubleFile = Files.createTempFile("model", ".nnet");
+		try {
+			ModelSerializer.save(net, floatFile);
+			net.setPrecision(Precision.DOUBLE);
+			ModelSerializer.save(net, doubleFile);
+
+			assertTrue(Files.size(floatFile) < 0.55 * Files.size(doubleFile));
+
+			SimpleNeuralNet loaded = ModelSerializer.load(floatFile);
+			MappedModel model = ModelSerializer.map(floatFile);
+			List<Double> sample = Arrays.asList(new Double[] {0.3d, -0.2d, 0.9d, 0d, 0d, 0d, 0d, 0d, 0d, 0d, 0d, 0d, 0d,
+					0d, 0d, 0d, 0d, 0d, 0d, 1d});
+			double[] outputs = new double[10];
+			model.predict(sample.stream().mapToDouble(Double::doubleValue).toArray(), outputs,
+					new double[model.getScratchSize()]);
+
+			assertEquals(Precision.FLOAT, loaded.getPrecision());
+			assertEquals(Precision.FLOAT, model.getPrecision());
+			assertEquals(net.predict(sample), loaded.predict(sample));
+			for (int j = 0; j < 10; j++) {
+				assertEquals(net.predict(sample).get(j), outputs[j], 0);
+			}
+		} finally {
+			Files.deleteIfExists(floatFile);
+			Files.deleteIfExists(doubleFile);
+		}
+
+	}
+
+	@Test
+	public void floatModelsRoundTheWeightsToFloat() throws IOException {
+
+		SimpleNeuralNet net = newNetwork(Arrays.asList(2, 3, 1), Math::sin);
+		net.setPrecision(Precision.FLOAT);
+
+		Path file = Files.createTempFile("model", ".nnet");
+		try {
+			ModelSerializer.save(net, file);
+			SimpleNeuralNet loaded = ModelSerializer.load(file);
+
+			for (int l = 0; l < net.getEdges().size(); l++) {
+				for (int i = 0; i < net.getEdges().get(l).size(); i++) {
+					float weight = (float) net.getEdges().get(l).get(i).getWeight();
+					assertEquals(weight, loaded.getEdges().get(l).get(i).getWeight(), 0);
+				}
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+}
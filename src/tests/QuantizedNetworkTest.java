@@ -0,0 +1,160 @@
+package tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+
+import neuralnets.ModelSerializer;
+import neuralnets.QuantizationReport;
+import neuralnets.QuantizedNetwork;
+import neuralnets.SimpleNeuralNet;
+import org.junit.Test;
+import utils.ActivationFunction;
+import utils.Activations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static tests.NetworkTestSupport.newNetwork;
+
+public class QuantizedNetworkTest {
+
+	// A 16x64x10 leaky ReLU network with fixed weights.
+	private static final List<Integer> NODE_CONFIG = Arrays.asList(16, 64, 10);
+	private static final ActivationFunction ACTIVATION = Activations.leakyRelu(0.01);
+	private static final IntToDoubleFunction WEIGHTS = i -> Math.sin(i) / 4;
+
+	@Test
+	public void quantizedOutputsFollowTheNetwork() {
+
+		SimpleNeuralNet net = newNetwork(NODE_CONFIG, ACTIVATION, ACTIVATION, WEIGHTS);
+		double[] samples = flatten(randomRows(200, 2));
+		double[] expected = new double[2000];
+		net.predictBatch(samples, 200, expected);
+		double largest = 0;
+		for (double output : expected) {
+			largest = Math.max(largest, Math.abs(output));
+		}
+
+		QuantizedNetwork quantized = net.quantize(randomRows(200, 1));
+		QuantizationReport report = quantized.evaluate(net.getWeightSnapshot(), samples, 200);
+
+		assertEquals(200, report.getNumOfSamples());
+		assertTrue(report.getMaxAbsoluteError() < 0.01 * largest);
+		assertTrue(report.getAgreement() == 1);
+
+		double[] outputs = new double[10];
+		double[] batchOutputs = new double[20];
+		quantized.predict(Arrays.copyOfRange(samples, 16, 32), outputs);
+		quantized.predictBatch(samples, 2, batchOutputs);
+		assertArrayEquals(outputs, Arrays.copyOfRange(batchOutputs, 10, 20), 0);
+
+	}
+
+	@Test
+	public void quantizedProbabilitiesFollowTheNetwork() {
+
+		SimpleNeuralNet net = newNetwork(NODE_CONFIG, ACTIVATION, ACTIVATION, WEIGHTS);
+		net.setOutputActivationFunction(Activations.SOFTMAX);
+
+		QuantizedNetwork quantized = net.quantize(randomRows(200, 3));
+		QuantizationReport report = quantized.evaluate(net.getWeightSnapshot(), flatten(randomRows(200, 4)), 200);
+
+		assertTrue(report.getMaxAbsoluteError() < 0.05);
+		assertTrue(report.getMeanAbsoluteError() < 0.01);
+		assertTrue(report.getAgreement() >= 0.95);
+
+	}
+
+	@Test
+	public void savedQuantizedNetworksAreAQuarterOfTheSizeAndPredictIdentically() throws IOException {
+
+		SimpleNeuralNet net = newNetwork(NODE_CONFIG, ACTIVATION, ACTIVATION, WEIGHTS);
+		QuantizedNetwork quantized = net.quantize(randomRows(50, 3));
+		double[] samples = flatten(randomRows(20, 4));
+
+		Path quantizedFile = Files.createTempFile("model", ".nnq8");
+		Path doubleFile = Files.createTempFile("model", ".nnet");
+		try {
+			ModelSerializer.save(quantized, quantizedFile);
+			ModelSerializer.save(net, doubleFile);
+
+			assertTrue(Files.size(quantizedFile) < 0.3 * Files.size(doubleFile));
+
+			QuantizedNetwork loaded = ModelSerializer.loadQuantized(quantizedFile);
+			double[] expected = new double[200];
+			double[] actual = new double[200];
+			quantized.predictBatch(samples, 20, expected);
+			loaded.predictBatch(samples, 20, actual);
+
+			assertArrayEquals(expected, actual, 0);
+		} finally {
+			Files.deleteIfExists(quantizedFile);
+			Files.deleteIfExists(doubleFile);
+		}
+
+	}
+
+	@Test
+	public void networkModelsAreNotQuantizedModels() throws IOException {
+
+		Path file = Files.createTempFile("model", ".nnet");
+		try {
+			ModelSerializer.save(newNetwork(NODE_CONFIG, ACTIVATION, ACTIVATION, WEIGHTS), file);
+			ModelSerializer.loadQuantized(file);
+			fail("A network model was loaded as a quantized model");
+		} catch (IOException e) {
+			// Expected.
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+
+	@Test
+	public void quantizedModelsWithTooManyLayersAreRejected() throws IOException {
+
+		QuantizedNetwork quantized = newNetwork(NODE_CONFIG, ACTIVATION, ACTIVATION, WEIGHTS).quantize(randomRows(10, 3));
+		Path file = Files.createTempFile("model", ".nnq8");
+		try {
+			ModelSerializer.save(quantized, file);
+			ModelSerializerTest.setLayerCount(file, Integer.MAX_VALUE / 4);
+			ModelSerializer.loadQuantized(file);
+			fail("A model with more layers than fit in the file was loaded");
+		} catch (IOException e) {
+			// Expected.
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+
+
+	private static double[][] randomRows(int numOfRows, long seed) {
+
+		Random random = new Random(seed);
+		double[][] rows = new double[numOfRows][16];
+		for (double[] row : rows) {
+			for (int k = 0; k < row.length; k++) {
+				row[k] = random.nextDouble();
+			}
+		}
+
+		return rows;
+	}
+
+	private static double[] flatten(double[][] rows) {
+
+		double[] values = new double[rows.length * rows[0].length];
+		for (int i = 0; i < rows.length; i++) {
+			System.arraycopy(rows[i], 0, values, i * rows[i].length, rows[i].length);
+		}
+
+		return values;
+	}
+}
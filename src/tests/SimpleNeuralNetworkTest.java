@@ -36,6 +36,27 @@ public class SimpleNeuralNetworkTest {
 		
 	}
 	
+	@Test
+	public void edgeIndexTest() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 2, 1}));
+		OutputNode outputNode = (OutputNode) net.getOutputNodes().get(0);
+		NodeEdge edge = net.getInputEdgesFor(outputNode).get(0);
+		INode hiddenNode = edge.getFromNode();
+
+		assertTrue(net.getOutputEdgesFor(hiddenNode).contains(edge));
+
+		net.removeEdge(edge);
+		assertEquals(2, net.getInputEdgesFor(outputNode).size());
+		assertEquals(0, net.getOutputEdgesFor(hiddenNode).size());
+		assertEquals(2, net.getEdges().get(1).size());
+
+		net.addEdge(new NodeEdge(1, hiddenNode, outputNode));
+		assertEquals(3, net.getInputEdgesFor(outputNode).size());
+		assertEquals(1, net.getOutputEdgesFor(hiddenNode).size());
+
+	}
+
 	@Test
 	public void settingInputs() {
 		
@@ -54,9 +75,12 @@ public class SimpleNeuralNetworkTest {
 		OutputNode outputNode = (OutputNode) net1.getOutputNodes().get(0);
 		net1.getInputEdgesFor(outputNode).get(0).setWeight(0.3);
 		net1.getInputEdgesFor(outputNode).get(1).setWeight(0.5);
+		// Every node adds the bias value of 1 once per input edge, 3 times in all. A weight of -3 on the edge from
+		// the bias node cancels that, so the net output is the weighted sum of the inputs alone.
+		net1.getInputEdgesFor(outputNode).get(2).setWeight(-3);
 
 		OutputFunction<Double, Double> activationFunction = out -> 1 / (1 + Math.exp(-out));
-		assertEquals(activationFunction.result((Double)0.8d), (Double)net1.output().get(0));
+		assertEquals(activationFunction.result(0.8d), net1.output().get(0), 1e-12);
 		
 		SimpleNeuralNet net2 = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 2, 1}));
 		
@@ -64,6 +88,7 @@ public class SimpleNeuralNetworkTest {
 		OutputNode outputNode1 = (OutputNode) net2.getOutputNodes().get(0);
 		net2.getInputEdgesFor(outputNode1).get(0).setWeight(0.3);
 		net2.getInputEdgesFor(outputNode1).get(1).setWeight(0.5);
+		net2.getInputEdgesFor(outputNode1).get(2).setWeight(-3);
 
 		InputNode input1 = (InputNode) net2.getInputNodes().get(0);
 		InputNode input2 = (InputNode) net2.getInputNodes().get(1);
@@ -75,12 +100,15 @@ public class SimpleNeuralNetworkTest {
 		hiddenEdge2.setWeight(0.5);
 		hiddenEdge3.setWeight(0.3);
 		hiddenEdge4.setWeight(0.3);
+		net2.getInputEdgesFor(hiddenEdge1.getToNode()).get(2).setWeight(-3);
+		net2.getInputEdgesFor(hiddenEdge2.getToNode()).get(2).setWeight(-3);
 		
 		double expected = activationFunction.result(activationFunction.result(0.8) * 0.3 + activationFunction.result(0.8) * 0.5);
-		assertEquals((Double)0.8d, ((HiddenNode)hiddenEdge1.getToNode()).netOutput());
-		assertEquals((Double)0.8d, ((HiddenNode)hiddenEdge2.getToNode()).netOutput());
-		assertEquals((Double)(activationFunction.result(0.8d) * 0.3d + activationFunction.result(0.8d) * 0.5d), outputNode1.netOutput());
-		assertEquals((Double) expected, outputNode1.output());
+		assertEquals(0.8d, ((HiddenNode)hiddenEdge1.getToNode()).netOutput(), 1e-12);
+		assertEquals(0.8d, ((HiddenNode)hiddenEdge2.getToNode()).netOutput(), 1e-12);
+		assertEquals(activationFunction.result(0.8d) * 0.3d + activationFunction.result(0.8d) * 0.5d,
+				outputNode1.netOutput(), 1e-12);
+		assertEquals(expected, outputNode1.output(), 1e-12);
 	}
 
 	@Test
@@ -132,6 +160,26 @@ public class SimpleNeuralNetworkTest {
 	}
 
 	
+	@Test
+	public void backwardPassTest() {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[]{2, 2, 1}));
+
+		NodeEdge w1 = net.getEdges().get(0).get(0);
+		NodeEdge w5 = net.getEdges().get(1).get(0);
+		HiddenNode h1 = (HiddenNode) w1.getToNode();
+
+		double output = net.predict(Arrays.asList(new Double[]{0.05, 0.10})).get(0);
+		net.backpropagate(1d, output);
+
+		double outputDelta = -(1d - output) * output * (1 - output);
+		assertEquals(outputDelta * h1.output(), w5.getError(), 1e-15);
+
+		double hiddenDelta = outputDelta * w5.getWeight() * h1.output() * (1 - h1.output());
+		assertEquals(hiddenDelta * 0.05, w1.getError(), 1e-15);
+
+	}
+
 	@Test
 	public void trainTest() {
 		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 2, 1}));
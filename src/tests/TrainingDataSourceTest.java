@@ -0,0 +1,182 @@
+package tests;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import neuralnets.SimpleNeuralNet;
+import neuralnets.data.ArrayDataSource;
+import neuralnets.data.BinaryDataSource;
+import neuralnets.data.CsvDataSource;
+import neuralnets.data.PrefetchingDataSource;
+import neuralnets.data.ShufflingDataSource;
+import neuralnets.data.TrainingDataSource;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TrainingDataSourceTest {
+
+	// The XOR samples and a duplicate of the last one. Duplicate samples are kept.
+	private static final double[][] INPUTS = withLastRepeated(ANNUtils.getXORInputs());
+	private static final double[][] TARGETS = withLastRepeated(ANNUtils.getXORTargets());
+
+	@Test
+	public void csvSourceReadsSamplesInOrder() throws IOException {
+
+		Path file = Files.createTempFile("samples", ".csv");
+		Files.write(file, Arrays.asList("# x1, x2, y", "0,0,0", "0,1,1", "", "1,0,1", "1, 1, 0", "1,1,0"),
+				StandardCharsets.UTF_8);
+
+		try (TrainingDataSource source = new CsvDataSource(file, 2, 1)) {
+			assertSamples(source);
+		} finally {
+			Files.delete(file);
+		}
+
+	}
+
+	@Test
+	public void binarySourceReadsSamplesInOrder() throws IOException {
+
+		Path file = Files.createTempFile("samples", ".bin");
+		BinaryDataSource.write(file, INPUTS, TARGETS);
+
+		try (TrainingDataSource source = new BinaryDataSource(file, 2, 1)) {
+			assertSamples(source);
+		} finally {
+			Files.delete(file);
+		}
+
+	}
+
+	@Test
+	public void shufflingKeepsEverySample() throws IOException {
+
+		TrainingDataSource source = new ShufflingDataSource(new ArrayDataSource(INPUTS, TARGETS), 3, new Random(1));
+		double[] inputs = new double[10];
+		double[] targets = new double[5];
+
+		assertEquals(5, source.read(inputs, targets, 5));
+
+		// Each input still has its own target.
+		double inputSum = 0;
+		for (int i = 0; i < 5; i++) {
+			assertEquals(inputs[2 * i] == inputs[2 * i + 1] ? 0 : 1, targets[i], 0);
+			inputSum += inputs[2 * i] + inputs[2 * i + 1];
+		}
+		assertEquals(6, inputSum, 0);
+
+	}
+
+	@Test
+	public void trainingFromSourceMatchesTrainingFromArrays() throws IOException {
+
+		SimpleNeuralNet net1 = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+		SimpleNeuralNet net2 = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+		for (int l = 0; l < net1.getEdges().size(); l++) {
+			for (int i = 0; i < net1.getEdges().get(l).size(); i++) {
+				net2.getEdges().get(l).get(i).setWeight(net1.getEdges().get(l).get(i).getWeight());
+			}
+		}
+
+		net1.trainBatch(INPUTS, TARGETS, 2, 50);
+		net2.trainBatch(new ArrayDataSource(INPUTS, TARGETS), 2, 50);
+
+		List<Double> inputs = Arrays.asList(new Double[] {0d, 1d});
+		assertEquals(net1.predict(inputs), net2.predict(inputs));
+
+	}
+
+	@Test
+	public void prefetchingReadsEverySampleInOrder() throws IOException {
+
+		double[][] inputs = new double[1000][];
+		double[][] targets = new double[1000][];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = new double[] {i, -i};
+			targets[i] = new double[] {2 * i};
+		}
+
+		// Halves the inputs in the background.
+		try (TrainingDataSource source = new PrefetchingDataSource(new ArrayDataSource(inputs, targets), 64, 3,
+				(batchInputs, batchTargets, numOfSamples) -> {
+					for (int i = 0; i < 2 * numOfSamples; i++) {
+						batchInputs[i] /= 2;
+					}
+				})) {
+
+			double[] batchInputs = new double[2 * 100];
+			double[] batchTargets = new double[100];
+
+			// Stop early once to check a reset discards the rest of the pass.
+			assertEquals(100, source.read(batchInputs, batchTargets, 100));
+			source.reset();
+
+			int total = 0;
+			int read;
+			while ((read = source.read(batchInputs, batchTargets, 100)) > 0) {
+				for (int j = 0; j < read; j++) {
+					assertEquals((total + j) / 2d, batchInputs[2 * j], 0);
+					assertEquals(2 * (total + j), batchTargets[j], 0);
+				}
+				total += read;
+			}
+			assertEquals(1000, total);
+		}
+
+	}
+
+	@Test
+	public void trainingFromPrefetcherMatchesTrainingFromArrays() throws IOException {
+
+		SimpleNeuralNet net1 = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+		SimpleNeuralNet net2 = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+		for (int l = 0; l < net1.getEdges().size(); l++) {
+			for (int i = 0; i < net1.getEdges().get(l).size(); i++) {
+				net2.getEdges().get(l).get(i).setWeight(net1.getEdges().get(l).get(i).getWeight());
+			}
+		}
+
+		net1.trainBatch(INPUTS, TARGETS, 2, 50);
+		try (TrainingDataSource source = new PrefetchingDataSource(new ArrayDataSource(INPUTS, TARGETS), 2, 2)) {
+			net2.trainBatch(source, 2, 50);
+		}
+
+		List<Double> inputs = Arrays.asList(new Double[] {0d, 1d});
+		assertEquals(net1.predict(inputs), net2.predict(inputs));
+
+	}
+
+	// Reads the samples in batches of two, twice over.
+	private static void assertSamples(TrainingDataSource source) throws IOException {
+
+		double[] inputs = new double[4];
+		double[] targets = new double[2];
+
+		for (int pass = 0; pass < 2; pass++) {
+			source.reset();
+			for (int i = 0; i < INPUTS.length; i += 2) {
+				int expected = Math.min(2, INPUTS.length - i);
+				assertEquals(expected, source.read(inputs, targets, 2));
+				for (int j = 0; j < expected; j++) {
+					assertArrayEquals(INPUTS[i + j], Arrays.copyOfRange(inputs, 2 * j, 2 * j + 2), 0);
+					assertEquals(TARGETS[i + j][0], targets[j], 0);
+				}
+			}
+			assertEquals(0, source.read(inputs, targets, 2));
+		}
+
+	}
+
+	private static double[][] withLastRepeated(double[][] rows) {
+		double[][] repeated = Arrays.copyOf(rows, rows.length + 1);
+		repeated[rows.length] = rows[rows.length - 1].clone();
+		return repeated;
+	}
+}
@@ -0,0 +1,87 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import neuralnets.SimpleNeuralNet;
+import neuralnets.TrainingMetrics;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class TrainingMonitorTest {
+
+	private static final double[][] INPUTS = ANNUtils.getXORInputs();
+	private static final double[][] TARGETS = ANNUtils.getXORTargets();
+
+	@Test
+	public void listenersReceiveEveryEpochOffTheTrainingThread() throws InterruptedException {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+		List<TrainingMetrics> metrics = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		CountDownLatch finished = new CountDownLatch(20);
+
+		net.getTrainingMonitor().addListener((epoch, data) -> {
+			synchronized (metrics) {
+				metrics.add(data);
+				threads.add(Thread.currentThread());
+			}
+			finished.countDown();
+		});
+		net.trainBatch(INPUTS, TARGETS, 3, 20);
+
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		synchronized (metrics) {
+			for (int i = 0; i < metrics.size(); i++) {
+				TrainingMetrics epoch = metrics.get(i);
+				assertEquals(i + 1, epoch.getEpoch());
+				assertEquals(4, epoch.getNumOfSamples());
+				assertTrue(epoch.getLoss() >= 0);
+				assertTrue(epoch.getSamplesPerSecond() > 0);
+				assertTrue(epoch.getGradientNorm() >= 0);
+				assertTrue(epoch.getForwardNanos() + epoch.getBackwardNanos() + epoch.getUpdateNanos()
+						<= epoch.getElapsedNanos());
+				assertNotSame(Thread.currentThread(), threads.get(i));
+			}
+		}
+
+	}
+
+	@Test
+	public void graphTrainingReportsLoss() throws InterruptedException {
+
+		SimpleNeuralNet net = new SimpleNeuralNet(Arrays.asList(new Integer[] {2, 3, 1}));
+		Map<List<Double>, List<Double>> samples = new HashMap<>();
+		for (int i = 0; i < INPUTS.length; i++) {
+			samples.put(Arrays.asList(INPUTS[i][0], INPUTS[i][1]), Arrays.asList(TARGETS[i][0]));
+		}
+
+		List<Double> losses = new ArrayList<>();
+		CountDownLatch finished = new CountDownLatch(5);
+
+		net.getTrainingMonitor().addListener((epoch, data) -> {
+			synchronized (losses) {
+				losses.add(data.getLoss());
+			}
+			finished.countDown();
+		});
+		net.train(samples, 5);
+
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		synchronized (losses) {
+			assertEquals(5, losses.size());
+			for (double loss : losses) {
+				assertTrue(loss >= 0);
+			}
+		}
+
+	}
+}
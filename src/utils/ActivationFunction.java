@@ -0,0 +1,147 @@
+package utils;
+
+/**
+ * An activation function over primitive doubles, paired with its derivative. The derivative is expressed in
+ * terms of the output of the function, which is what the backward pass has at hand.
+ *
+ * It is also an {@link OutputFunction} so it can be used wherever one is expected.
+ */
+public interface ActivationFunction extends OutputFunction<Double, Double> {
+
+	/**
+	 * Applies the function to a single value.
+	 *
+	 * @param x
+	 *            The net output of a node.
+	 * @return Returns the output of the node.
+	 */
+	double apply(double x);
+
+	/**
+	 * Returns the derivative of the function at the point where it produced the given output.
+	 *
+	 * @param output
+	 *            An output of the function.
+	 * @return Returns the derivative of the function at that output.
+	 */
+	double derivative(double output);
+
+	/**
+	 * Returns the error term of a node, that is the error flowing into it times the derivative at its output.
+	 *
+	 * @param error
+	 *            The error with respect to the output of the node.
+	 * @param output
+	 *            The output of the node.
+	 * @return Returns the error with respect to the net output of the node.
+	 */
+	default double delta(double error, double output) {
+		return error * derivative(output);
+	}
+
+	/**
+	 * Returns true if the output of a node depends on its own net output only. Functions over a whole layer,
+	 * such as softmax, return false and must be applied to the layer at once with
+	 * {@link #applyInPlace(double[], int, int)}.
+	 *
+	 * @return Returns true if the function applies to each value on its own.
+	 */
+	default boolean isElementwise() {
+		return true;
+	}
+
+	/**
+	 * Applies the function to a range of values, in place. Functions over a whole layer, such as softmax, treat
+	 * the range as one layer.
+	 *
+	 * @param values
+	 *            The array holding the net outputs.
+	 * @param from
+	 *            The index of the first value.
+	 * @param to
+	 *            The index after the last value.
+	 */
+	default void applyInPlace(double[] values, int from, int to) {
+		for (int i = from; i < to; i++) {
+			values[i] = apply(values[i]);
+		}
+	}
+
+	/**
+	 * Turns a range of errors into error terms, in place, using the outputs at the same positions. Functions
+	 * over a whole layer treat the range as one layer.
+	 *
+	 * @param errors
+	 *            The errors with respect to the outputs, replaced by the error terms.
+	 * @param outputs
+	 *            The outputs of the function.
+	 * @param from
+	 *            The index of the first value.
+	 * @param to
+	 *            The index after the last value.
+	 */
+	default void deltaInPlace(double[] errors, double[] outputs, int from, int to) {
+		for (int i = from; i < to; i++) {
+			errors[i] = delta(errors[i], outputs[i]);
+		}
+	}
+
+	/**
+	 * Applies the function to a range of floats, in place, computing each value in double.
+	 *
+	 * @see #applyInPlace(double[], int, int)
+	 */
+	default void applyInPlace(float[] values, int from, int to) {
+		for (int i = from; i < to; i++) {
+			values[i] = (float) apply(values[i]);
+		}
+	}
+
+	/**
+	 * Turns a range of float errors into error terms, in place, computing each value in double.
+	 *
+	 * @see #deltaInPlace(double[], double[], int, int)
+	 */
+	default void deltaInPlace(float[] errors, float[] outputs, int from, int to) {
+		for (int i = from; i < to; i++) {
+			errors[i] = (float) delta(errors[i], outputs[i]);
+		}
+	}
+
+	@Override
+	default Double result(Double neuralNetOutput) {
+		return apply(neuralNetOutput);
+	}
+
+	/**
+	 * Adapts an output function into an activation function. The derivative is the one of the logistic
+	 * function, which is what the network assumed before activation functions came with their derivative.
+	 *
+	 * @param outputFunction
+	 *            The function to adapt.
+	 * @return Returns the function itself if it already is an activation function, or an adapter.
+	 */
+	static ActivationFunction from(OutputFunction<Double, Double> outputFunction) {
+
+		if (outputFunction instanceof ActivationFunction) {
+			return (ActivationFunction) outputFunction;
+		}
+
+		return new ActivationFunction() {
+			@Override
+			public double apply(double x) {
+				return outputFunction.result(x);
+			}
+
+			@Override
+			public double derivative(double output) {
+				return output * (1 - output);
+			}
+
+			@Override
+			public double delta(double error, double output) {
+				return error * output * (1 - output);
+			}
+		};
+	}
+}
@@ -0,0 +1,288 @@
+package utils;
+
+/**
+ * The activation functions supported by the networks.
+ */
+public final class Activations {
+
+	/**
+	 * The logistic function 1 / (1 + e^-x).
+	 */
+	public static final ActivationFunction SIGMOID = new ActivationFunction() {
+		@Override
+		public double apply(double x) {
+			return 1 / (1 + Math.exp(-x));
+		}
+
+		@Override
+		public double derivative(double output) {
+			return output * (1 - output);
+		}
+
+		@Override
+		public double delta(double error, double output) {
+			return error * output * (1 - output);
+		}
+
+		@Override
+		public String toString() {
+			return "sigmoid";
+		}
+	};
+
+	/**
+	 * The hyperbolic tangent.
+	 */
+	public static final ActivationFunction TANH = new ActivationFunction() {
+		@Override
+		public double apply(double x) {
+			return Math.tanh(x);
+		}
+
+		@Override
+		public double derivative(double output) {
+			return 1 - output * output;
+		}
+
+		@Override
+		public String toString() {
+			return "tanh";
+		}
+	};
+
+	/**
+	 * The rectified linear unit max(0, x).
+	 */
+	public static final ActivationFunction RELU = leakyRelu(0);
+
+	/**
+	 * The softmax function. It normalizes a whole layer so that its outputs sum to 1, so it is applied with
+	 * {@link ActivationFunction#applyInPlace(double[], int, int)}; applied to a single value it is the softmax
+	 * of a layer of one node, which is 1.
+	 *
+	 * It is meant for the output layer, paired with the cross-entropy loss -sum(t * log(y)). The gradient of that
+	 * loss with respect to the net output of a node is y - t, which is exactly the error the network passes in,
+	 * so the error term of each node is its error. The Jacobian of the softmax never has to be formed.
+	 */
+	public static final ActivationFunction SOFTMAX = new ActivationFunction() {
+		@Override
+		public double apply(double x) {
+			return 1;
+		}
+
+		@Override
+		public boolean isElementwise() {
+			return false;
+		}
+
+		/**
+		 * Returns the diagonal term y(1 - y) of the Jacobian. Error terms do not use it; see {@link #delta}.
+		 */
+		@Override
+		public double derivative(double output) {
+			return output * (1 - output);
+		}
+
+		@Override
+		public double delta(double error, double output) {
+			return error;
+		}
+
+		@Override
+		public void applyInPlace(double[] values, int from, int to) {
+
+			double max = Double.NEGATIVE_INFINITY;
+			for (int i = from; i < to; i++) {
+				max = Math.max(max, values[i]);
+			}
+
+			// Subtracting the maximum keeps exp from overflowing without changing the result.
+			double sum = 0;
+			for (int i = from; i < to; i++) {
+				values[i] = Math.exp(values[i] - max);
+				sum += values[i];
+			}
+
+			for (int i = from; i < to; i++) {
+				values[i] /= sum;
+			}
+		}
+
+		@Override
+		public void applyInPlace(float[] values, int from, int to) {
+
+			float max = Float.NEGATIVE_INFINITY;
+			for (int i = from; i < to; i++) {
+				max = Math.max(max, values[i]);
+			}
+
+			double sum = 0;
+			for (int i = from; i < to; i++) {
+				values[i] = (float) Math.exp(values[i] - max);
+				sum += values[i];
+			}
+
+			for (int i = from; i < to; i++) {
+				values[i] /= sum;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "softmax";
+		}
+	};
+
+	/**
+	 * The logistic function read from a table of 4096 intervals over [-16, 16]. Within 1e-6 of {@link #SIGMOID}
+	 * everywhere: interpolation is off by at most 0.0963 * (1/128)^2 / 8 = 7.4e-7, and outside the table the
+	 * function is within e^-16 = 1.2e-7 of its end values.
+	 */
+	public static final LookupTableActivation FAST_SIGMOID = new LookupTableActivation(SIGMOID, -16, 16, 4096,
+			1e-6, "fastSigmoid");
+
+	/**
+	 * The hyperbolic tangent read from a table of 4096 intervals over [-10, 10]. Within 3e-6 of {@link #TANH}
+	 * everywhere: interpolation is off by at most 0.770 * (1/204.8)^2 / 8 = 2.3e-6, and outside the table the
+	 * function is within 2 * e^-20 = 4.2e-9 of its end values.
+	 */
+	public static final LookupTableActivation FAST_TANH = new LookupTableActivation(TANH, -10, 10, 4096, 3e-6,
+			"fastTanh");
+
+	private Activations() {
+	}
+
+	/**
+	 * Returns the number identifying a function in saved models.
+	 *
+	 * @param function
+	 *            One of the functions of this class.
+	 * @return Returns the number identifying the function.
+	 * @throws IllegalArgumentException
+	 *             If the function is not one of the functions of this class.
+	 */
+	public static int getId(ActivationFunction function) {
+
+		if (function == SIGMOID) {
+			return 0;
+		} else if (function == TANH) {
+			return 1;
+		} else if (function instanceof LeakyRelu) {
+			return ((LeakyRelu) function).slope == 0 ? 2 : 3;
+		} else if (function == SOFTMAX) {
+			return 4;
+		} else if (function == FAST_SIGMOID) {
+			return 5;
+		} else if (function == FAST_TANH) {
+			return 6;
+		}
+
+		throw new IllegalArgumentException("Unknown activation function " + function);
+	}
+
+	/**
+	 * Returns the parameter of a function that has one, such as the slope of a leaky ReLU, or 0.
+	 *
+	 * @param function
+	 *            One of the functions of this class.
+	 * @return Returns the parameter of the function.
+	 */
+	public static double getParameter(ActivationFunction function) {
+		return function instanceof LeakyRelu ? ((LeakyRelu) function).slope : 0;
+	}
+
+	/**
+	 * Returns the function identified by a number from {@link #getId(ActivationFunction)}.
+	 *
+	 * @param id
+	 *            The number identifying the function.
+	 * @param parameter
+	 *            The parameter of the function, if it has one.
+	 * @return Returns the function.
+	 * @throws IllegalArgumentException
+	 *             If no function has the number.
+	 */
+	public static ActivationFunction fromId(int id, double parameter) {
+
+		switch (id) {
+		case 0:
+			return SIGMOID;
+		case 1:
+			return TANH;
+		case 2:
+			return RELU;
+		case 3:
+			return leakyRelu(parameter);
+		case 4:
+			return SOFTMAX;
+		case 5:
+			return FAST_SIGMOID;
+		case 6:
+			return FAST_TANH;
+		default:
+			throw new IllegalArgumentException("Unknown activation function id " + id);
+		}
+	}
+
+	/**
+	 * Returns the leaky rectified linear unit, which is x for positive x and slope * x otherwise.
+	 *
+	 * @param slope
+	 *            The slope for negative inputs. Must not be negative.
+	 * @return Returns the leaky rectified linear unit with the given slope.
+	 * @throws IllegalArgumentException
+	 *             If the slope is negative.
+	 */
+	public static ActivationFunction leakyRelu(double slope) {
+
+		if (slope < 0) {
+			throw new IllegalArgumentException("Slope must not be negative");
+		}
+
+		return new LeakyRelu(slope);
+	}
+
+	private static final class LeakyRelu implements ActivationFunction {
+
+		private final double slope;
+
+		LeakyRelu(double slope) {
+			this.slope = slope;
+		}
+
+		@Override
+		public double apply(double x) {
+			return x > 0 ? x : slope * x;
+		}
+
+		@Override
+		public double derivative(double output) {
+			return output > 0 ? 1 : slope;
+		}
+
+		@Override
+		public void applyInPlace(double[] values, int from, int to) {
+			Kernels.get().leakyRelu(values, from, to, slope);
+		}
+
+		@Override
+		public void deltaInPlace(double[] errors, double[] outputs, int from, int to) {
+			Kernels.get().leakyReluDelta(errors, outputs, from, to, slope);
+		}
+
+		@Override
+		public void applyInPlace(float[] values, int from, int to) {
+			Kernels.get().leakyRelu(values, from, to, (float) slope);
+		}
+
+		@Override
+		public void deltaInPlace(float[] errors, float[] outputs, int from, int to) {
+			Kernels.get().leakyReluDelta(errors, outputs, from, to, (float) slope);
+		}
+
+		@Override
+		public String toString() {
+			return slope == 0 ? "relu" : "leakyRelu(" + slope + ")";
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package utils;
+
+/**
+ * Chooses the kernels returned by {@link Kernels#get()} when the class is initialized. The SIMD kernels are
+ * loaded by reflection, so the rest of the library never links against the Vector API and runs on JVMs started
+ * without it.
+ */
+final class KernelSelector {
+
+	static final Kernels KERNELS = select();
+
+	private KernelSelector() {
+	}
+
+	private static Kernels select() {
+
+		if ("scalar".equals(System.getProperty("neuralnets.kernels"))) {
+			return ScalarKernels.INSTANCE;
+		}
+
+		try {
+			return (Kernels) Class.forName("utils.VectorKernels").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// The jdk.incubator.vector module is not in the boot layer, or the CPU has no vectors of doubles.
+			return ScalarKernels.INSTANCE;
+		}
+	}
+}
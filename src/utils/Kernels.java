@@ -0,0 +1,195 @@
+package utils;
+
+/**
+ * The numerical kernels the dense layers run on: dot products, axpy, matrix-vector and matrix-matrix products and
+ * the element-wise leaky ReLU, over contiguous row-major arrays of doubles and, for float precision, of floats.
+ * Quantized networks take dot products of 8-bit integers.
+ *
+ * Two implementations exist. {@link #scalar()} is plain Java loops and is always available. A SIMD implementation
+ * built on the incubating Vector API is used when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}; it processes as many values per instruction as the widest vector
+ * the CPU supports. {@link #get()} returns the implementation chosen when the class was first used. Setting the
+ * system property "neuralnets.kernels" to "scalar" forces the scalar kernels.
+ *
+ * The axpy, leaky ReLU and integer dot product kernels of both implementations give identical results. The
+ * floating-point dot products and the products built on them sum in a different order, so they agree only up to
+ * rounding.
+ */
+public interface Kernels {
+
+	/**
+	 * Returns the kernels chosen at startup: the SIMD kernels if the Vector API is available, the scalar ones
+	 * otherwise.
+	 *
+	 * @return Returns the kernels chosen at startup.
+	 */
+	static Kernels get() {
+		return KernelSelector.KERNELS;
+	}
+
+	/**
+	 * Returns the scalar kernels.
+	 *
+	 * @return Returns the scalar kernels.
+	 */
+	static Kernels scalar() {
+		return ScalarKernels.INSTANCE;
+	}
+
+	/**
+	 * Returns the sum of the products of two ranges of values.
+	 *
+	 * @param a
+	 *            The first array.
+	 * @param aOffset
+	 *            The index of the first value in a.
+	 * @param b
+	 *            The second array.
+	 * @param bOffset
+	 *            The index of the first value in b.
+	 * @param length
+	 *            The number of values.
+	 * @return Returns the dot product of the ranges.
+	 */
+	double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+	/**
+	 * Adds a multiple of a range of values to another range, y += alpha * x.
+	 *
+	 * @param alpha
+	 *            The multiple of x to add.
+	 * @param x
+	 *            The array holding the values added.
+	 * @param xOffset
+	 *            The index of the first value in x.
+	 * @param y
+	 *            The array added to.
+	 * @param yOffset
+	 *            The index of the first value in y.
+	 * @param length
+	 *            The number of values.
+	 */
+	void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+	/**
+	 * Multiplies a matrix by a vector, y = A * x.
+	 *
+	 * @param a
+	 *            The row-major matrix.
+	 * @param rows
+	 *            The number of rows of A, which is the number of values written to y.
+	 * @param columns
+	 *            The number of columns of A, which is the number of values read from x.
+	 * @param x
+	 *            The array holding the vector.
+	 * @param xOffset
+	 *            The index of the first value of the vector.
+	 * @param y
+	 *            The array the result is written to.
+	 * @param yOffset
+	 *            The index the result is written from.
+	 */
+	void gemv(double[] a, int rows, int columns, double[] x, int xOffset, double[] y, int yOffset);
+
+	/**
+	 * Computes rows [fromRow, toRow) of C += A * B, where B is given transposed so that both operands are read
+	 * sequentially.
+	 *
+	 * @param a
+	 *            The row-major left operand, with aColumns columns.
+	 * @param bt
+	 *            The transpose of the right operand, row-major with aColumns columns.
+	 * @param c
+	 *            The row-major result, with bColumns columns.
+	 * @param aColumns
+	 *            The number of columns of A, which is the number of rows of B.
+	 * @param bColumns
+	 *            The number of columns of B.
+	 * @param fromRow
+	 *            The first row of C to compute.
+	 * @param toRow
+	 *            The row after the last row of C to compute.
+	 */
+	void gemm(double[] a, double[] bt, double[] c, int aColumns, int bColumns, int fromRow, int toRow);
+
+	/**
+	 * Applies the leaky rectified linear unit to a range of values, in place.
+	 *
+	 * @param values
+	 *            The array holding the values.
+	 * @param from
+	 *            The index of the first value.
+	 * @param to
+	 *            The index after the last value.
+	 * @param slope
+	 *            The slope for values that are not positive.
+	 */
+	void leakyRelu(double[] values, int from, int to, double slope);
+
+	/**
+	 * Multiplies a range of errors by the derivative of the leaky rectified linear unit at the outputs at the
+	 * same positions, in place.
+	 *
+	 * @param errors
+	 *            The errors, replaced by the error terms.
+	 * @param outputs
+	 *            The outputs of the function.
+	 * @param from
+	 *            The index of the first value.
+	 * @param to
+	 *            The index after the last value.
+	 * @param slope
+	 *            The slope for outputs that are not positive.
+	 */
+	void leakyReluDelta(double[] errors, double[] outputs, int from, int to, double slope);
+
+	/**
+	 * Returns the sum of the products of two ranges of floats, accumulated in float.
+	 *
+	 * @see #dot(double[], int, double[], int, int)
+	 */
+	float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+	/**
+	 * Adds a multiple of a range of floats to another range, y += alpha * x.
+	 *
+	 * @see #axpy(double, double[], int, double[], int, int)
+	 */
+	void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+	/**
+	 * Computes rows [fromRow, toRow) of C += A * B over floats, where B is given transposed.
+	 *
+	 * @see #gemm(double[], double[], double[], int, int, int, int)
+	 */
+	void gemm(float[] a, float[] bt, float[] c, int aColumns, int bColumns, int fromRow, int toRow);
+
+	/**
+	 * Applies the leaky rectified linear unit to a range of floats, in place.
+	 *
+	 * @see #leakyRelu(double[], int, int, double)
+	 */
+	void leakyRelu(float[] values, int from, int to, float slope);
+
+	/**
+	 * Multiplies a range of float errors by the derivative of the leaky rectified linear unit, in place.
+	 *
+	 * @see #leakyReluDelta(double[], double[], int, int, double)
+	 */
+	void leakyReluDelta(float[] errors, float[] outputs, int from, int to, float slope);
+
+	/**
+	 * Returns the sum of the products of two ranges of 8-bit integers, accumulated exactly in an int. The sum
+	 * cannot overflow for fewer than 2^17 values.
+	 *
+	 * @see #dot(double[], int, double[], int, int)
+	 */
+	int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+	/**
+	 * Returns the name of the implementation, with the vector width for SIMD kernels.
+	 *
+	 * @return Returns the name of the implementation.
+	 */
+	String getName();
+}
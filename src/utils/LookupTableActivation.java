@@ -0,0 +1,105 @@
+package utils;
+
+/**
+ * An activation function approximated by linear interpolation in a table of values precomputed over a range.
+ * Outside the range the function is taken to be constant at the value of the nearest end, so it suits
+ * functions that saturate, like the logistic function and tanh.
+ *
+ * For a function f with |f''| at most M, a table with intervals of width h is within M * h^2 / 8 of f inside
+ * the range, and within the distance from f to its end values outside it. The derivative is the exact one of
+ * the approximated function, evaluated at the output.
+ */
+public class LookupTableActivation implements ActivationFunction {
+
+	private final ActivationFunction function;
+	private final double min;
+	private final double scale;
+	private final int size;
+	private final double[] values;
+	private final double[] slopes;
+	private final double maxError;
+	private final String name;
+
+	/**
+	 * Builds a lookup table for a function.
+	 *
+	 * @param function
+	 *            The function to approximate.
+	 * @param min
+	 *            The start of the range covered by the table.
+	 * @param max
+	 *            The end of the range covered by the table.
+	 * @param size
+	 *            The number of intervals in the table.
+	 * @param maxError
+	 *            The maximum absolute error of the approximation, as documented to callers.
+	 * @param name
+	 *            The name of the function.
+	 * @throws IllegalArgumentException
+	 *             If the range is empty or the size is not positive.
+	 */
+	public LookupTableActivation(ActivationFunction function, double min, double max, int size, double maxError,
+			String name) {
+
+		if (!(max > min) || size < 1) {
+			throw new IllegalArgumentException("Table needs a non-empty range and at least one interval");
+		}
+
+		this.function = function;
+		this.min = min;
+		this.scale = size / (max - min);
+		this.size = size;
+		this.maxError = maxError;
+		this.name = name;
+
+		values = new double[size + 1];
+		slopes = new double[size];
+
+		for (int i = 0; i <= size; i++) {
+			values[i] = function.apply(min + i / scale);
+		}
+		for (int i = 0; i < size; i++) {
+			slopes[i] = values[i + 1] - values[i];
+		}
+	}
+
+	@Override
+	public double apply(double x) {
+
+		double t = (x - min) * scale;
+
+		if (t <= 0) {
+			return values[0];
+		}
+		if (t >= size) {
+			return values[size];
+		}
+
+		int i = (int) t;
+		return values[i] + slopes[i] * (t - i);
+	}
+
+	@Override
+	public double derivative(double output) {
+		return function.derivative(output);
+	}
+
+	@Override
+	public double delta(double error, double output) {
+		return function.delta(error, output);
+	}
+
+	/**
+	 * Returns the maximum absolute difference between this function and the one it approximates.
+	 *
+	 * @return Returns the maximum absolute error of the approximation.
+	 */
+	public double getMaxError() {
+		return maxError;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
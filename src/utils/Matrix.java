@@ -2,10 +2,20 @@ package utils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Matrix {
 
-	private Double[][] matrix;
+	// Size of the square tiles used by transpose. 64 x 64 doubles is 32KB, so a tile fits in L2.
+	private static final int BLOCK_SIZE = 64;
+
+	/**
+	 * Default number of multiply-adds below which parallelMult computes the product sequentially.
+	 */
+	public static final long DEFAULT_PARALLEL_THRESHOLD = 1L << 18;
+
+	private double[] matrix;
 	private int numOfRows;
 	private int numOfCols;
 
@@ -22,12 +32,7 @@ public class Matrix {
 		this.numOfRows = numOfRows;
 		this.numOfCols = numOfCols;
 
-		matrix = new Double[numOfRows][numOfCols];
-		for (int i = 0; i < numOfRows; i++) {
-			for (int j = 0; j < numOfCols; j++) {
-				matrix[i][j] = 0d;
-			}
-		}
+		matrix = new double[numOfRows * numOfCols];
 
 	}
 
@@ -43,11 +48,63 @@ public class Matrix {
 	 * 
 	 */
 	public Matrix(Double[][] matrix, int numOfRows, int numOfCols) {
+		this(numOfRows, numOfCols);
+
+		for (int i = 0; i < numOfRows; i++) {
+			for (int j = 0; j < numOfCols; j++) {
+				this.matrix[i * numOfCols + j] = matrix[i][j];
+			}
+		}
+	}
+
+	/**
+	 * Constructor used to wrap a filled row-major array. The array is not copied.
+	 *
+	 * @param matrix
+	 *            A row-major array of numOfRows * numOfCols values.
+	 * @param numOfRows
+	 *            The number of rows of the matrix.
+	 * @param numOfCols
+	 *            The number of columns of the matrix.
+	 * @throws IllegalArgumentException
+	 *             If the array does not have numOfRows * numOfCols values.
+	 */
+	public Matrix(double[] matrix, int numOfRows, int numOfCols) {
+
+		if (matrix.length != numOfRows * numOfCols) {
+			throw new IllegalArgumentException("Array of length " + matrix.length + " cannot hold a " + numOfRows
+					+ "x" + numOfCols + " matrix.");
+		}
+
 		this.numOfRows = numOfRows;
 		this.numOfCols = numOfCols;
 		this.matrix = matrix;
 	}
 
+	/**
+	 * Constructs a matrix by copying a range of rows of a 2D array.
+	 *
+	 * @param rows
+	 *            The array holding the rows. Only the first numOfCols values of each row are copied.
+	 * @param fromRow
+	 *            The index of the first row to copy.
+	 * @param numOfRows
+	 *            The number of rows to copy.
+	 * @param numOfCols
+	 *            The number of columns of the matrix.
+	 * @return Returns a new numOfRows x numOfCols matrix.
+	 */
+	public static Matrix fromRows(double[][] rows, int fromRow, int numOfRows, int numOfCols) {
+
+		double[] matrix = new double[numOfRows * numOfCols];
+
+		for (int i = 0; i < numOfRows; i++) {
+			System.arraycopy(rows[fromRow + i], 0, matrix, i * numOfCols, numOfCols);
+		}
+
+		return new Matrix(matrix, numOfRows, numOfCols);
+	}
+
 	/**
 	 * Constructs a matrix from a list of rows and a list of columns.
 	 * 
@@ -65,11 +122,11 @@ public class Matrix {
 		List<Double> all = cols;
 		all.addAll(rows);
 
-		matrix = new Double[numOfRows][numOfCols];
+		matrix = new double[numOfRows * numOfCols];
 
 		for (int i = 0; i < numOfRows; i++) {
 			for (int j = 0; j < numOfCols; j++) {
-				matrix[i][j] = all.get(i);
+				matrix[i * numOfCols + j] = all.get(i);
 			}
 		}
 
@@ -90,15 +147,7 @@ public class Matrix {
 			throw new Exception("Matrices don't have the same size");
 		}
 
-		Double[][] matrixArray = new Double[m1.getNumOfRows()][m1.getNumOfCols()];
-
-		for (int i = 0; i < m1.getNumOfRows(); i++) {
-			for (int j = 0; j < m1.getNumOfCols(); j++) {
-				matrixArray[i][j] = m1.get(i, j) + m2.get(i, j);
-			}
-		}
-
-		return new Matrix(matrixArray, m1.getNumOfRows(), m1.getNumOfCols());
+		return new Matrix(m1.matrix.clone(), m1.getNumOfRows(), m1.getNumOfCols()).add(m2);
 
 	}
 
@@ -124,22 +173,254 @@ public class Matrix {
 			throw new IllegalArgumentException("A:Rows: " + aColumns + " did not match B:Columns " + bRows + ".");
 		}
 
-		Double[][] C = new Double[aRows][bColumns];
-		for (int i = 0; i < aRows; i++) {
-			for (int j = 0; j < bColumns; j++) {
-				C[i][j] = 0.00000;
+		double[] c = new double[aRows * bColumns];
+		multiplyRows(m1.matrix, transpose(m2.matrix, bRows, bColumns), c, aColumns, bColumns, 0, aRows);
+
+		return new Matrix(c, aRows, bColumns);
+	}
+
+	/**
+	 * Multiplies a matrix by the transpose of another, without building the transpose.
+	 *
+	 * @param m1
+	 *            The left matrix.
+	 * @param m2
+	 *            The matrix whose transpose is the right operand.
+	 * @return Returns a new matrix of size m1.Rows x m2.Rows
+	 * @throws IllegalArgumentException
+	 *             If the number of columns of m1 and m2 do not match.
+	 */
+	public static Matrix multTransposed(Matrix m1, Matrix m2) {
+
+		int aRows = m1.getNumOfRows();
+		int aColumns = m1.getNumOfCols();
+
+		if (aColumns != m2.getNumOfCols()) {
+			throw new IllegalArgumentException("A:Columns: " + aColumns + " did not match B:Columns "
+					+ m2.getNumOfCols() + ".");
+		}
+
+		double[] c = new double[aRows * m2.getNumOfRows()];
+		if (aRows == 1) {
+			Kernels.get().gemv(m2.matrix, m2.getNumOfRows(), aColumns, m1.matrix, 0, c, 0);
+		} else {
+			multiplyRows(m1.matrix, m2.matrix, c, aColumns, m2.getNumOfRows(), 0, aRows);
+		}
+
+		return new Matrix(c, aRows, m2.getNumOfRows());
+	}
+
+	/**
+	 * Returns the transpose of this matrix.
+	 *
+	 * @return Returns a new matrix of size Cols x Rows.
+	 */
+	public Matrix transpose() {
+		return new Matrix(transpose(matrix, numOfRows, numOfCols), numOfCols, numOfRows);
+	}
+
+	/**
+	 * Multiplies two matrices using the common fork-join pool.
+	 *
+	 * @param m1
+	 *            The left matrix.
+	 * @param m2
+	 *            The right matrix.
+	 * @return Returns a new matrix of size m1.Rows x m2.Cols
+	 * @throws IllegalArgumentException
+	 *             If the number of columns of m1 does not match the number of rows of m2.
+	 */
+	public static Matrix parallelMult(Matrix m1, Matrix m2) {
+		return parallelMult(m1, m2, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Multiplies two matrices by splitting the rows of the result into blocks that are computed in parallel.
+	 * Blocks are split in half until they need no more than threshold multiply-adds, so products smaller than
+	 * the threshold are computed sequentially on the calling thread.
+	 *
+	 * @param m1
+	 *            The left matrix.
+	 * @param m2
+	 *            The right matrix.
+	 * @param pool
+	 *            The pool to run the row blocks in. It is not shut down.
+	 * @param threshold
+	 *            The number of multiply-adds below which a block is not split any further.
+	 * @return Returns a new matrix of size m1.Rows x m2.Cols
+	 * @throws IllegalArgumentException
+	 *             If the number of columns of m1 does not match the number of rows of m2.
+	 */
+	public static Matrix parallelMult(Matrix m1, Matrix m2, ForkJoinPool pool, long threshold) {
+
+		int aRows = m1.getNumOfRows();
+		int aColumns = m1.getNumOfCols();
+		int bRows = m2.getNumOfRows();
+		int bColumns = m2.getNumOfCols();
+
+		if (aColumns != bRows) {
+			throw new IllegalArgumentException("A:Rows: " + aColumns + " did not match B:Columns " + bRows + ".");
+		}
+
+		double[] c = new double[aRows * bColumns];
+		MultiplyTask task = new MultiplyTask(m1.matrix, transpose(m2.matrix, bRows, bColumns), c, aColumns,
+				bColumns, 0, aRows, threshold);
+
+		if ((long) aRows * aColumns * bColumns <= threshold) {
+			task.compute();
+		} else {
+			pool.invoke(task);
+		}
+
+		return new Matrix(c, aRows, bColumns);
+	}
+
+	// Computes a block of rows of a product, forking halves while the block is above the threshold.
+	private static class MultiplyTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[] a;
+		private final double[] bt;
+		private final double[] c;
+		private final int aColumns;
+		private final int bColumns;
+		private final int fromRow;
+		private final int toRow;
+		private final long threshold;
+
+		MultiplyTask(double[] a, double[] bt, double[] c, int aColumns, int bColumns, int fromRow, int toRow,
+				long threshold) {
+			this.a = a;
+			this.bt = bt;
+			this.c = c;
+			this.aColumns = aColumns;
+			this.bColumns = bColumns;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected void compute() {
+
+			int rows = toRow - fromRow;
+
+			if (rows <= 1 || (long) rows * aColumns * bColumns <= threshold) {
+				multiplyRows(a, bt, c, aColumns, bColumns, fromRow, toRow);
+				return;
 			}
+
+			int middle = fromRow + rows / 2;
+			invokeAll(new MultiplyTask(a, bt, c, aColumns, bColumns, fromRow, middle, threshold),
+					new MultiplyTask(a, bt, c, aColumns, bColumns, middle, toRow, threshold));
 		}
+	}
+
+	/**
+	 * Computes rows [fromRow, toRow) of C = A * B, where B is given transposed so that both operands are read
+	 * sequentially, with the kernels chosen at startup.
+	 *
+	 * @param a
+	 *            The row-major left operand, with aColumns columns.
+	 * @param bt
+	 *            The transpose of the right operand, row-major with aColumns columns.
+	 * @param c
+	 *            The row-major result, with bColumns columns. Rows in range must be zero.
+	 * @param aColumns
+	 *            The number of columns of A, which is the number of rows of B.
+	 * @param bColumns
+	 *            The number of columns of B.
+	 * @param fromRow
+	 *            The first row of C to compute.
+	 * @param toRow
+	 *            The row after the last row of C to compute.
+	 * @see Kernels#gemm(double[], double[], double[], int, int, int, int)
+	 */
+	static void multiplyRows(double[] a, double[] bt, double[] c, int aColumns, int bColumns, int fromRow,
+			int toRow) {
+		Kernels.get().gemm(a, bt, c, aColumns, bColumns, fromRow, toRow);
+	}
 
-		for (int i = 0; i < aRows; i++) { // aRow
-			for (int j = 0; j < bColumns; j++) { // bColumn
-				for (int k = 0; k < aColumns; k++) { // aColumn
-					C[i][j] += m1.get(i, k) * m2.get(k, j);
+	// Returns the transpose of a row-major rows x cols array.
+	static double[] transpose(double[] m, int rows, int cols) {
+
+		double[] t = new double[m.length];
+
+		for (int i0 = 0; i0 < rows; i0 += BLOCK_SIZE) {
+			int iMax = Math.min(i0 + BLOCK_SIZE, rows);
+			for (int j0 = 0; j0 < cols; j0 += BLOCK_SIZE) {
+				int jMax = Math.min(j0 + BLOCK_SIZE, cols);
+				for (int i = i0; i < iMax; i++) {
+					for (int j = j0; j < jMax; j++) {
+						t[j * rows + i] = m[i * cols + j];
+					}
 				}
 			}
 		}
 
-		return new Matrix(C, aRows, bColumns);
+		return t;
+	}
+
+	/**
+	 * Adds a matrix to this matrix in place.
+	 *
+	 * @param m
+	 *            The matrix to add.
+	 * @return Returns this matrix.
+	 * @throws IllegalArgumentException
+	 *             If the matrices don't have the same size.
+	 */
+	public Matrix add(Matrix m) {
+
+		checkSameSize(m);
+
+		Kernels.get().axpy(1, m.matrix, 0, matrix, 0, matrix.length);
+
+		return this;
+	}
+
+	/**
+	 * Multiplies every element of this matrix by a scalar in place.
+	 *
+	 * @param scalar
+	 *            The value to multiply by.
+	 * @return Returns this matrix.
+	 */
+	public Matrix scale(double scalar) {
+
+		for (int i = 0; i < matrix.length; i++) {
+			matrix[i] *= scalar;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Multiplies this matrix element-wise by another matrix in place.
+	 *
+	 * @param m
+	 *            The matrix to multiply by.
+	 * @return Returns this matrix.
+	 * @throws IllegalArgumentException
+	 *             If the matrices don't have the same size.
+	 */
+	public Matrix hadamard(Matrix m) {
+
+		checkSameSize(m);
+
+		double[] other = m.matrix;
+		for (int i = 0; i < matrix.length; i++) {
+			matrix[i] *= other[i];
+		}
+
+		return this;
+	}
+
+	private void checkSameSize(Matrix m) {
+		if (numOfCols != m.getNumOfCols() || numOfRows != m.getNumOfRows()) {
+			throw new IllegalArgumentException("Matrices don't have the same size");
+		}
 	}
 
 	/**
@@ -151,9 +432,33 @@ public class Matrix {
 	 *            The col index.
 	 * @return Returns the element of the matrix at row = i col = j
 	 */
-	public Double get(int i, int j) {
+	public double get(int i, int j) {
+
+		return matrix[i * numOfCols + j];
+	}
 
-		return matrix[i][j];
+	/**
+	 * Sets the element of the matrix at row = i col = j
+	 *
+	 * @param i
+	 *            The row index.
+	 * @param j
+	 *            The col index.
+	 * @param value
+	 *            The new value.
+	 */
+	public void set(int i, int j, double value) {
+
+		matrix[i * numOfCols + j] = value;
+	}
+
+	/**
+	 * Returns the row-major array backing the matrix. Changes to the array are visible in the matrix.
+	 *
+	 * @return Returns the row-major array backing the matrix.
+	 */
+	public double[] getData() {
+		return matrix;
 	}
 
 	/**
@@ -172,7 +477,7 @@ public class Matrix {
 		List<Double> rows = new ArrayList<>();
 
 		for (int i = 0; i < numOfRows; i++) {
-			rows.add(matrix[i][colIndex]);
+			rows.add(get(i, colIndex));
 		}
 
 		return rows;
@@ -195,7 +500,7 @@ public class Matrix {
 		List<Double> cols = new ArrayList<>();
 
 		for (int i = 0; i < numOfCols; i++) {
-			cols.add(matrix[rowIndex][i]);
+			cols.add(get(rowIndex, i));
 		}
 
 		return cols;
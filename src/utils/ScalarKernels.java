@@ -0,0 +1,165 @@
+package utils;
+
+/**
+ * Kernels written as plain loops, left to the JIT compiler to optimize. Always available.
+ */
+final class ScalarKernels implements Kernels {
+
+	static final ScalarKernels INSTANCE = new ScalarKernels();
+
+	// Size of the square tiles the matrix product is computed in.
+	private static final int BLOCK_SIZE = 64;
+
+	private ScalarKernels() {
+	}
+
+	@Override
+	public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+
+		double sum = 0;
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return sum;
+	}
+
+	@Override
+	public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			y[yOffset + i] += alpha * x[xOffset + i];
+		}
+	}
+
+	@Override
+	public void gemv(double[] a, int rows, int columns, double[] x, int xOffset, double[] y, int yOffset) {
+		for (int j = 0; j < rows; j++) {
+			y[yOffset + j] = dot(a, j * columns, x, xOffset, columns);
+		}
+	}
+
+	// The loops are tiled so that the tiles of A and B being combined stay in cache.
+	@Override
+	public void gemm(double[] a, double[] bt, double[] c, int aColumns, int bColumns, int fromRow, int toRow) {
+
+		for (int i0 = fromRow; i0 < toRow; i0 += BLOCK_SIZE) {
+			int iMax = Math.min(i0 + BLOCK_SIZE, toRow);
+
+			for (int j0 = 0; j0 < bColumns; j0 += BLOCK_SIZE) {
+				int jMax = Math.min(j0 + BLOCK_SIZE, bColumns);
+
+				for (int k0 = 0; k0 < aColumns; k0 += BLOCK_SIZE) {
+					int kMax = Math.min(k0 + BLOCK_SIZE, aColumns);
+
+					for (int i = i0; i < iMax; i++) {
+						int aRow = i * aColumns;
+						int cRow = i * bColumns;
+
+						for (int j = j0; j < jMax; j++) {
+							int bRow = j * aColumns;
+							double sum = 0;
+							for (int k = k0; k < kMax; k++) {
+								sum += a[aRow + k] * bt[bRow + k];
+							}
+							c[cRow + j] += sum;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void leakyRelu(double[] values, int from, int to, double slope) {
+		for (int i = from; i < to; i++) {
+			double x = values[i];
+			values[i] = x > 0 ? x : slope * x;
+		}
+	}
+
+	@Override
+	public void leakyReluDelta(double[] errors, double[] outputs, int from, int to, double slope) {
+		for (int i = from; i < to; i++) {
+			errors[i] = errors[i] * (outputs[i] > 0 ? 1 : slope);
+		}
+	}
+
+	@Override
+	public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+
+		float sum = 0;
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return sum;
+	}
+
+	@Override
+	public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			y[yOffset + i] += alpha * x[xOffset + i];
+		}
+	}
+
+	@Override
+	public void gemm(float[] a, float[] bt, float[] c, int aColumns, int bColumns, int fromRow, int toRow) {
+
+		for (int i0 = fromRow; i0 < toRow; i0 += BLOCK_SIZE) {
+			int iMax = Math.min(i0 + BLOCK_SIZE, toRow);
+
+			for (int j0 = 0; j0 < bColumns; j0 += BLOCK_SIZE) {
+				int jMax = Math.min(j0 + BLOCK_SIZE, bColumns);
+
+				for (int k0 = 0; k0 < aColumns; k0 += BLOCK_SIZE) {
+					int kMax = Math.min(k0 + BLOCK_SIZE, aColumns);
+
+					for (int i = i0; i < iMax; i++) {
+						int aRow = i * aColumns;
+						int cRow = i * bColumns;
+
+						for (int j = j0; j < jMax; j++) {
+							int bRow = j * aColumns;
+							float sum = 0;
+							for (int k = k0; k < kMax; k++) {
+								sum += a[aRow + k] * bt[bRow + k];
+							}
+							c[cRow + j] += sum;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void leakyRelu(float[] values, int from, int to, float slope) {
+		for (int i = from; i < to; i++) {
+			float x = values[i];
+			values[i] = x > 0 ? x : slope * x;
+		}
+	}
+
+	@Override
+	public void leakyReluDelta(float[] errors, float[] outputs, int from, int to, float slope) {
+		for (int i = from; i < to; i++) {
+			errors[i] = errors[i] * (outputs[i] > 0 ? 1 : slope);
+		}
+	}
+
+	@Override
+	public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+
+		int sum = 0;
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return sum;
+	}
+
+	@Override
+	public String getName() {
+		return "scalar";
+	}
+}
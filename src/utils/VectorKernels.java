@@ -0,0 +1,400 @@
+package utils;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels built on the Vector API, using the widest vectors of doubles and floats the CPU supports. Only loaded by
+ * {@link KernelSelector}, and only when the jdk.incubator.vector module is present.
+ *
+ * Products keep one accumulator per output value and fold it with fused multiply-adds, and reduce the lanes
+ * of the accumulator once per tile. Matrix products compute four output values per pass over a row, so each
+ * vector loaded from the shared operand is used four times.
+ */
+final class VectorKernels implements Kernels {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+	// Vectors of bytes are widened to four vectors of ints of the same size.
+	private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+	// Size of the row and column tiles of the matrix product, and of the tiles of the summed dimension.
+	private static final int BLOCK_SIZE = 64;
+	private static final int DEPTH = 256;
+
+	/**
+	 * Creates the kernels.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             If the CPU has no vectors of more than one double.
+	 */
+	VectorKernels() {
+		if (SPECIES.length() < 2) {
+			throw new UnsupportedOperationException("No vectors of doubles");
+		}
+	}
+
+	@Override
+	public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+
+		int step = SPECIES.length();
+		int bound = SPECIES.loopBound(length);
+		DoubleVector sum = DoubleVector.zero(SPECIES);
+		int i = 0;
+
+		for (; i < bound; i += step) {
+			sum = DoubleVector.fromArray(SPECIES, a, aOffset + i)
+					.fma(DoubleVector.fromArray(SPECIES, b, bOffset + i), sum);
+		}
+
+		double result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			result += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return result;
+	}
+
+	// Rounds alpha * x before adding it, like the scalar loop, so the results are identical.
+	@Override
+	public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+
+		int step = SPECIES.length();
+		int bound = SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += step) {
+			DoubleVector.fromArray(SPECIES, x, xOffset + i).mul(alpha)
+					.add(DoubleVector.fromArray(SPECIES, y, yOffset + i)).intoArray(y, yOffset + i);
+		}
+		for (; i < length; i++) {
+			y[yOffset + i] += alpha * x[xOffset + i];
+		}
+	}
+
+	@Override
+	public void gemv(double[] a, int rows, int columns, double[] x, int xOffset, double[] y, int yOffset) {
+
+		int j = 0;
+
+		for (; j + 4 <= rows; j += 4) {
+			y[yOffset + j] = 0;
+			y[yOffset + j + 1] = 0;
+			y[yOffset + j + 2] = 0;
+			y[yOffset + j + 3] = 0;
+			dot4(x, xOffset, a, j * columns, columns, columns, y, yOffset + j);
+		}
+		for (; j < rows; j++) {
+			y[yOffset + j] = dot(a, j * columns, x, xOffset, columns);
+		}
+	}
+
+	@Override
+	public void gemm(double[] a, double[] bt, double[] c, int aColumns, int bColumns, int fromRow, int toRow) {
+
+		for (int i0 = fromRow; i0 < toRow; i0 += BLOCK_SIZE) {
+			int iMax = Math.min(i0 + BLOCK_SIZE, toRow);
+
+			for (int j0 = 0; j0 < bColumns; j0 += BLOCK_SIZE) {
+				int jMax = Math.min(j0 + BLOCK_SIZE, bColumns);
+
+				for (int k0 = 0; k0 < aColumns; k0 += DEPTH) {
+					int length = Math.min(DEPTH, aColumns - k0);
+
+					for (int i = i0; i < iMax; i++) {
+						int aRow = i * aColumns + k0;
+						int cRow = i * bColumns;
+						int j = j0;
+
+						for (; j + 4 <= jMax; j += 4) {
+							dot4(a, aRow, bt, j * aColumns + k0, aColumns, length, c, cRow + j);
+						}
+						for (; j < jMax; j++) {
+							c[cRow + j] += dot(a, aRow, bt, j * aColumns + k0, length);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds to four consecutive values of out the dot products of one range of values with four ranges that are
+	 * a fixed distance apart.
+	 *
+	 * @param shared
+	 *            The array holding the range multiplied with each of the four.
+	 * @param sharedOffset
+	 *            The index of the first value of the shared range.
+	 * @param rows
+	 *            The array holding the four ranges.
+	 * @param rowOffset
+	 *            The index of the first value of the first range.
+	 * @param rowStride
+	 *            The distance between the starts of the ranges.
+	 * @param length
+	 *            The number of values in each range.
+	 * @param out
+	 *            The array the dot products are added to.
+	 * @param outOffset
+	 *            The index of the first of the four values.
+	 */
+	private static void dot4(double[] shared, int sharedOffset, double[] rows, int rowOffset, int rowStride,
+			int length, double[] out, int outOffset) {
+
+		int step = SPECIES.length();
+		int bound = SPECIES.loopBound(length);
+		int r0 = rowOffset;
+		int r1 = r0 + rowStride;
+		int r2 = r1 + rowStride;
+		int r3 = r2 + rowStride;
+		DoubleVector sum0 = DoubleVector.zero(SPECIES);
+		DoubleVector sum1 = DoubleVector.zero(SPECIES);
+		DoubleVector sum2 = DoubleVector.zero(SPECIES);
+		DoubleVector sum3 = DoubleVector.zero(SPECIES);
+		int k = 0;
+
+		for (; k < bound; k += step) {
+			DoubleVector s = DoubleVector.fromArray(SPECIES, shared, sharedOffset + k);
+			sum0 = s.fma(DoubleVector.fromArray(SPECIES, rows, r0 + k), sum0);
+			sum1 = s.fma(DoubleVector.fromArray(SPECIES, rows, r1 + k), sum1);
+			sum2 = s.fma(DoubleVector.fromArray(SPECIES, rows, r2 + k), sum2);
+			sum3 = s.fma(DoubleVector.fromArray(SPECIES, rows, r3 + k), sum3);
+		}
+
+		double d0 = sum0.reduceLanes(VectorOperators.ADD);
+		double d1 = sum1.reduceLanes(VectorOperators.ADD);
+		double d2 = sum2.reduceLanes(VectorOperators.ADD);
+		double d3 = sum3.reduceLanes(VectorOperators.ADD);
+
+		for (; k < length; k++) {
+			double s = shared[sharedOffset + k];
+			d0 += s * rows[r0 + k];
+			d1 += s * rows[r1 + k];
+			d2 += s * rows[r2 + k];
+			d3 += s * rows[r3 + k];
+		}
+
+		out[outOffset] += d0;
+		out[outOffset + 1] += d1;
+		out[outOffset + 2] += d2;
+		out[outOffset + 3] += d3;
+	}
+
+	@Override
+	public void leakyRelu(double[] values, int from, int to, double slope) {
+
+		int step = SPECIES.length();
+		int bound = from + SPECIES.loopBound(to - from);
+		int i = from;
+
+		for (; i < bound; i += step) {
+			DoubleVector x = DoubleVector.fromArray(SPECIES, values, i);
+			x.mul(slope).blend(x, x.compare(VectorOperators.GT, 0)).intoArray(values, i);
+		}
+		for (; i < to; i++) {
+			double x = values[i];
+			values[i] = x > 0 ? x : slope * x;
+		}
+	}
+
+	@Override
+	public void leakyReluDelta(double[] errors, double[] outputs, int from, int to, double slope) {
+
+		int step = SPECIES.length();
+		int bound = from + SPECIES.loopBound(to - from);
+		DoubleVector ones = DoubleVector.broadcast(SPECIES, 1);
+		DoubleVector slopes = DoubleVector.broadcast(SPECIES, slope);
+		int i = from;
+
+		for (; i < bound; i += step) {
+			VectorMask<Double> positive = DoubleVector.fromArray(SPECIES, outputs, i)
+					.compare(VectorOperators.GT, 0);
+			DoubleVector.fromArray(SPECIES, errors, i).mul(slopes.blend(ones, positive)).intoArray(errors, i);
+		}
+		for (; i < to; i++) {
+			errors[i] = errors[i] * (outputs[i] > 0 ? 1 : slope);
+		}
+	}
+
+	@Override
+	public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+
+		int step = FLOAT_SPECIES.length();
+		int bound = FLOAT_SPECIES.loopBound(length);
+		FloatVector sum = FloatVector.zero(FLOAT_SPECIES);
+		int i = 0;
+
+		for (; i < bound; i += step) {
+			sum = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i)
+					.fma(FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i), sum);
+		}
+
+		float result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			result += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return result;
+	}
+
+	@Override
+	public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+
+		int step = FLOAT_SPECIES.length();
+		int bound = FLOAT_SPECIES.loopBound(length);
+		int i = 0;
+
+		for (; i < bound; i += step) {
+			FloatVector.fromArray(FLOAT_SPECIES, x, xOffset + i).mul(alpha)
+					.add(FloatVector.fromArray(FLOAT_SPECIES, y, yOffset + i)).intoArray(y, yOffset + i);
+		}
+		for (; i < length; i++) {
+			y[yOffset + i] += alpha * x[xOffset + i];
+		}
+	}
+
+	@Override
+	public void gemm(float[] a, float[] bt, float[] c, int aColumns, int bColumns, int fromRow, int toRow) {
+
+		for (int i0 = fromRow; i0 < toRow; i0 += BLOCK_SIZE) {
+			int iMax = Math.min(i0 + BLOCK_SIZE, toRow);
+
+			for (int j0 = 0; j0 < bColumns; j0 += BLOCK_SIZE) {
+				int jMax = Math.min(j0 + BLOCK_SIZE, bColumns);
+
+				for (int k0 = 0; k0 < aColumns; k0 += DEPTH) {
+					int length = Math.min(DEPTH, aColumns - k0);
+
+					for (int i = i0; i < iMax; i++) {
+						int aRow = i * aColumns + k0;
+						int cRow = i * bColumns;
+						int j = j0;
+
+						for (; j + 4 <= jMax; j += 4) {
+							dot4(a, aRow, bt, j * aColumns + k0, aColumns, length, c, cRow + j);
+						}
+						for (; j < jMax; j++) {
+							c[cRow + j] += dot(a, aRow, bt, j * aColumns + k0, length);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// Float version of dot4(double[], int, double[], int, int, int, double[], int).
+	private static void dot4(float[] shared, int sharedOffset, float[] rows, int rowOffset, int rowStride,
+			int length, float[] out, int outOffset) {
+
+		int step = FLOAT_SPECIES.length();
+		int bound = FLOAT_SPECIES.loopBound(length);
+		int r0 = rowOffset;
+		int r1 = r0 + rowStride;
+		int r2 = r1 + rowStride;
+		int r3 = r2 + rowStride;
+		FloatVector sum0 = FloatVector.zero(FLOAT_SPECIES);
+		FloatVector sum1 = FloatVector.zero(FLOAT_SPECIES);
+		FloatVector sum2 = FloatVector.zero(FLOAT_SPECIES);
+		FloatVector sum3 = FloatVector.zero(FLOAT_SPECIES);
+		int k = 0;
+
+		for (; k < bound; k += step) {
+			FloatVector s = FloatVector.fromArray(FLOAT_SPECIES, shared, sharedOffset + k);
+			sum0 = s.fma(FloatVector.fromArray(FLOAT_SPECIES, rows, r0 + k), sum0);
+			sum1 = s.fma(FloatVector.fromArray(FLOAT_SPECIES, rows, r1 + k), sum1);
+			sum2 = s.fma(FloatVector.fromArray(FLOAT_SPECIES, rows, r2 + k), sum2);
+			sum3 = s.fma(FloatVector.fromArray(FLOAT_SPECIES, rows, r3 + k), sum3);
+		}
+
+		float d0 = sum0.reduceLanes(VectorOperators.ADD);
+		float d1 = sum1.reduceLanes(VectorOperators.ADD);
+		float d2 = sum2.reduceLanes(VectorOperators.ADD);
+		float d3 = sum3.reduceLanes(VectorOperators.ADD);
+
+		for (; k < length; k++) {
+			float s = shared[sharedOffset + k];
+			d0 += s * rows[r0 + k];
+			d1 += s * rows[r1 + k];
+			d2 += s * rows[r2 + k];
+			d3 += s * rows[r3 + k];
+		}
+
+		out[outOffset] += d0;
+		out[outOffset + 1] += d1;
+		out[outOffset + 2] += d2;
+		out[outOffset + 3] += d3;
+	}
+
+	@Override
+	public void leakyRelu(float[] values, int from, int to, float slope) {
+
+		int step = FLOAT_SPECIES.length();
+		int bound = from + FLOAT_SPECIES.loopBound(to - from);
+		int i = from;
+
+		for (; i < bound; i += step) {
+			FloatVector x = FloatVector.fromArray(FLOAT_SPECIES, values, i);
+			x.mul(slope).blend(x, x.compare(VectorOperators.GT, 0)).intoArray(values, i);
+		}
+		for (; i < to; i++) {
+			float x = values[i];
+			values[i] = x > 0 ? x : slope * x;
+		}
+	}
+
+	@Override
+	public void leakyReluDelta(float[] errors, float[] outputs, int from, int to, float slope) {
+
+		int step = FLOAT_SPECIES.length();
+		int bound = from + FLOAT_SPECIES.loopBound(to - from);
+		FloatVector ones = FloatVector.broadcast(FLOAT_SPECIES, 1);
+		FloatVector slopes = FloatVector.broadcast(FLOAT_SPECIES, slope);
+		int i = from;
+
+		for (; i < bound; i += step) {
+			VectorMask<Float> positive = FloatVector.fromArray(FLOAT_SPECIES, outputs, i)
+					.compare(VectorOperators.GT, 0);
+			FloatVector.fromArray(FLOAT_SPECIES, errors, i).mul(slopes.blend(ones, positive)).intoArray(errors, i);
+		}
+		for (; i < to; i++) {
+			errors[i] = errors[i] * (outputs[i] > 0 ? 1 : slope);
+		}
+	}
+
+	@Override
+	public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+
+		int step = BYTE_SPECIES.length();
+		int bound = BYTE_SPECIES.loopBound(length);
+		IntVector sum = IntVector.zero(INT_SPECIES);
+		int i = 0;
+
+		for (; i < bound; i += step) {
+			ByteVector va = ByteVector.fromArray(BYTE_SPECIES, a, aOffset + i);
+			ByteVector vb = ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i);
+			for (int part = 0; part < 4; part++) {
+				IntVector ia = (IntVector) va.convertShape(VectorOperators.B2I, INT_SPECIES, part);
+				IntVector ib = (IntVector) vb.convertShape(VectorOperators.B2I, INT_SPECIES, part);
+				sum = sum.add(ia.mul(ib));
+			}
+		}
+
+		int result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			result += a[aOffset + i] * b[bOffset + i];
+		}
+
+		return result;
+	}
+
+	@Override
+	public String getName() {
+		return "vector " + SPECIES.vectorBitSize() + "-bit";
+	}
+}